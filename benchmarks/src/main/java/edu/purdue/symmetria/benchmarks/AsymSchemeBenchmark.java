@@ -0,0 +1,104 @@
+package edu.purdue.symmetria.benchmarks;
+
+import edu.purdue.symmetria.crypto.ElGamal;
+import edu.purdue.symmetria.crypto.Paillier;
+import edu.purdue.symmetria.crypto.cipher.ElGamalCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paillier and ElGamal operations for keys of `keyBits` bits. The keys are generated once and
+ * kept in /tmp/symmetria-bench-*.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AsymSchemeBenchmark {
+
+    @Param({"Paillier", "ElGamal"})
+    public String scheme;
+
+    @Param({"1024", "2048"})
+    public int keyBits;
+
+    private Paillier paillier;
+    private ElGamal elGamal;
+    private BigInteger p1;
+    private BigInteger p2;
+    private ElGamalCipher e1;
+    private ElGamalCipher e2;
+    private long m;
+
+    @Setup
+    public void setup() {
+        String path = "/tmp/symmetria-bench-" + scheme.toLowerCase() + "-" + keyBits;
+        if (!new File(path + ".pk").exists()) {
+            if (scheme.equals("Paillier"))
+                Paillier.keyGen(keyBits, path + ".pk", path + ".sk");
+            else
+                ElGamal.keyGen(keyBits, path + ".pk", path + ".sk");
+        }
+
+        m = MathUtils.randLong(1_000);
+        if (scheme.equals("Paillier")) {
+            paillier = new Paillier(path + ".pk", path + ".sk", true);
+            p1 = paillier.encrypt(MathUtils.randLong(1_000));
+            p2 = paillier.encrypt(MathUtils.randLong(1_000));
+        } else {
+            elGamal = new ElGamal(2, path + ".pk", path + ".sk");
+            e1 = elGamal.encrypt(MathUtils.randLong(1_000));
+            e2 = elGamal.encrypt(MathUtils.randLong(1_000));
+        }
+    }
+
+    @Benchmark
+    public Object encrypt() {
+        if (paillier != null)
+            return paillier.encrypt(m);
+        return elGamal.encrypt(m);
+    }
+
+    @Benchmark
+    public long decrypt() {
+        if (paillier != null)
+            return paillier.decrypt(p1);
+        return elGamal.decrypt(e1);
+    }
+
+    /**
+     * add() for Paillier and multiply() for ElGamal.
+     */
+    @Benchmark
+    public Object combine() {
+        if (paillier != null)
+            return paillier.add(p1, p2);
+        return elGamal.multiply(e1, e2);
+    }
+
+    /**
+     * addPlaintext() for Paillier and multiplyPlaintext() for ElGamal.
+     */
+    @Benchmark
+    public Object combinePlaintext() {
+        if (paillier != null)
+            return paillier.addPlaintext(p1, m);
+        return elGamal.multiplyPlaintext(e1, m);
+    }
+}
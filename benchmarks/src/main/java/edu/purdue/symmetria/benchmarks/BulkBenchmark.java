@@ -0,0 +1,85 @@
+package edu.purdue.symmetria.benchmarks;
+
+import edu.purdue.symmetria.crypto.Paillier;
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bulk operations that split their work between `threads` threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkBenchmark {
+
+    private static final int PAILLIER_MESSAGES = 64;
+    private static final int SYM_CIPHERS = 1_000;
+    private static final int SYM_IDS = 100;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private Paillier paillier;
+    private long[] messages;
+    private BigInteger[] ciphertexts;
+
+    private SymAHE symAHE;
+    private List<SymCipher> symCiphers;
+
+    @Setup
+    public void setup() {
+        paillier = new Paillier();
+        messages = new long[PAILLIER_MESSAGES];
+        for (int i = 0; i < messages.length; i++)
+            messages[i] = MathUtils.randLong(1_000_000);
+        ciphertexts = paillier.encryptAll(messages);
+
+        symAHE = new SymAHE();
+        symCiphers = new ArrayList<>();
+        for (int i = 0; i < SYM_CIPHERS; i++) {
+            SymCipher c = symAHE.encrypt(MathUtils.randLong(1_000_000));
+            for (int j = 1; j < SYM_IDS; j++)
+                symAHE.add(c, symAHE.encrypt(MathUtils.randLong(1_000_000)));
+            symCiphers.add(c);
+        }
+    }
+
+    @Benchmark
+    public BigInteger[] paillierEncryptAll() {
+        BigInteger[] out = new BigInteger[messages.length];
+        paillier.encryptAll(messages, out, threads);
+        return out;
+    }
+
+    @Benchmark
+    public long[] paillierDecryptAll() {
+        long[] out = new long[ciphertexts.length];
+        paillier.decryptAll(ciphertexts, out, threads);
+        return out;
+    }
+
+    @Benchmark
+    public long[] symAHEDecryptAll() {
+        return symAHE.decryptAll(symCiphers, threads);
+    }
+}
@@ -0,0 +1,121 @@
+package edu.purdue.symmetria.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <pre>
+ * Compares two JMH CSV result files, e.g., of the main branch and of a change, and reports every
+ * benchmark whose score got worse by more than a threshold (10% by default). Benchmarks are
+ * matched by name, mode, thread count and parameters. For throughput modes a higher score is
+ * better and for time modes a lower one.
+ *
+ * Returns 1 if any benchmark regressed so it can fail a build, and 0 otherwise.
+ * </pre>
+ */
+public class Compare {
+
+    private static final double DEFAULT_THRESHOLD = 10;
+
+    static int run(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: compare BASELINE.csv CURRENT.csv [THRESHOLD PERCENT]");
+            return 2;
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+        Map<String, Result> baseline = read(args[0]);
+        Map<String, Result> current = read(args[1]);
+
+        int regressions = 0;
+        System.out.println("Benchmark\tBaseline\tCurrent\tChange (%)\tUnit");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.println(entry.getKey() + "\t-\t" + now.score + "\tnew\t" + now.unit);
+                continue;
+            }
+            double change = (now.score - before.score) / before.score * 100;
+            // positive when it got worse
+            double worse = now.higherIsBetter() ? -change : change;
+            String flag = worse > threshold ? "\tREGRESSION" : "";
+            if (worse > threshold)
+                regressions++;
+            System.out.printf("%s\t%.3f\t%.3f\t%+.1f\t%s%s%n", entry.getKey(), before.score, now.score, change, now.unit, flag);
+        }
+        System.out.println(regressions + " regression(s) above " + threshold + "%");
+        return regressions > 0 ? 1 : 0;
+    }
+
+    private static class Result {
+        final String mode;
+        final double score;
+        final String unit;
+
+        Result(String mode, double score, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.unit = unit;
+        }
+
+        boolean higherIsBetter() {
+            return mode.equals("thrpt");
+        }
+    }
+
+    /**
+     * Reads a JMH CSV file: "Benchmark","Mode","Threads","Samples","Score","Score Error (99.9%)",
+     * "Unit" followed by a "Param: name" column per parameter.
+     */
+    private static Map<String, Result> read(String path) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
+        List<String> header = split(lines.get(0));
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.trim().isEmpty())
+                continue;
+            List<String> fields = split(line);
+            StringBuilder key = new StringBuilder(fields.get(0));
+            key.append(" [").append(fields.get(1)).append(", threads=").append(fields.get(2));
+            for (int i = 7; i < fields.size(); i++)
+                if (!fields.get(i).isEmpty())
+                    key.append(", ").append(header.get(i).replace("Param: ", "")).append('=').append(fields.get(i));
+            key.append(']');
+            results.put(key.toString(), new Result(fields.get(1), Double.parseDouble(fields.get(4)), fields.get(6)));
+        }
+        return results;
+    }
+
+    /**
+     * Splits a CSV line whose fields may be quoted.
+     */
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,37 @@
+package edu.purdue.symmetria.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <pre>
+ * Runs the benchmarks, or compares two result files.
+ *
+ *   java -jar benchmarks.jar [JMH OPTIONS] [BENCHMARK REGEX]
+ *   java -jar benchmarks.jar compare BASELINE.csv CURRENT.csv [THRESHOLD PERCENT]
+ *
+ * The JMH options are passed through, e.g., -p idListSize=100 to fix a parameter or -t 4 to run
+ * every benchmark from 4 threads. Unless -rf is given, the results are written as CSV to
+ * symmetria-results.csv.
+ * </pre>
+ */
+public class Main {
+
+    private static final String DEFAULT_RESULTS = "symmetria-results.csv";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("compare")) {
+            System.exit(Compare.run(Arrays.copyOfRange(args, 1, args.length)));
+            return;
+        }
+
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (!jmhArgs.contains("-rf")) {
+            jmhArgs.addAll(Arrays.asList("-rf", "csv"));
+            if (!jmhArgs.contains("-rff"))
+                jmhArgs.addAll(Arrays.asList("-rff", DEFAULT_RESULTS));
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,87 @@
+package edu.purdue.symmetria.benchmarks;
+
+import edu.purdue.symmetria.utils.MathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The modular arithmetic of MathUtils against its BigInteger versions, as MathUtils.timeModulo()
+ * does by hand.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MathBenchmark {
+
+    private static final long MODULO = Long.MAX_VALUE;
+
+    private long a;
+    private long b;
+
+    @Setup
+    public void setup() {
+        // a must be invertible modulo MODULO
+        while (true) {
+            a = MathUtils.randLong(Long.MAX_VALUE);
+            try {
+                MathUtils.modInverseBI(a, MODULO);
+                break;
+            } catch (ArithmeticException e) {
+            }
+        }
+        b = MathUtils.randLong(Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public long modAdd() {
+        return MathUtils.modAdd(a, b, MODULO);
+    }
+
+    @Benchmark
+    public long modAddBI() {
+        return MathUtils.modAddBI(a, b, MODULO);
+    }
+
+    @Benchmark
+    public long modMul() {
+        return MathUtils.modMul(a, b, MODULO);
+    }
+
+    @Benchmark
+    public long modMulBI() {
+        return MathUtils.modMulBI(a, b, MODULO);
+    }
+
+    @Benchmark
+    public long modPow() {
+        return MathUtils.modPow(a, b, MODULO);
+    }
+
+    @Benchmark
+    public long modPowBI() {
+        return MathUtils.modPowBI(a, b, MODULO);
+    }
+
+    @Benchmark
+    public long modInverse() {
+        return MathUtils.modInverse(a, MODULO);
+    }
+
+    @Benchmark
+    public long modInverseBI() {
+        return MathUtils.modInverseBI(a, MODULO);
+    }
+}
@@ -0,0 +1,71 @@
+package edu.purdue.symmetria.benchmarks;
+
+import edu.purdue.symmetria.crypto.PackingCodec;
+import edu.purdue.symmetria.crypto.Paillier;
+import edu.purdue.symmetria.crypto.cipher.PackedCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packed Paillier operations for slots of `slotBits` bits holding values of `slotBits` - 16 bits.
+ * The scores are per ciphertext, i.e., for getSlots() values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PackedBenchmark {
+
+    @Param({"32", "48", "64"})
+    public int slotBits;
+
+    private Paillier paillier;
+    private long[] m;
+    private PackedCipher c1;
+    private PackedCipher c2;
+
+    @Setup
+    public void setup() {
+        paillier = new Paillier();
+        paillier.setPackingCodec(new PackingCodec(paillier.n.bitLength(), slotBits, slotBits - 16));
+        m = new long[paillier.getPackingCodec().getSlots()];
+        for (int i = 0; i < m.length; i++)
+            m[i] = MathUtils.randLong(1_000_000);
+        c1 = paillier.encryptPacked(m);
+        c2 = paillier.encryptPacked(m);
+    }
+
+    @Benchmark
+    public PackedCipher encryptPacked() {
+        return paillier.encryptPacked(m);
+    }
+
+    @Benchmark
+    public long[] decryptPacked() {
+        return paillier.decryptPacked(c1);
+    }
+
+    @Benchmark
+    public PackedCipher addPacked() {
+        return paillier.addPacked(c1, c2);
+    }
+
+    @Benchmark
+    public PackedCipher addPlaintextPacked() {
+        return paillier.addPlaintextPacked(c1, m);
+    }
+}
@@ -0,0 +1,113 @@
+package edu.purdue.symmetria.benchmarks;
+
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.SymMHE;
+import edu.purdue.symmetria.crypto.SymPHE;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.crypto.cipher.SymCipher.CipherType;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SymAHE and SymMHE operations on ciphers that hold `idListSize` ids. The ciphers are built once
+ * per trial, outside the measured code. Operations that modify their cipher work on a copy, so
+ * `copy` is measured too and can be subtracted.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SymSchemeBenchmark {
+
+    @Param({"SAHE", "SMHE"})
+    public String scheme;
+
+    @Param({"ARRAY", "RANGE"})
+    public String cipherType;
+
+    @Param({"1", "100", "10000"})
+    public int idListSize;
+
+    private SymPHE phe;
+    private SymAHE ahe;
+    private SymMHE mhe;
+    private SymCipher c1;
+    private SymCipher c2;
+    private long m;
+
+    @Setup
+    public void setup() {
+        CipherType type = CipherType.valueOf(cipherType);
+        if (scheme.equals("SAHE"))
+            phe = ahe = new SymAHE(type);
+        else
+            phe = mhe = new SymMHE(type);
+
+        m = MathUtils.randLong(1_000_000);
+        c1 = combine(idListSize);
+        c2 = combine(idListSize);
+    }
+
+    /**
+     * Returns the sum (or product) of `size` encryptions, i.e., a cipher of `size` ids.
+     */
+    private SymCipher combine(int size) {
+        SymCipher c = phe.encrypt(MathUtils.randLong(1_000_000));
+        for (int i = 1; i < size; i++) {
+            if (ahe != null)
+                ahe.add(c, ahe.encrypt(MathUtils.randLong(1_000_000)));
+            else
+                mhe.multiply(c, mhe.encrypt(MathUtils.randLong(10) + 1));
+        }
+        return c;
+    }
+
+    @Benchmark
+    public SymCipher encrypt() {
+        return phe.encrypt(m);
+    }
+
+    @Benchmark
+    public long decrypt() {
+        return phe.decrypt(c1);
+    }
+
+    @Benchmark
+    public SymCipher copy() {
+        return c1.copy();
+    }
+
+    /**
+     * add() for SymAHE and multiply() for SymMHE.
+     */
+    @Benchmark
+    public SymCipher combine() {
+        if (ahe != null)
+            return ahe.add(c1.copy(), c2);
+        return mhe.multiply(c1.copy(), c2);
+    }
+
+    /**
+     * addPlaintext() for SymAHE and multiplyPlaintext() for SymMHE.
+     */
+    @Benchmark
+    public SymCipher combinePlaintext() {
+        if (ahe != null)
+            return ahe.addPlaintext(c1.copy(), m);
+        return mhe.multiplyPlaintext(c1.copy(), m);
+    }
+}
@@ -0,0 +1,122 @@
+package edu.purdue.symmetria.aggregate;
+
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+
+/**
+ * <pre>
+ * A segment tree of SymAHE ciphertexts that answers the encrypted sum of any range of rows of a
+ * table whose rows can be updated.
+ *
+ * Every node holds the sum of the rows below it. Updating a row recomputes the O(log n) nodes
+ * above it and the sum of a range is the sum of O(log n) nodes. The number of leaves is rounded
+ * up to a power of two so that every node covers consecutive rows. If the rows are encrypted with
+ * consecutive ids, RANGE ciphers keep the ids of every node compressed to a few ranges.
+ *
+ * Nodes are recomputed from their children instead of subtracting the old row and adding the new
+ * one, since a subtracted id is never removed from the id list of a cipher and node sizes (and
+ * decryption times) would grow with every update.
+ *
+ * The tree owns its ciphers: given ciphers are copied and returned ciphers are new objects.
+ * </pre>
+ */
+public class EncryptedSumTree {
+
+    private final SymAHE scheme;
+
+    // number of rows
+    private final int size;
+
+    // number of leaves, a power of two >= size
+    private final int leaves;
+
+    // nodes[1] is the root, the children of node i are 2i and 2i + 1 and the leaf of row r is
+    // nodes[leaves + r]. null nodes have no rows.
+    private final SymCipher[] nodes;
+
+    public EncryptedSumTree(SymAHE scheme, SymCipher[] rows) {
+        this.scheme = scheme;
+        this.size = rows.length;
+        int leaves = 1;
+        while (leaves < size)
+            leaves <<= 1;
+        this.leaves = leaves;
+        this.nodes = new SymCipher[2 * leaves];
+
+        for (int row = 0; row < size; row++)
+            nodes[leaves + row] = rows[row].copy();
+        for (int i = leaves - 1; i >= 1; i--)
+            nodes[i] = combine(nodes[2 * i], nodes[2 * i + 1]);
+    }
+
+    /**
+     * Returns the number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the cipher of the given row.
+     */
+    public SymCipher get(int row) {
+        checkRow(row);
+        return nodes[leaves + row].copy();
+    }
+
+    /**
+     * Replaces the cipher of the given row.
+     */
+    public void update(int row, SymCipher c) {
+        checkRow(row);
+        int i = leaves + row;
+        nodes[i] = c.copy();
+        for (i >>= 1; i >= 1; i >>= 1)
+            nodes[i] = combine(nodes[2 * i], nodes[2 * i + 1]);
+    }
+
+    /**
+     * Returns the encrypted sum of rows `from` (inclusive) to `to` (exclusive).
+     */
+    public SymCipher sum(int from, int to) {
+        if (from < 0 || to > size || from >= to)
+            throw new IllegalArgumentException("Invalid range [" + from + ", " + to + ") of " + size + " rows");
+
+        // left holds the nodes on the left of the range and right the nodes on the right, so that
+        // ids are mostly added in order.
+        SymCipher left = null;
+        SymCipher right = null;
+        for (int l = from + leaves, r = to + leaves; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1)
+                left = add(left, nodes[l++]);
+            if ((r & 1) == 1)
+                right = add(right, nodes[--r]);
+        }
+        return add(left, right);
+    }
+
+    /**
+     * Returns a new cipher holding the sum of the given nodes.
+     */
+    private SymCipher combine(SymCipher c1, SymCipher c2) {
+        if (c1 == null)
+            return c2 == null ? null : c2.copy();
+        return add(c1.copy(), c2);
+    }
+
+    /**
+     * Adds `node` to `sum`, which is owned by the caller, without modifying `node`.
+     */
+    private SymCipher add(SymCipher sum, SymCipher node) {
+        if (node == null)
+            return sum;
+        if (sum == null)
+            return node.copy();
+        return scheme.add(sum, node);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size + " rows");
+    }
+}
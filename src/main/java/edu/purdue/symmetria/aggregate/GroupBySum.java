@@ -0,0 +1,208 @@
+package edu.purdue.symmetria.aggregate;
+
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.crypto.cipher.VectorSymCipher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <pre>
+ * Computes `SELECT key, SUM(value) GROUP BY key` over SymAHE ciphertexts whose group keys are
+ * plaintext or deterministically encrypted.
+ *
+ * Every row is a fresh ciphertext, i.e., a cipher value and a single id, as stored in a column
+ * file. Rows are hashed into a GroupTable that adds the cipher values of each group and only
+ * collects the ids of its rows. Once all rows are added, the ids of every group are sorted and
+ * turned into a cipher in one pass, which is much cheaper than adding a cipher per row since every
+ * add() merges the whole id list of the group.
+ *
+ * With several threads the rows are partitioned by the hash of their key and every partition is
+ * aggregated (and finalized) by a single thread, so no group is shared between threads.
+ *
+ * The rows of a vector (multi-column) aggregation are `columns` consecutive values of `values`,
+ * i.e., row i is values[i * columns] to values[i * columns + columns - 1].
+ * </pre>
+ */
+public class GroupBySum {
+
+    /**
+     * The result of an aggregation: a key and an encrypted sum per group.
+     */
+    public static class Groups {
+        private final long[] keys;
+        private final SymCipher[] sums;
+        private final VectorSymCipher[] vectorSums;
+
+        Groups(long[] keys, SymCipher[] sums, VectorSymCipher[] vectorSums) {
+            this.keys = keys;
+            this.sums = sums;
+            this.vectorSums = vectorSums;
+        }
+
+        /**
+         * Returns the number of groups.
+         */
+        public int size() {
+            return keys.length;
+        }
+
+        public long getKey(int group) {
+            return keys[group];
+        }
+
+        /**
+         * Returns the sum of the given group of a single column aggregation.
+         */
+        public SymCipher getSum(int group) {
+            if (sums == null)
+                throw new IllegalStateException("Not a single column aggregation");
+            return sums[group];
+        }
+
+        /**
+         * Returns the sum of the given group of a vector aggregation.
+         */
+        public VectorSymCipher getVectorSum(int group) {
+            if (vectorSums == null)
+                throw new IllegalStateException("Not a vector aggregation");
+            return vectorSums[group];
+        }
+    }
+
+    private final SymAHE scheme;
+    private final int threads;
+
+    public GroupBySum(SymAHE scheme) {
+        this(scheme, Runtime.getRuntime().availableProcessors());
+    }
+
+    public GroupBySum(SymAHE scheme, int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads must be positive");
+        this.scheme = scheme;
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the encrypted sum of the values of every key. Row i has key `keys[i]`, cipher value
+     * `values[i]` and id `ids[i]`.
+     */
+    public Groups sum(long[] keys, long[] values, long[] ids, int count) {
+        return aggregate(keys, values, 1, ids, count, false);
+    }
+
+    /**
+     * Returns the encrypted sums of the `columns` values of every key.
+     */
+    public Groups sumVector(long[] keys, long[] values, int columns, long[] ids, int count) {
+        return aggregate(keys, values, columns, ids, count, true);
+    }
+
+    private Groups aggregate(long[] keys, long[] values, int columns, long[] ids, int count, boolean vector) {
+        if (threads == 1) {
+            GroupTable table = new GroupTable(columns, scheme.modulo);
+            for (int row = 0; row < count; row++)
+                table.add(keys[row], ids[row], values, row * columns);
+            return finish(table, vector);
+        }
+
+        // counting sort of the rows by partition
+        int[] partitionOf = new int[count];
+        int[] starts = new int[threads + 1];
+        for (int row = 0; row < count; row++) {
+            int partition = partition(keys[row]);
+            partitionOf[row] = partition;
+            starts[partition + 1]++;
+        }
+        for (int partition = 0; partition < threads; partition++)
+            starts[partition + 1] += starts[partition];
+        int[] rows = new int[count];
+        int[] next = starts.clone();
+        for (int row = 0; row < count; row++)
+            rows[next[partitionOf[row]]++] = row;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Groups>> futures = new ArrayList<>();
+            for (int partition = 0; partition < threads; partition++) {
+                int start = starts[partition];
+                int end = starts[partition + 1];
+                futures.add(pool.submit(() -> {
+                    GroupTable table = new GroupTable(columns, scheme.modulo);
+                    for (int i = start; i < end; i++) {
+                        int row = rows[i];
+                        table.add(keys[row], ids[row], values, row * columns);
+                    }
+                    return finish(table, vector);
+                }));
+            }
+
+            List<Groups> parts = new ArrayList<>();
+            for (Future<Groups> future : futures)
+                parts.add(future.get());
+            return concat(parts, vector);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while aggregating", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to aggregate partition", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the partition of the given key, computed from the high bits of its hash since the
+     * low bits select its slot in the GroupTable.
+     */
+    private int partition(long key) {
+        return (int) (((GroupTable.hash(key) >>> 32) * threads) >>> 32);
+    }
+
+    /**
+     * Turns the ids of every group of the given table into a cipher.
+     */
+    private Groups finish(GroupTable table, boolean vector) {
+        int size = table.size();
+        long[] keys = new long[size];
+        SymCipher[] sums = vector ? null : new SymCipher[size];
+        VectorSymCipher[] vectorSums = vector ? new VectorSymCipher[size] : null;
+
+        for (int group = 0; group < size; group++) {
+            keys[group] = table.getKey(group);
+            long[] ids = table.getSortedIds(group);
+            int idCount = table.getIdCount(group);
+            if (vector)
+                vectorSums[group] = new VectorSymCipher(table.getSums(group), scheme.generateCipher(0, ids, idCount));
+            else
+                sums[group] = scheme.generateCipher(table.getSum(group, 0), ids, idCount);
+        }
+        return new Groups(keys, sums, vectorSums);
+    }
+
+    private static Groups concat(List<Groups> parts, boolean vector) {
+        int size = 0;
+        for (Groups part : parts)
+            size += part.size();
+
+        long[] keys = new long[size];
+        SymCipher[] sums = vector ? null : new SymCipher[size];
+        VectorSymCipher[] vectorSums = vector ? new VectorSymCipher[size] : null;
+        int index = 0;
+        for (Groups part : parts) {
+            System.arraycopy(part.keys, 0, keys, index, part.size());
+            if (vector)
+                System.arraycopy(part.vectorSums, 0, vectorSums, index, part.size());
+            else
+                System.arraycopy(part.sums, 0, sums, index, part.size());
+            index += part.size();
+        }
+        return new Groups(keys, sums, vectorSums);
+    }
+}
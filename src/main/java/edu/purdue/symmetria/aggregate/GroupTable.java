@@ -0,0 +1,174 @@
+package edu.purdue.symmetria.aggregate;
+
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.util.Arrays;
+
+/**
+ * <pre>
+ * An open-addressing hash table from long group keys to SymAHE accumulators, used by GroupBySum.
+ *
+ * Groups are numbered in the order they are first seen. Every group keeps the sum of the cipher
+ * values of its rows (one per column) and a buffer of the ids of its rows. Ids are only appended
+ * to the buffer and turned into a cipher once, when the group is finalized, instead of merging
+ * the id list of a cipher for every row.
+ *
+ * Not thread safe.
+ * </pre>
+ */
+class GroupTable {
+
+    private static final int INITIAL_GROUPS = 16;
+    private static final int INITIAL_IDS = 4;
+
+    private final int columns;
+    private final long modulo;
+
+    // group index + 1 of every slot, 0 if the slot is empty. Holds at most half as many groups
+    // as slots.
+    private int[] slots;
+    private int mask;
+
+    // per group: its key, its column sums (at group * columns) and its ids
+    private long[] keys;
+    private long[] sums;
+    private long[][] ids;
+    private int[] idCounts;
+    private boolean[] unsorted;
+    private int groups;
+
+    GroupTable(int columns, long modulo) {
+        this.columns = columns;
+        this.modulo = modulo;
+        this.slots = new int[2 * INITIAL_GROUPS];
+        this.mask = slots.length - 1;
+        this.keys = new long[INITIAL_GROUPS];
+        this.sums = new long[INITIAL_GROUPS * columns];
+        this.ids = new long[INITIAL_GROUPS][];
+        this.idCounts = new int[INITIAL_GROUPS];
+        this.unsorted = new boolean[INITIAL_GROUPS];
+    }
+
+    /**
+     * Mixes the bits of the given key (the finalizer of MurmurHash3). The low bits select the slot
+     * and the high bits the partition of GroupBySum.
+     */
+    static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Adds a row with the given key, id and cipher values. The values of the row are
+     * `values[offset]` to `values[offset + columns - 1]` and must be in the range 0 to modulo - 1.
+     */
+    void add(long key, long id, long[] values, int offset) {
+        int group = group(key);
+
+        int base = group * columns;
+        for (int i = 0; i < columns; i++)
+            sums[base + i] = MathUtils.modAddReduced(sums[base + i], values[offset + i], modulo);
+
+        long[] groupIds = ids[group];
+        int count = idCounts[group];
+        if (groupIds == null)
+            groupIds = ids[group] = new long[INITIAL_IDS];
+        else if (count == groupIds.length)
+            groupIds = ids[group] = Arrays.copyOf(groupIds, 2 * count);
+        if (count > 0 && id < groupIds[count - 1])
+            unsorted[group] = true;
+        groupIds[count] = id;
+        idCounts[group] = count + 1;
+    }
+
+    /**
+     * Returns the index of the group of the given key, adding the group if needed.
+     */
+    private int group(long key) {
+        int slot = (int) hash(key) & mask;
+        while (true) {
+            int group = slots[slot] - 1;
+            if (group < 0)
+                return addGroup(key, slot);
+            if (keys[group] == key)
+                return group;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int addGroup(long key, int slot) {
+        if (groups == keys.length) {
+            int capacity = 2 * groups;
+            keys = Arrays.copyOf(keys, capacity);
+            sums = Arrays.copyOf(sums, capacity * columns);
+            ids = Arrays.copyOf(ids, capacity);
+            idCounts = Arrays.copyOf(idCounts, capacity);
+            unsorted = Arrays.copyOf(unsorted, capacity);
+        }
+        int group = groups++;
+        keys[group] = key;
+
+        if (2 * groups > slots.length)
+            rehash();
+        else
+            slots[slot] = group + 1;
+        return group;
+    }
+
+    /**
+     * Doubles the number of slots and reinserts all groups.
+     */
+    private void rehash() {
+        slots = new int[2 * slots.length];
+        mask = slots.length - 1;
+        for (int group = 0; group < groups; group++) {
+            int slot = (int) hash(keys[group]) & mask;
+            while (slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            slots[slot] = group + 1;
+        }
+    }
+
+    int size() {
+        return groups;
+    }
+
+    long getKey(int group) {
+        return keys[group];
+    }
+
+    /**
+     * Returns the sum of the given column of the given group.
+     */
+    long getSum(int group, int column) {
+        return sums[group * columns + column];
+    }
+
+    /**
+     * Returns the column sums of the given group.
+     */
+    long[] getSums(int group) {
+        int base = group * columns;
+        return Arrays.copyOfRange(sums, base, base + columns);
+    }
+
+    /**
+     * Returns the ids of the given group sorted in increasing order. The first getIdCount() items
+     * are valid.
+     */
+    long[] getSortedIds(int group) {
+        if (unsorted[group]) {
+            Arrays.sort(ids[group], 0, idCounts[group]);
+            unsorted[group] = false;
+        }
+        return ids[group];
+    }
+
+    int getIdCount(int group) {
+        return idCounts[group];
+    }
+}
@@ -0,0 +1,175 @@
+package edu.purdue.symmetria.aggregate;
+
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+
+import java.util.ArrayList;
+
+/**
+ * <pre>
+ * Encrypted SUM (and AVG) over a sliding time window of a stream of SymAHE ciphertexts, e.g., the
+ * events of the last 5 minutes.
+ *
+ * Subtracting expired events from a running sum would keep their ids in the id list of the sum
+ * (canceled pairs or negative cardinalities), so its size and decryption time would grow with the
+ * length of the stream. Instead, time is split into panes of `paneMillis` and the window holds
+ * the sum of every pane of the last `windowPanes` panes. Expired panes are dropped whole, so the
+ * sum only holds the ids of the events in the window.
+ *
+ * Panes are kept in two stacks. New panes are pushed on the back stack, which also keeps the sum
+ * of all its panes. Old panes are popped from the front stack, where every pane also keeps the sum
+ * of itself and all newer panes of the stack. When the front stack is empty the back stack is
+ * moved to it. The window sum is the sum of the oldest front pane, the back stack and the current
+ * pane, so a query adds at most three ciphers and every pane is added O(1) times amortized.
+ *
+ * Events must be added in time order. The window owns its ciphers: given ciphers are copied and
+ * returned ciphers are new objects.
+ * </pre>
+ */
+public class SlidingWindowSum {
+
+    /**
+     * The sum of the events of a pane.
+     */
+    private static class Pane {
+        final long index;
+        final SymCipher sum;
+        final long count;
+
+        // front stack only: the sum and the number of events of this pane and all newer panes of
+        // the front stack
+        SymCipher suffixSum;
+        long suffixCount;
+
+        Pane(long index, SymCipher sum, long count) {
+            this.index = index;
+            this.sum = sum;
+            this.count = count;
+        }
+    }
+
+    private final SymAHE scheme;
+    private final long paneMillis;
+    private final int windowPanes;
+
+    // the top of both stacks is the end of the list, i.e., the oldest pane of the front stack and
+    // the newest pane of the back stack
+    private final ArrayList<Pane> front = new ArrayList<>();
+    private final ArrayList<Pane> back = new ArrayList<>();
+    private SymCipher backSum;
+    private long backCount;
+
+    // the pane events are currently added to
+    private long currentIndex = Long.MIN_VALUE;
+    private SymCipher currentSum;
+    private long currentCount;
+
+    public SlidingWindowSum(SymAHE scheme, long paneMillis, int windowPanes) {
+        if (paneMillis <= 0 || windowPanes <= 0)
+            throw new IllegalArgumentException("paneMillis and windowPanes must be positive");
+        this.scheme = scheme;
+        this.paneMillis = paneMillis;
+        this.windowPanes = windowPanes;
+    }
+
+    /**
+     * Adds an event that happened at the given time.
+     */
+    public void add(long time, SymCipher c) {
+        long index = Math.floorDiv(time, paneMillis);
+        if (index < currentIndex)
+            throw new IllegalArgumentException("Event at " + time + " is older than the current pane");
+        advance(time);
+
+        if (currentSum == null)
+            currentSum = c.copy();
+        else
+            scheme.add(currentSum, c);
+        currentCount++;
+    }
+
+    /**
+     * Moves the window to end at the given time, dropping the panes that expired.
+     */
+    public void advance(long time) {
+        long index = Math.floorDiv(time, paneMillis);
+        if (index > currentIndex) {
+            if (currentSum != null)
+                pushBack(new Pane(currentIndex, currentSum, currentCount));
+            currentIndex = index;
+            currentSum = null;
+            currentCount = 0;
+        }
+
+        // panes older than `oldest` are outside of the window
+        long oldest = currentIndex - windowPanes + 1;
+        while (true) {
+            if (front.isEmpty())
+                flip();
+            if (front.isEmpty() || front.get(front.size() - 1).index >= oldest)
+                break;
+            front.remove(front.size() - 1);
+        }
+    }
+
+    private void pushBack(Pane pane) {
+        back.add(pane);
+        backSum = add(backSum, pane.sum);
+        backCount += pane.count;
+    }
+
+    /**
+     * Moves all panes of the back stack to the front stack, computing their suffix sums.
+     */
+    private void flip() {
+        SymCipher suffixSum = null;
+        long suffixCount = 0;
+        for (int i = back.size() - 1; i >= 0; i--) {
+            Pane pane = back.get(i);
+            suffixSum = add(suffixSum, pane.sum);
+            suffixCount += pane.count;
+            pane.suffixSum = suffixSum.copy();
+            pane.suffixCount = suffixCount;
+            front.add(pane);
+        }
+        back.clear();
+        backSum = null;
+        backCount = 0;
+    }
+
+    /**
+     * Returns the encrypted sum of the events of the window ending at the given time, or null if
+     * the window has no events.
+     */
+    public SymCipher sum(long time) {
+        advance(time);
+        SymCipher sum = null;
+        if (!front.isEmpty())
+            sum = add(sum, front.get(front.size() - 1).suffixSum);
+        sum = add(sum, backSum);
+        return add(sum, currentSum);
+    }
+
+    /**
+     * Returns the number of events of the window ending at the given time. The average of the
+     * window is the decrypted sum divided by the count.
+     */
+    public long count(long time) {
+        advance(time);
+        long count = backCount + currentCount;
+        if (!front.isEmpty())
+            count += front.get(front.size() - 1).suffixCount;
+        return count;
+    }
+
+    /**
+     * Adds `c` to `sum`, which is owned by the caller, without modifying `c`.
+     */
+    private SymCipher add(SymCipher sum, SymCipher c) {
+        if (c == null)
+            return sum;
+        if (sum == null)
+            return c.copy();
+        return scheme.add(sum, c);
+    }
+}
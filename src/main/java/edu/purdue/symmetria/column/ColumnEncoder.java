@@ -0,0 +1,38 @@
+package edu.purdue.symmetria.column;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encrypts values in bulk into the fixed-width representation stored in column files.
+ * Implementations must allow encode() to be called from several threads at once.
+ */
+public interface ColumnEncoder {
+
+    /**
+     * Returns the scheme used to encrypt values.
+     */
+    ColumnFile.Scheme getScheme();
+
+    /**
+     * Returns the number of bytes of a single encrypted value.
+     */
+    int getWidth();
+
+    /**
+     * Returns the modulo used to sum encrypted values without the key, or 0 if the encrypted
+     * values of the scheme cannot be summed this way.
+     */
+    long getRollupModulo();
+
+    /**
+     * Reserves `count` consecutive ids and returns the first one. Schemes that do not use ids
+     * return 0.
+     */
+    long reserveIds(int count);
+
+    /**
+     * Encrypts the first `count` values using the consecutive ids starting at `firstId` and
+     * writes them to `out`.
+     */
+    void encode(long[] values, int count, long firstId, ByteBuffer out);
+}
@@ -0,0 +1,61 @@
+package edu.purdue.symmetria.column;
+
+/**
+ * <pre>
+ * Layout of an encrypted column file. All numbers are big endian.
+ *
+ * header:
+ *   int   magic
+ *   int   version
+ *   byte  scheme
+ *   int   width         bytes per encrypted value
+ *   int   blockRows     maximum number of values per block (version 2)
+ *   long  rollupModulo  modulo of the block rollups or 0 if blocks have no rollups (version 2)
+ *
+ * followed by any number of blocks:
+ *   long  firstId       the id of the first value, the ids of the block are consecutive
+ *   int   count         number of values in the block
+ *   long  rollup        sum of the block values modulo rollupModulo (version 2)
+ *   count * width bytes of encrypted values
+ *
+ * Since the ids of a block are consecutive, the rollup of a block is a SymAHE ciphertext of the
+ * sum of the block whose ids are a single range.
+ * </pre>
+ */
+public final class ColumnFile {
+
+    public static final int MAGIC = 0x53594d43; // "SYMC"
+    public static final int VERSION = 2;
+
+    public static final int DEFAULT_BLOCK_ROWS = 4096;
+
+    /**
+     * Returns the size of the file header of the given version.
+     */
+    static int headerBytes(int version) {
+        int bytes = Integer.BYTES + Integer.BYTES + 1 + Integer.BYTES;
+        if (version >= 2)
+            bytes += Integer.BYTES + Long.BYTES;
+        return bytes;
+    }
+
+    /**
+     * Returns the size of the header of every block of the given version.
+     */
+    static int blockHeaderBytes(int version) {
+        int bytes = Long.BYTES + Integer.BYTES;
+        if (version >= 2)
+            bytes += Long.BYTES;
+        return bytes;
+    }
+
+    /**
+     * The scheme used to encrypt the values of a column.
+     */
+    public enum Scheme {
+        SYM_AHE, SYM_MHE, PAILLIER, ELGAMAL
+    }
+
+    private ColumnFile() {
+    }
+}
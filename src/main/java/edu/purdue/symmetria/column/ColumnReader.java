@@ -0,0 +1,330 @@
+package edu.purdue.symmetria.column;
+
+import edu.purdue.symmetria.crypto.cipher.RangeSymCipher;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the blocks of a column file, either sequentially or through an index of all blocks. See
+ * ColumnFile for the layout.
+ */
+public class ColumnReader implements Closeable {
+
+    // initial number of blocks the index can hold
+    private static final int INDEX_CAPACITY = 64;
+
+    private final FileChannel channel;
+    private final int version;
+    private final ColumnFile.Scheme scheme;
+    private final int width;
+    private final int blockRows;
+    private final long rollupModulo;
+    private final int blockHeaderBytes;
+
+    private final ByteBuffer blockHeader;
+
+    // the id of the first value, the number of values and the rollup of the last block read
+    private long firstId;
+    private int count;
+    private long rollup;
+
+    // index of all blocks, loaded on first use
+    private int blocks = -1;
+    private long[] blockRowStarts;
+    private long[] blockFirstIds;
+    private int[] blockCounts;
+    private long[] blockRollups;
+    private long[] blockPositions;
+    private long rows;
+    private long dataEnd;
+
+    public ColumnReader(String path) throws IOException {
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+
+        ByteBuffer header = ByteBuffer.allocate(ColumnFile.headerBytes(1));
+        if (!readFully(header))
+            throw new RuntimeException("Invalid column file `" + path + "`");
+        header.flip();
+        if (header.getInt() != ColumnFile.MAGIC)
+            throw new RuntimeException("Invalid column file `" + path + "`");
+        this.version = header.getInt();
+        if (version < 1 || version > ColumnFile.VERSION)
+            throw new RuntimeException("Unsupported column file version " + version);
+        this.scheme = ColumnFile.Scheme.values()[header.get()];
+        this.width = header.getInt();
+
+        if (version >= 2) {
+            ByteBuffer extra = ByteBuffer.allocate(ColumnFile.headerBytes(version) - ColumnFile.headerBytes(1));
+            if (!readFully(extra))
+                throw new RuntimeException("Invalid column file `" + path + "`");
+            extra.flip();
+            this.blockRows = extra.getInt();
+            this.rollupModulo = extra.getLong();
+        } else {
+            this.blockRows = 0;
+            this.rollupModulo = 0;
+        }
+
+        this.blockHeaderBytes = ColumnFile.blockHeaderBytes(version);
+        this.blockHeader = ByteBuffer.allocate(blockHeaderBytes);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public ColumnFile.Scheme getScheme() {
+        return scheme;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the maximum number of values per block, or 0 if unknown.
+     */
+    public int getBlockRows() {
+        return blockRows;
+    }
+
+    /**
+     * Returns the modulo of the block rollups, or 0 if the blocks have no rollups.
+     */
+    public long getRollupModulo() {
+        return rollupModulo;
+    }
+
+    /**
+     * Reads the next block and returns its values, or null if there are no more blocks. The
+     * returned buffer is only valid until the next call.
+     */
+    public ByteBuffer nextBlock() throws IOException {
+        blockHeader.clear();
+        if (!readFully(blockHeader))
+            return null;
+        readBlockHeader();
+
+        ByteBuffer values = ByteBuffer.allocate(count * width);
+        if (!readFully(values))
+            throw new RuntimeException("Truncated block with first id " + firstId);
+        values.flip();
+        return values;
+    }
+
+    private void readBlockHeader() {
+        blockHeader.flip();
+        firstId = blockHeader.getLong();
+        count = blockHeader.getInt();
+        rollup = version >= 2 ? blockHeader.getLong() : 0;
+    }
+
+    /**
+     * Returns the id of the first value of the last block read.
+     */
+    public long getFirstId() {
+        return firstId;
+    }
+
+    /**
+     * Returns the number of values of the last block read.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the rollup of the last block read.
+     */
+    public long getRollup() {
+        return rollup;
+    }
+
+    /**
+     * Reads the headers of all blocks. An incomplete block at the end of the file is ignored.
+     */
+    private void loadIndex() throws IOException {
+        if (blocks >= 0)
+            return;
+
+        blocks = 0;
+        blockRowStarts = new long[INDEX_CAPACITY];
+        blockFirstIds = new long[INDEX_CAPACITY];
+        blockCounts = new int[INDEX_CAPACITY];
+        blockRollups = new long[INDEX_CAPACITY];
+        blockPositions = new long[INDEX_CAPACITY];
+
+        long size = channel.size();
+        long position = ColumnFile.headerBytes(version);
+        while (position + blockHeaderBytes <= size) {
+            blockHeader.clear();
+            if (!readFully(blockHeader, position))
+                break;
+            readBlockHeader();
+            long valuesPosition = position + blockHeaderBytes;
+            if (valuesPosition + (long) count * width > size)
+                break;
+
+            if (blocks == blockCounts.length) {
+                int capacity = 2 * blocks;
+                blockRowStarts = Arrays.copyOf(blockRowStarts, capacity);
+                blockFirstIds = Arrays.copyOf(blockFirstIds, capacity);
+                blockCounts = Arrays.copyOf(blockCounts, capacity);
+                blockRollups = Arrays.copyOf(blockRollups, capacity);
+                blockPositions = Arrays.copyOf(blockPositions, capacity);
+            }
+            blockRowStarts[blocks] = rows;
+            blockFirstIds[blocks] = firstId;
+            blockCounts[blocks] = count;
+            blockRollups[blocks] = rollup;
+            blockPositions[blocks] = valuesPosition;
+            blocks++;
+
+            rows += count;
+            position = valuesPosition + (long) count * width;
+        }
+        dataEnd = position;
+    }
+
+    /**
+     * Returns the total number of values of the column.
+     */
+    public long getRows() throws IOException {
+        loadIndex();
+        return rows;
+    }
+
+    /**
+     * Returns the number of blocks of the column.
+     */
+    public int getBlocks() throws IOException {
+        loadIndex();
+        return blocks;
+    }
+
+    /**
+     * Returns the file position after the last complete block.
+     */
+    long getDataEnd() throws IOException {
+        loadIndex();
+        return dataEnd;
+    }
+
+    // the index of a block, valid once the index is loaded, e.g., by getBlocks()
+
+    long getBlockRowStart(int block) {
+        return blockRowStarts[block];
+    }
+
+    long getBlockFirstId(int block) {
+        return blockFirstIds[block];
+    }
+
+    int getBlockCount(int block) {
+        return blockCounts[block];
+    }
+
+    long getBlockRollup(int block) {
+        return blockRollups[block];
+    }
+
+    long getBlockPosition(int block) {
+        return blockPositions[block];
+    }
+
+    /**
+     * Returns the index of the block that holds the given row.
+     */
+    private int findBlock(long row) {
+        int index = Arrays.binarySearch(blockRowStarts, 0, blocks, row);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * <pre>
+     * Returns the SymAHE ciphertext of the sum of rows `fromRow` (inclusive) to `toRow` (exclusive).
+     *
+     * Blocks that are fully covered by the range contribute their rollup and only the values of
+     * the two blocks at the edges of the range are read, so the cost is proportional to the number
+     * of blocks and not to the number of rows. The ids of every block are a single range.
+     * </pre>
+     */
+    public SymCipher sum(long fromRow, long toRow) throws IOException {
+        if (rollupModulo == 0)
+            throw new RuntimeException("Column has no rollups");
+        loadIndex();
+        if (fromRow < 0 || toRow > rows || fromRow >= toRow)
+            throw new IllegalArgumentException("Invalid range [" + fromRow + ", " + toRow + ") of " + rows + " rows");
+
+        SymCipher sum = null;
+        for (int block = findBlock(fromRow); block < blocks && blockRowStarts[block] < toRow; block++) {
+            long rowStart = blockRowStarts[block];
+            int from = (int) (Math.max(fromRow, rowStart) - rowStart);
+            int to = (int) (Math.min(toRow, rowStart + blockCounts[block]) - rowStart);
+
+            long value;
+            if (from == 0 && to == blockCounts[block])
+                value = blockRollups[block];
+            else
+                value = sumValues(block, from, to);
+
+            SymCipher part = new RangeSymCipher(value, blockFirstIds[block] + from, to - from);
+            if (sum == null)
+                sum = part;
+            else
+                sum.add(part, rollupModulo);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the sum of the values `from` (inclusive) to `to` (exclusive) of the given block.
+     */
+    private long sumValues(int block, int from, int to) throws IOException {
+        ByteBuffer values = ByteBuffer.allocate((to - from) * width);
+        if (!readFully(values, blockPositions[block] + (long) from * width))
+            throw new RuntimeException("Truncated block with first id " + blockFirstIds[block]);
+        values.flip();
+
+        long sum = 0;
+        while (values.hasRemaining())
+            sum = MathUtils.modAddReduced(sum, values.getLong(), rollupModulo);
+        return sum;
+    }
+
+    /**
+     * Fills the given buffer. Returns false if the end of the file was reached first.
+     */
+    private boolean readFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining())
+            if (channel.read(buf) < 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Fills the given buffer reading from the given file position.
+     */
+    private boolean readFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int read = channel.read(buf, position);
+            if (read < 0)
+                return false;
+            position += read;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,143 @@
+package edu.purdue.symmetria.column;
+
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes blocks of encrypted values to a column file. See ColumnFile for the layout.
+ */
+public class ColumnWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final ColumnFile.Scheme scheme;
+    private final int width;
+    private final int blockRows;
+    private final long rollupModulo;
+
+    private final ByteBuffer blockHeader = ByteBuffer.allocate(ColumnFile.blockHeaderBytes(ColumnFile.VERSION));
+
+    public ColumnWriter(String path, ColumnFile.Scheme scheme, int width) throws IOException {
+        this(path, scheme, width, ColumnFile.DEFAULT_BLOCK_ROWS, 0);
+    }
+
+    public ColumnWriter(String path, ColumnEncoder encoder) throws IOException {
+        this(path, encoder.getScheme(), encoder.getWidth(), ColumnFile.DEFAULT_BLOCK_ROWS, encoder.getRollupModulo());
+    }
+
+    /**
+     * Creates a new column file.
+     *
+     * @param blockRows    the maximum number of values per block
+     * @param rollupModulo the modulo used to pre-aggregate every block, or 0 to not store rollups
+     */
+    public ColumnWriter(String path, ColumnFile.Scheme scheme, int width, int blockRows, long rollupModulo)
+            throws IOException {
+        this.scheme = scheme;
+        this.width = width;
+        this.blockRows = blockRows;
+        this.rollupModulo = rollupModulo;
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        ByteBuffer header = ByteBuffer.allocate(ColumnFile.headerBytes(ColumnFile.VERSION));
+        header.putInt(ColumnFile.MAGIC);
+        header.putInt(ColumnFile.VERSION);
+        header.put((byte) scheme.ordinal());
+        header.putInt(width);
+        header.putInt(blockRows);
+        header.putLong(rollupModulo);
+        header.flip();
+        writeFully(header);
+    }
+
+    /**
+     * Opens an existing column file to append blocks to it. A block left incomplete by a crash
+     * is removed.
+     */
+    private ColumnWriter(String path) throws IOException {
+        long end;
+        try (ColumnReader reader = new ColumnReader(path)) {
+            if (reader.getVersion() != ColumnFile.VERSION)
+                throw new RuntimeException("Cannot append to column file version " + reader.getVersion());
+            this.scheme = reader.getScheme();
+            this.width = reader.getWidth();
+            this.blockRows = reader.getBlockRows();
+            this.rollupModulo = reader.getRollupModulo();
+            end = reader.getDataEnd();
+        }
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.WRITE);
+        this.channel.truncate(end);
+        this.channel.position(end);
+    }
+
+    /**
+     * Opens an existing column file to append blocks to it.
+     */
+    public static ColumnWriter append(String path) throws IOException {
+        return new ColumnWriter(path);
+    }
+
+    public ColumnFile.Scheme getScheme() {
+        return scheme;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Writes `count` encrypted values whose ids are consecutive and start at `firstId`. The
+     * values are read from the position to the limit of `values` and are split in blocks of at
+     * most `blockRows` values.
+     */
+    public void writeBlock(long firstId, int count, ByteBuffer values) throws IOException {
+        if (values.remaining() != count * width)
+            throw new RuntimeException("Expected " + count * width + " bytes but got " + values.remaining());
+
+        int start = values.position();
+        for (int offset = 0; offset < count; offset += blockRows) {
+            int blockCount = Math.min(blockRows, count - offset);
+            ByteBuffer block = values.duplicate();
+            block.position(start + offset * width);
+            block.limit(start + (offset + blockCount) * width);
+
+            blockHeader.clear();
+            blockHeader.putLong(firstId + offset);
+            blockHeader.putInt(blockCount);
+            blockHeader.putLong(rollup(block, blockCount));
+            blockHeader.flip();
+            writeFully(blockHeader);
+            writeFully(block);
+        }
+        values.position(values.limit());
+    }
+
+    /**
+     * Returns the sum of the values of the given block, or 0 if the column has no rollups.
+     */
+    private long rollup(ByteBuffer block, int count) {
+        if (rollupModulo == 0)
+            return 0;
+        long sum = 0;
+        int position = block.position();
+        for (int i = 0; i < count; i++)
+            sum = MathUtils.modAddReduced(sum, block.getLong(position + i * Long.BYTES), rollupModulo);
+        return sum;
+    }
+
+    private void writeFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining())
+            channel.write(buf);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
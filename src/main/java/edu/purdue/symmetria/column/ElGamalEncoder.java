@@ -0,0 +1,49 @@
+package edu.purdue.symmetria.column;
+
+import edu.purdue.symmetria.crypto.ElGamal;
+import edu.purdue.symmetria.crypto.cipher.ElGamalCipher;
+import edu.purdue.symmetria.utils.ByteUtils;
+
+import java.nio.ByteBuffer;
+
+public class ElGamalEncoder implements ColumnEncoder {
+
+    private final ElGamal scheme;
+
+    // bytes of each of the two components, both are numbers modulo n
+    private final int componentWidth;
+
+    public ElGamalEncoder(ElGamal scheme) {
+        this.scheme = scheme;
+        this.componentWidth = (scheme.n.bitLength() + 7) / 8;
+    }
+
+    @Override
+    public ColumnFile.Scheme getScheme() {
+        return ColumnFile.Scheme.ELGAMAL;
+    }
+
+    @Override
+    public int getWidth() {
+        return 2 * componentWidth;
+    }
+
+    @Override
+    public long getRollupModulo() {
+        return 0;
+    }
+
+    @Override
+    public long reserveIds(int count) {
+        return 0;
+    }
+
+    @Override
+    public void encode(long[] values, int count, long firstId, ByteBuffer out) {
+        for (int i = 0; i < count; i++) {
+            ElGamalCipher c = scheme.encrypt(values[i]);
+            ByteUtils.writeUnsigned(c.c1, out, componentWidth);
+            ByteUtils.writeUnsigned(c.c2, out, componentWidth);
+        }
+    }
+}
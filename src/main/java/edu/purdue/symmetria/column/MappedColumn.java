@@ -0,0 +1,230 @@
+package edu.purdue.symmetria.column;
+
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * <pre>
+ * A SYM_AHE column file with rollups, mapped into memory, for servers that answer many sums over
+ * the same column. See ColumnFile for the layout.
+ *
+ * sum() answers a batch of row ranges with a single pass over the blocks: the ends of all ranges
+ * are sorted and the sum of the rows before every end is computed from the rollups of the full
+ * blocks and the values of the partial ones, so every mapped value is read at most once per batch
+ * no matter how many ranges overlap it.
+ *
+ * Files of up to 2 GB are supported.
+ * </pre>
+ */
+public class MappedColumn implements Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int width;
+    private final long rollupModulo;
+
+    private final int blocks;
+    private final long rows;
+    private final long[] blockRowStarts;
+    private final long[] blockFirstIds;
+    private final int[] blockCounts;
+    private final long[] blockRollups;
+    private final long[] blockPositions;
+
+    // the blocks in the order of their first id, to find the row of an id
+    private final long[] sortedFirstIds;
+    private final int[] sortedBlocks;
+
+    public MappedColumn(String path) throws IOException {
+        long end;
+        try (ColumnReader reader = new ColumnReader(path)) {
+            if (reader.getScheme() != ColumnFile.Scheme.SYM_AHE || reader.getRollupModulo() == 0)
+                throw new RuntimeException("Column `" + path + "` is not a SYM_AHE column with rollups");
+            this.width = reader.getWidth();
+            this.rollupModulo = reader.getRollupModulo();
+            this.blocks = reader.getBlocks();
+            this.rows = reader.getRows();
+            end = reader.getDataEnd();
+
+            blockRowStarts = new long[blocks];
+            blockFirstIds = new long[blocks];
+            blockCounts = new int[blocks];
+            blockRollups = new long[blocks];
+            blockPositions = new long[blocks];
+            for (int block = 0; block < blocks; block++) {
+                blockRowStarts[block] = reader.getBlockRowStart(block);
+                blockFirstIds[block] = reader.getBlockFirstId(block);
+                blockCounts[block] = reader.getBlockCount(block);
+                blockRollups[block] = reader.getBlockRollup(block);
+                blockPositions[block] = reader.getBlockPosition(block);
+            }
+        }
+        if (end > Integer.MAX_VALUE)
+            throw new RuntimeException("Column `" + path + "` is larger than 2 GB");
+
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        this.map = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+
+        long[] keys = new long[blocks];
+        Integer[] order = new Integer[blocks];
+        for (int block = 0; block < blocks; block++)
+            order[block] = block;
+        Arrays.sort(order, (a, b) -> Long.compare(blockFirstIds[a], blockFirstIds[b]));
+        sortedBlocks = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            sortedBlocks[i] = order[i];
+            keys[i] = blockFirstIds[order[i]];
+        }
+        sortedFirstIds = keys;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public long getRollupModulo() {
+        return rollupModulo;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public int getBlocks() {
+        return blocks;
+    }
+
+    public long getBlockRowStart(int block) {
+        return blockRowStarts[block];
+    }
+
+    public long getBlockFirstId(int block) {
+        return blockFirstIds[block];
+    }
+
+    public int getBlockCount(int block) {
+        return blockCounts[block];
+    }
+
+    /**
+     * Returns the file position of the first value of the given block.
+     */
+    public long getBlockPosition(int block) {
+        return blockPositions[block];
+    }
+
+    /**
+     * Returns the index of the block that holds the given row.
+     */
+    public int findBlock(long row) {
+        int index = Arrays.binarySearch(blockRowStarts, 0, blocks, row);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Returns the row encrypted with the given id, or -1 if no row of the column has it.
+     */
+    public long findRow(long id) {
+        int index = Arrays.binarySearch(sortedFirstIds, id);
+        if (index < 0)
+            index = -index - 2;
+        if (index < 0)
+            return -1;
+        int block = sortedBlocks[index];
+        long offset = id - blockFirstIds[block];
+        return offset < blockCounts[block] ? blockRowStarts[block] + offset : -1;
+    }
+
+    /**
+     * Returns the encrypted value of the given row.
+     */
+    public long getValue(long row) {
+        int block = findBlock(row);
+        return map.getLong((int) (blockPositions[block] + (row - blockRowStarts[block]) * width));
+    }
+
+    /**
+     * <pre>
+     * Writes to out[i] the sum of the encrypted values of rows fromRows[i] (inclusive) to
+     * toRows[i] (exclusive), modulo the rollup modulo, for the first `count` ranges.
+     *
+     * The ids of the sum of a range are the ids of its rows, which are consecutive within every
+     * block, see findBlock().
+     * </pre>
+     */
+    public void sum(long[] fromRows, long[] toRows, int count, long[] out) {
+        long[] ends = new long[2 * count];
+        for (int i = 0; i < count; i++) {
+            if (fromRows[i] < 0 || toRows[i] > rows || fromRows[i] >= toRows[i])
+                throw new IllegalArgumentException("Invalid range [" + fromRows[i] + ", " + toRows[i] + ") of " + rows + " rows");
+            ends[2 * i] = fromRows[i];
+            ends[2 * i + 1] = toRows[i];
+        }
+        Arrays.sort(ends);
+
+        // the sum of the rows before every end, in one pass
+        long[] prefixes = new long[ends.length];
+        int block = 0;
+        long blocksSum = 0;
+        long partialRow = 0;
+        long partialSum = 0;
+        for (int i = 0; i < ends.length; i++) {
+            long end = ends[i];
+            while (block < blocks && blockRowStarts[block] + blockCounts[block] <= end) {
+                blocksSum = MathUtils.modAddReduced(blocksSum, blockRollups[block], rollupModulo);
+                block++;
+            }
+            if (block == blocks || blockRowStarts[block] >= end) {
+                prefixes[i] = blocksSum;
+                continue;
+            }
+            // continue the partial sum of the block if the previous end was in it too
+            if (partialRow < blockRowStarts[block] || partialRow > end) {
+                partialRow = blockRowStarts[block];
+                partialSum = 0;
+            }
+            int position = (int) (blockPositions[block] + (partialRow - blockRowStarts[block]) * width);
+            for (; partialRow < end; partialRow++, position += width)
+                partialSum = MathUtils.modAddReduced(partialSum, map.getLong(position), rollupModulo);
+            prefixes[i] = MathUtils.modAddReduced(blocksSum, partialSum, rollupModulo);
+        }
+
+        for (int i = 0; i < count; i++) {
+            long from = prefixes[Arrays.binarySearch(ends, fromRows[i])];
+            long to = prefixes[Arrays.binarySearch(ends, toRows[i])];
+            long sum = to - from;
+            out[i] = sum < 0 ? sum + rollupModulo : sum;
+        }
+    }
+
+    /**
+     * Returns the sum of the encrypted values of rows `fromRow` (inclusive) to `toRow` (exclusive).
+     */
+    public long sum(long fromRow, long toRow) {
+        long[] out = new long[1];
+        sum(new long[]{fromRow}, new long[]{toRow}, 1, out);
+        return out[0];
+    }
+
+    /**
+     * Transfers `count` bytes of the file starting at `position` to `target`, without copying
+     * them through the heap. Returns the number of bytes transferred, which may be less than
+     * `count` if `target` is non-blocking.
+     */
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        return channel.transferTo(position, count, target);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,45 @@
+package edu.purdue.symmetria.column;
+
+import edu.purdue.symmetria.crypto.Paillier;
+import edu.purdue.symmetria.utils.ByteUtils;
+
+import java.nio.ByteBuffer;
+
+public class PaillierEncoder implements ColumnEncoder {
+
+    private final Paillier scheme;
+
+    // a ciphertext is a number modulo n^2
+    private final int width;
+
+    public PaillierEncoder(Paillier scheme) {
+        this.scheme = scheme;
+        this.width = (scheme.n.multiply(scheme.n).bitLength() + 7) / 8;
+    }
+
+    @Override
+    public ColumnFile.Scheme getScheme() {
+        return ColumnFile.Scheme.PAILLIER;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public long getRollupModulo() {
+        return 0;
+    }
+
+    @Override
+    public long reserveIds(int count) {
+        return 0;
+    }
+
+    @Override
+    public void encode(long[] values, int count, long firstId, ByteBuffer out) {
+        for (int i = 0; i < count; i++)
+            ByteUtils.writeUnsigned(scheme.encrypt(values[i]), out, width);
+    }
+}
@@ -0,0 +1,65 @@
+package edu.purdue.symmetria.column;
+
+import edu.purdue.symmetria.crypto.Partition;
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.nio.ByteBuffer;
+
+public class SymAHEEncoder implements ColumnEncoder {
+
+    private final SymAHE scheme;
+
+    // the partition ids are reserved from, or null to reserve them from the scheme
+    private final Partition partition;
+
+    // reused between calls of the same thread
+    private final ThreadLocal<long[]> randNums = ThreadLocal.withInitial(() -> new long[0]);
+
+    public SymAHEEncoder(SymAHE scheme) {
+        this(scheme, null);
+    }
+
+    /**
+     * Creates an encoder whose ids are reserved from `partition`, so the rows of the column get
+     * consecutive ids even when other columns are encrypted with the same scheme.
+     */
+    public SymAHEEncoder(SymAHE scheme, Partition partition) {
+        this.scheme = scheme;
+        this.partition = partition;
+    }
+
+    @Override
+    public ColumnFile.Scheme getScheme() {
+        return ColumnFile.Scheme.SYM_AHE;
+    }
+
+    @Override
+    public int getWidth() {
+        return Long.BYTES;
+    }
+
+    @Override
+    public long getRollupModulo() {
+        return scheme.modulo;
+    }
+
+    @Override
+    public long reserveIds(int count) {
+        if (partition != null)
+            return partition.reserveIds(count);
+        return scheme.reserveIds(count);
+    }
+
+    @Override
+    public void encode(long[] values, int count, long firstId, ByteBuffer out) {
+        long[] r = randNums.get();
+        if (r.length < count) {
+            r = new long[count];
+            randNums.set(r);
+        }
+        scheme.getRandNums(firstId, count, scheme.modulo, r);
+        for (int i = 0; i < count; i++)
+            out.putLong(MathUtils.modAdd(values[i], r[i], scheme.modulo));
+    }
+}
@@ -0,0 +1,52 @@
+package edu.purdue.symmetria.column;
+
+import edu.purdue.symmetria.crypto.SymMHE;
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.nio.ByteBuffer;
+
+public class SymMHEEncoder implements ColumnEncoder {
+
+    private final SymMHE scheme;
+
+    // reused between calls of the same thread
+    private final ThreadLocal<long[]> randNums = ThreadLocal.withInitial(() -> new long[0]);
+
+    public SymMHEEncoder(SymMHE scheme) {
+        this.scheme = scheme;
+    }
+
+    @Override
+    public ColumnFile.Scheme getScheme() {
+        return ColumnFile.Scheme.SYM_MHE;
+    }
+
+    @Override
+    public int getWidth() {
+        return Long.BYTES;
+    }
+
+    @Override
+    public long getRollupModulo() {
+        return 0;
+    }
+
+    @Override
+    public long reserveIds(int count) {
+        return scheme.reserveIds(count);
+    }
+
+    @Override
+    public void encode(long[] values, int count, long firstId, ByteBuffer out) {
+        long[] r = randNums.get();
+        if (r.length < count) {
+            r = new long[count];
+            randNums.set(r);
+        }
+        scheme.getRandNums(firstId, count, scheme.modulo, r);
+        for (int i = 0; i < count; i++) {
+            long obf = MathUtils.modPow(scheme.g, r[i], scheme.modulo);
+            out.putLong(MathUtils.modMul(values[i], obf, scheme.modulo));
+        }
+    }
+}
@@ -1,6 +1,15 @@
 package edu.purdue.symmetria.crypto;
 
+import edu.purdue.symmetria.metrics.Metrics;
+
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class AsymPHE<C> extends CryptoScheme {
 
@@ -9,16 +18,68 @@ public abstract class AsymPHE<C> extends CryptoScheme {
     // bitlength for modulo n
     static final int BITLENGTH = 2048;
 
+    // messages encrypted or decrypted by one task of encryptAll() and decryptAll()
+    private static final int BULK_CHUNK = 64;
+
+    // the threads of encryptAll() and decryptAll() with a thread count, kept across calls and
+    // stopped after a minute without work
+    private static final ExecutorService BULK_POOL = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "AsymPHE-bulk");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     // modulo
     public BigInteger n;
 
     // threshold that separates positive from negative numbers
     public BigInteger negThreshold;
 
+    // optional source of precomputed blinding factors, see setRandomnessPool()
+    private volatile RandomnessPool randomnessPool;
+
     public AsymPHE(String publicKeyPath, String privateKeyPath) {
         super(publicKeyPath, privateKeyPath);
     }
 
+    /**
+     * Returns base^exponent mod modulus. All modPow() calls of the schemes go through here so they
+     * can be measured.
+     */
+    static BigInteger modPow(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        if (!Metrics.ENABLED)
+            return base.modPow(exponent, modulus);
+        long start = System.nanoTime();
+        BigInteger result = base.modPow(exponent, modulus);
+        Metrics.MODPOW_CALLS.increment();
+        Metrics.MODPOW_NANOS.record(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Returns a new random blinding factor, i.e., the part of an encryption that does not depend on
+     * the message.
+     */
+    abstract BigInteger[] newBlinding();
+
+    /**
+     * Returns a blinding factor for the next encryption, from the randomness pool if one is set and
+     * it is not empty.
+     */
+    BigInteger[] nextBlinding() {
+        RandomnessPool pool = randomnessPool;
+        BigInteger[] blinding = pool == null ? null : pool.poll();
+        return blinding != null ? blinding : newBlinding();
+    }
+
+    /**
+     * Sets the pool encrypt() takes blinding factors from, or computes them inline if null. The
+     * pool must have been created for this scheme.
+     */
+    public void setRandomnessPool(RandomnessPool randomnessPool) {
+        this.randomnessPool = randomnessPool;
+    }
+
     /**
      * Generate a key for the cipher.
      */
@@ -34,6 +95,126 @@ public abstract class AsymPHE<C> extends CryptoScheme {
      */
     public abstract long decrypt(C ciphertext);
 
+    /**
+     * Encrypts `messages` into `out` using `threads` threads.
+     */
+    public void encryptAll(long[] messages, C[] out, int threads) {
+        if (out.length < messages.length)
+            throw new IllegalArgumentException("Expected room for " + messages.length + " ciphertexts but got " + out.length);
+        runAll(messages.length, threads, (from, to) -> encryptAll(messages, out, from, to));
+    }
+
+    /**
+     * Encrypts `messages` into `out` by running chunks of BULK_CHUNK messages on the given executor,
+     * or on the calling thread if it is null. Returns when all messages are encrypted.
+     */
+    public void encryptAll(long[] messages, C[] out, ExecutorService executor) {
+        if (out.length < messages.length)
+            throw new IllegalArgumentException("Expected room for " + messages.length + " ciphertexts but got " + out.length);
+        runAll(messages.length, executor, (from, to) -> encryptAll(messages, out, from, to));
+    }
+
+    private void encryptAll(long[] messages, C[] out, int from, int to) {
+        for (int i = from; i < to; i++)
+            out[i] = encrypt(messages[i]);
+    }
+
+    /**
+     * Decrypts `ciphertexts` into `out` using `threads` threads.
+     */
+    public void decryptAll(C[] ciphertexts, long[] out, int threads) {
+        if (out.length < ciphertexts.length)
+            throw new IllegalArgumentException("Expected room for " + ciphertexts.length + " messages but got " + out.length);
+        runAll(ciphertexts.length, threads, (from, to) -> decryptAll(ciphertexts, out, from, to));
+    }
+
+    /**
+     * Decrypts `ciphertexts` into `out` by running chunks of BULK_CHUNK ciphertexts on the given
+     * executor, or on the calling thread if it is null. Returns when all ciphertexts are decrypted.
+     */
+    public void decryptAll(C[] ciphertexts, long[] out, ExecutorService executor) {
+        if (out.length < ciphertexts.length)
+            throw new IllegalArgumentException("Expected room for " + ciphertexts.length + " messages but got " + out.length);
+        runAll(ciphertexts.length, executor, (from, to) -> decryptAll(ciphertexts, out, from, to));
+    }
+
+    private void decryptAll(C[] ciphertexts, long[] out, int from, int to) {
+        for (int i = from; i < to; i++)
+            out[i] = decrypt(ciphertexts[i]);
+    }
+
+    private interface Chunk {
+        void run(int from, int to);
+    }
+
+    /**
+     * Runs the chunks on the calling thread and `threads - 1` threads of BULK_POOL, which take
+     * chunks until none are left.
+     */
+    private static void runAll(int count, int threads, Chunk chunk) {
+        if (threads <= 1 || count <= BULK_CHUNK) {
+            chunk.run(0, count);
+            return;
+        }
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            try {
+                int from;
+                while ((from = next.getAndAdd(BULK_CHUNK)) < count)
+                    chunk.run(from, Math.min(count, from + BULK_CHUNK));
+            } catch (RuntimeException e) {
+                // stop the other workers
+                next.set(count);
+                throw e;
+            }
+        };
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 1; i < threads; i++)
+            futures.add(BULK_POOL.submit(worker));
+        try {
+            worker.run();
+            for (Future<?> future : futures)
+                future.get();
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Unable to run bulk operation", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running bulk operation", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to run bulk operation", e.getCause());
+        } finally {
+            next.set(count);
+            for (Future<?> future : futures)
+                future.cancel(true);
+        }
+    }
+
+    private static void runAll(int count, ExecutorService executor, Chunk chunk) {
+        if (executor == null) {
+            chunk.run(0, count);
+            return;
+        }
+        // small chunks, so threads that finish early take over the remaining work
+        List<Future<?>> futures = new ArrayList<>();
+        for (int from = 0; from < count; from += BULK_CHUNK) {
+            int start = from;
+            int end = Math.min(count, from + BULK_CHUNK);
+            futures.add(executor.submit(() -> chunk.run(start, end)));
+        }
+        try {
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running bulk operation", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to run bulk operation", e.getCause());
+        } finally {
+            for (Future<?> future : futures)
+                future.cancel(true);
+        }
+    }
+
     /**
      * Setup the threshold between positive and negative numbers.
      */
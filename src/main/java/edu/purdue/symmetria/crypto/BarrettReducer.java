@@ -0,0 +1,43 @@
+package edu.purdue.symmetria.crypto;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+
+/**
+ * Multiplies modulo a fixed modulus with Barrett reduction. BigInteger.mod() is a long division
+ * that costs several times a multiplication, while Barrett reduction only needs two more
+ * multiplications and shifts.
+ */
+class BarrettReducer implements Serializable {
+    private static final long serialVersionUID = 9092058214639909050L;
+
+    private final BigInteger modulus;
+
+    // k is the bit length of the modulus and mu = floor(4^k / modulus)
+    private final int k;
+    private final BigInteger mu;
+
+    BarrettReducer(BigInteger modulus) {
+        this.modulus = modulus;
+        this.k = modulus.bitLength();
+        this.mu = BigInteger.ONE.shiftLeft(2 * k).divide(modulus);
+    }
+
+    /**
+     * Returns x mod modulus for x in the range 0 to modulus^2 - 1.
+     */
+    BigInteger reduce(BigInteger x) {
+        BigInteger q = x.shiftRight(k - 1).multiply(mu).shiftRight(k + 1);
+        BigInteger r = x.subtract(q.multiply(modulus));
+        while (r.compareTo(modulus) >= 0)
+            r = r.subtract(modulus);
+        return r;
+    }
+
+    /**
+     * Returns a * b mod modulus for a and b in the range 0 to modulus - 1.
+     */
+    BigInteger mulMod(BigInteger a, BigInteger b) {
+        return reduce(a.multiply(b));
+    }
+}
@@ -6,6 +6,7 @@ import edu.purdue.symmetria.utils.FileUtils;
 
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
 
 public class ElGamal extends AsymPHE<ElGamalCipher> {
 
@@ -16,6 +17,16 @@ public class ElGamal extends AsymPHE<ElGamalCipher> {
     private final BigInteger h;
     private final BigInteger x; // private key
 
+    // n - 1 - x, so that c1^(n-1-x) = c1^-x and decryption needs no inverse
+    private final BigInteger decryptExponent;
+
+    // window bits of the fixed-base tables
+    private static final int TABLE_WINDOW = 5;
+
+    // fixed-base tables of g and h, null if disabled
+    private final FixedBaseTable gTable;
+    private final FixedBaseTable hTable;
+
     // pre-computation
     private BigInteger preC1;
     private BigInteger preS;
@@ -25,6 +36,14 @@ public class ElGamal extends AsymPHE<ElGamalCipher> {
     }
 
     public ElGamal(int negDivisor, String publicKeyPath, String privateKeyPath) {
+        this(negDivisor, publicKeyPath, privateKeyPath, true);
+    }
+
+    /**
+     * If `fixedBaseTables` is true, g^r and h^r are computed with precomputed tables of the powers
+     * of g and h. The tables are saved next to the public key so they are only built once.
+     */
+    public ElGamal(int negDivisor, String publicKeyPath, String privateKeyPath, boolean fixedBaseTables) {
         super(publicKeyPath, privateKeyPath);
 
         // load keys
@@ -34,10 +53,21 @@ public class ElGamal extends AsymPHE<ElGamalCipher> {
         h = pk.h;
         x = (BigInteger) privateKey;
 
+        BigInteger n1 = n.subtract(BigInteger.ONE);
+        decryptExponent = x == null ? null : n1.subtract(x.mod(n1));
+
+        if (fixedBaseTables) {
+            gTable = FixedBaseTable.load(publicKeyPath + ".g.table", g, n, TABLE_WINDOW, BITLENGTH);
+            hTable = FixedBaseTable.load(publicKeyPath + ".h.table", h, n, TABLE_WINDOW, BITLENGTH);
+        } else {
+            gTable = null;
+            hTable = null;
+        }
+
         if (!ENABLE_RANDOM) {
             BigInteger r = new BigInteger(BITLENGTH, RNG);
-            preC1 = g.modPow(r, n);
-            preS = h.modPow(r, n);
+            preC1 = modPow(g, r, n);
+            preS = modPow(h, r, n);
         }
 
         setupNegative(negDivisor);
@@ -45,26 +75,41 @@ public class ElGamal extends AsymPHE<ElGamalCipher> {
 
     @Override
     public void keyGen() {
-        BigInteger n = BigInteger.probablePrime(BITLENGTH, RNG);
-        BigInteger g = BigInteger.probablePrime(BITLENGTH, RNG);
+        keyGen(BITLENGTH, publicKeyPath, privateKeyPath);
+    }
+
+    /**
+     * Generates keys with a modulus n of the given bit length and saves them to the given paths.
+     */
+    public static void keyGen(int bits, String publicKeyPath, String privateKeyPath) {
+        BigInteger n = BigInteger.probablePrime(bits, RNG);
+        BigInteger g = BigInteger.probablePrime(bits, RNG);
         BigInteger x;
         do {
-            x = BigInteger.probablePrime(BITLENGTH, RNG);
+            x = BigInteger.probablePrime(bits, RNG);
         } while (!x.gcd(n).equals(BigInteger.ONE));
-        BigInteger h = g.modPow(x, n);
+        BigInteger h = modPow(g, x, n);
 
         FileUtils.saveObjectToFile(x, privateKeyPath);
         FileUtils.saveObjectToFile(new ElGamalPK(n, g, h), publicKeyPath);
     }
 
+    @Override
+    BigInteger[] newBlinding() {
+        BigInteger r = new BigInteger(BITLENGTH, RNG);
+        if (gTable != null)
+            return new BigInteger[]{gTable.pow(r), hTable.pow(r)};
+        return new BigInteger[]{modPow(g, r, n), modPow(h, r, n)};
+    }
+
     @Override
     public ElGamalCipher encrypt(long m) {
         BigInteger c1 = preC1;
         BigInteger s = preS;
         if (ENABLE_RANDOM) {
-            BigInteger r = new BigInteger(BITLENGTH, RNG);
-            c1 = g.modPow(r, n);
-            s = h.modPow(r, n);
+            BigInteger[] blinding = nextBlinding();
+            c1 = blinding[0];
+            s = blinding[1];
         }
         BigInteger c2 = BigInteger.valueOf(m).multiply(s).mod(n);
         return new ElGamalCipher(c1, c2);
@@ -72,14 +117,48 @@ public class ElGamal extends AsymPHE<ElGamalCipher> {
 
     @Override
     public long decrypt(ElGamalCipher c) {
-        BigInteger m = c.c2.multiply(c.c1.modPow(x, n).modInverse(n)).mod(n);
+        BigInteger m = c.c2.multiply(modPow(c.c1, decryptExponent, n)).mod(n);
         return handleNegative(m).longValue();
     }
 
+    /**
+     * Encrypts the given messages using all cores. See encryptAll(long[], Object[], ExecutorService)
+     * to use a given executor.
+     */
+    public ElGamalCipher[] encryptAll(long[] messages) {
+        ElGamalCipher[] ciphertexts = new ElGamalCipher[messages.length];
+        encryptAll(messages, ciphertexts, Runtime.getRuntime().availableProcessors());
+        return ciphertexts;
+    }
+
+    /**
+     * Decrypts the given ciphertexts using all cores.
+     */
+    public long[] decryptAll(ElGamalCipher[] ciphertexts) {
+        long[] messages = new long[ciphertexts.length];
+        decryptAll(ciphertexts, messages, Runtime.getRuntime().availableProcessors());
+        return messages;
+    }
+
     public ElGamalCipher multiply(ElGamalCipher c1, ElGamalCipher c2) {
         return new ElGamalCipher(c1.c1.multiply(c2.c1).mod(n), c1.c2.multiply(c2.c2).mod(n));
     }
 
+    /**
+     * Returns the encryption of the product of the messages of the given ciphertexts, computed as
+     * a parallel product tree on the common fork-join pool. An empty array multiplies to (1, 1),
+     * an encryption of 1.
+     */
+    public ElGamalCipher product(ElGamalCipher[] c) {
+        return product(c, ForkJoinPool.commonPool());
+    }
+
+    public ElGamalCipher product(ElGamalCipher[] c, ForkJoinPool pool) {
+        BigInteger[] products = ProductTree.product((i, component) -> component == 0 ? c[i].c1 : c[i].c2,
+                c.length, 2, new BarrettReducer(n), pool);
+        return new ElGamalCipher(products[0], products[1]);
+    }
+
     public ElGamalCipher multiplyPlaintext(ElGamalCipher c, long m) {
         return new ElGamalCipher(c.c1, c.c2.multiply(BigInteger.valueOf(m)).mod(n));
     }
@@ -97,7 +176,7 @@ public class ElGamal extends AsymPHE<ElGamalCipher> {
     public ElGamalCipher pow(ElGamalCipher c, long m) {
         ElGamalCipher res;
         try {
-            res = new ElGamalCipher(c.c1.modPow(BigInteger.valueOf(m), n), c.c2.modPow(BigInteger.valueOf(m), n));
+            res = new ElGamalCipher(modPow(c.c1, BigInteger.valueOf(m), n), modPow(c.c2, BigInteger.valueOf(m), n));
         } catch (Exception e) {
             return c;
         }
@@ -110,7 +189,7 @@ public class ElGamal extends AsymPHE<ElGamalCipher> {
 
     @Override
     public String toString() {
-        return "<ElGamal modLength=" + BITLENGTH + ">";
+        return "<ElGamal modLength=" + n.bitLength() + ">";
     }
 
     public static byte[] toBytes(ElGamalCipher c) {
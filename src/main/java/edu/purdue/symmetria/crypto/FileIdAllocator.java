@@ -0,0 +1,178 @@
+package edu.purdue.symmetria.crypto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * <pre>
+ * Hands out ids that stay unique across restarts, crashes and the processes of one machine that
+ * share the same id file.
+ *
+ * The file holds a high-water mark: every id below it may have been handed out. An allocator
+ * leases a block of `leaseSize` ids by raising the mark under an exclusive file lock and fsyncing
+ * the file before it hands out any id of the block. Ids are then handed out from memory until the
+ * block runs out, so the file is touched once per `leaseSize` ids.
+ *
+ * After a crash the unused ids of the leased blocks are skipped, never reused. The same happens
+ * on close() and when reserve() needs more consecutive ids than are left in the current block.
+ *
+ * The mark is stored with a magic number and a CRC32 in 20 bytes at the start of the file, a write
+ * that does not straddle a disk sector. A file whose checksum does not match is rejected rather
+ * than guessed at, since guessing low would reuse ids.
+ * </pre>
+ */
+public class FileIdAllocator implements IdAllocator, Closeable {
+
+    public static final int DEFAULT_LEASE_SIZE = 1 << 16;
+
+    // the first id of a new file, like MemoryIdAllocator in SymPHE
+    static final long FIRST_ID = 1;
+
+    private static final int MAGIC = 0x53594d49;
+    private static final int RECORD_BYTES = Integer.BYTES + Long.BYTES + Long.BYTES;
+
+    // a FileLock is held by the whole JVM and locking a file twice in one JVM throws, so the
+    // allocators of the same file in this JVM also exclude each other with these monitors
+    private static final ConcurrentHashMap<Path, Object> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int leaseSize;
+    private final Object jvmLock;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+
+    // the current block is [nextId, limit)
+    private long nextId;
+    private long limit;
+
+    private long leases;
+
+    public FileIdAllocator(Path path) throws IOException {
+        this(path, DEFAULT_LEASE_SIZE);
+    }
+
+    /**
+     * Opens the id file at `path`, creating it if it does not exist, and leases `leaseSize` ids at
+     * a time. The first block is leased on first use.
+     */
+    public FileIdAllocator(Path path, int leaseSize) throws IOException {
+        if (leaseSize < 1)
+            throw new IllegalArgumentException("leaseSize must be positive");
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.path = path.toRealPath();
+        this.leaseSize = leaseSize;
+        this.jvmLock = JVM_LOCKS.computeIfAbsent(this.path, p -> new Object());
+    }
+
+    @Override
+    public synchronized long next() {
+        if (nextId == limit)
+            lease(1);
+        return nextId++;
+    }
+
+    @Override
+    public synchronized long reserve(int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("count must be non-negative");
+        if (limit - nextId < count)
+            lease(count);
+        long firstId = nextId;
+        nextId += count;
+        return firstId;
+    }
+
+    @Override
+    public long getMaxId() {
+        return SymPHE.MAX_ID;
+    }
+
+    /**
+     * Returns the number of blocks leased so far.
+     */
+    public synchronized long getLeases() {
+        return leases;
+    }
+
+    /**
+     * Leases a new block of at least `count` ids, dropping what is left of the current one.
+     */
+    private void lease(int count) {
+        long size = Math.max(count, leaseSize);
+        try {
+            synchronized (jvmLock) {
+                FileLock lock = channel.lock();
+                try {
+                    long highWaterMark = read();
+                    if (highWaterMark > SymPHE.MAX_ID + 1 - size)
+                        throw new RuntimeException("No ids left in `" + path + "`");
+                    // the block is only handed out once the new mark is on disk
+                    write(highWaterMark + size);
+                    channel.force(true);
+                    nextId = highWaterMark;
+                    limit = highWaterMark + size;
+                    leases++;
+                } finally {
+                    lock.release();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to lease ids from `" + path + "`", e);
+        }
+    }
+
+    /**
+     * Returns the high-water mark of the file, or FIRST_ID if the file is empty.
+     */
+    private long read() throws IOException {
+        if (channel.size() == 0)
+            return FIRST_ID;
+        record.clear();
+        while (record.hasRemaining())
+            if (channel.read(record, record.position()) < 0)
+                throw new RuntimeException("Invalid id file `" + path + "`");
+        record.flip();
+        int magic = record.getInt();
+        long highWaterMark = record.getLong();
+        long checksum = record.getLong();
+        if (magic != MAGIC || checksum != checksum(magic, highWaterMark) || highWaterMark < FIRST_ID)
+            throw new RuntimeException("Invalid id file `" + path + "`");
+        return highWaterMark;
+    }
+
+    private void write(long highWaterMark) throws IOException {
+        record.clear();
+        record.putInt(MAGIC).putLong(highWaterMark).putLong(checksum(MAGIC, highWaterMark));
+        record.flip();
+        while (record.hasRemaining())
+            channel.write(record, record.position());
+    }
+
+    private static long checksum(int magic, long highWaterMark) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Integer.BYTES + Long.BYTES).putInt(magic).putLong(highWaterMark).array());
+        return crc.getValue();
+    }
+
+    /**
+     * Closes the file. The ids left in the current block are never handed out.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        nextId = limit;
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "<" + this.getClass().getSimpleName() + " path=" + path + " leaseSize=" + leaseSize + ">";
+    }
+}
@@ -0,0 +1,93 @@
+package edu.purdue.symmetria.crypto;
+
+import edu.purdue.symmetria.utils.FileUtils;
+
+import java.io.File;
+import java.io.Serializable;
+import java.math.BigInteger;
+
+/**
+ * <pre>
+ * Precomputed powers of a fixed base for fast exponentiation modulo a fixed modulus.
+ *
+ * The exponent is split into windows of `window` bits and the table holds
+ * base^(d * 2^(window * i)) for every window i and digit d, so base^e is the product of one table
+ * entry per non-zero window and no squaring is needed. Exponents longer than the table fall back
+ * to modPow().
+ *
+ * The products are reduced with Barrett reduction, since with BigInteger.mod() the table would be
+ * slower than modPow().
+ * </pre>
+ */
+class FixedBaseTable implements Serializable {
+    private static final long serialVersionUID = -2977634590931711476L;
+
+    private final BigInteger base;
+    private final BigInteger modulus;
+    private final int window;
+    private final int maxBits;
+
+    // table[i][d - 1] = base^(d * 2^(window * i)) mod modulus
+    private final BigInteger[][] table;
+
+    private final BarrettReducer reducer;
+
+    FixedBaseTable(BigInteger base, BigInteger modulus, int window, int maxBits) {
+        this.base = base;
+        this.modulus = modulus;
+        this.window = window;
+        this.maxBits = maxBits;
+        this.reducer = new BarrettReducer(modulus);
+
+        int windows = (maxBits + window - 1) / window;
+        int digits = (1 << window) - 1;
+        this.table = new BigInteger[windows][digits];
+        BigInteger windowBase = base.mod(modulus);
+        for (int i = 0; i < windows; i++) {
+            table[i][0] = windowBase;
+            for (int d = 1; d < digits; d++)
+                table[i][d] = reducer.mulMod(table[i][d - 1], windowBase);
+            // base^(2^(window * (i + 1)))
+            windowBase = reducer.mulMod(table[i][digits - 1], windowBase);
+        }
+    }
+
+    /**
+     * Loads the table saved at the given path if it matches the given parameters. Otherwise builds
+     * the table and saves it to the path.
+     */
+    static FixedBaseTable load(String path, BigInteger base, BigInteger modulus, int window, int maxBits) {
+        if (new File(path).exists()) {
+            Object saved = FileUtils.readObjectFromFile(path);
+            if (saved instanceof FixedBaseTable && ((FixedBaseTable) saved).matches(base, modulus, window, maxBits))
+                return (FixedBaseTable) saved;
+        }
+        FixedBaseTable table = new FixedBaseTable(base, modulus, window, maxBits);
+        FileUtils.saveObjectToFile(table, path);
+        return table;
+    }
+
+    private boolean matches(BigInteger base, BigInteger modulus, int window, int maxBits) {
+        return this.base.equals(base) && this.modulus.equals(modulus) && this.window == window
+                && this.maxBits == maxBits;
+    }
+
+    /**
+     * Returns base^e mod modulus.
+     */
+    BigInteger pow(BigInteger e) {
+        int bits = e.bitLength();
+        if (e.signum() < 0 || bits > maxBits)
+            return AsymPHE.modPow(base, e, modulus);
+
+        BigInteger result = BigInteger.ONE;
+        for (int i = 0; i * window < bits; i++) {
+            int digit = 0;
+            for (int b = window - 1; b >= 0; b--)
+                digit = (digit << 1) | (e.testBit(i * window + b) ? 1 : 0);
+            if (digit != 0)
+                result = reducer.mulMod(result, table[i][digit - 1]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,24 @@
+package edu.purdue.symmetria.crypto;
+
+/**
+ * Hands out the ids symmetric ciphers are encrypted with. An id must never be handed out twice
+ * under the same key, ids need not be consecutive across calls.
+ */
+public interface IdAllocator {
+
+    /**
+     * Returns an id that was never returned before.
+     */
+    long next();
+
+    /**
+     * Reserves `count` consecutive ids and returns the first one.
+     */
+    long reserve(int count);
+
+    /**
+     * Returns the largest id this allocator can ever hand out. Must not exceed SymPHE.MAX_ID to
+     * be used by a scheme.
+     */
+    long getMaxId();
+}
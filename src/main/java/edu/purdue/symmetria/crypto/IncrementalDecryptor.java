@@ -0,0 +1,233 @@
+package edu.purdue.symmetria.crypto;
+
+import edu.purdue.symmetria.crypto.cipher.RangeSymCipher;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * <pre>
+ * Decrypts successive versions of a growing SymAHE aggregate, e.g., a running SUM that a client
+ * decrypts every few seconds.
+ *
+ * decrypt() computes the random number of every id of the aggregate. Here the ids of the last
+ * decrypted version are kept as sorted, disjoint segments of consecutive ids with the same
+ * cardinality, together with their total obfuscation (the sum of the random number of every id
+ * times its cardinality). The next version is diffed against them and random numbers are only
+ * computed for the ids that were added, removed or whose cardinality changed, so the PRF work is
+ * proportional to the change.
+ *
+ * The segments of the next version are built from the structure of the cipher: the runs of a
+ * RangeSymCipher are used as they are, so a sum that compresses to a few runs is diffed in time
+ * proportional to its runs and the change, not to its ids. The ids of an ArraySymCipher come as
+ * two sorted lists, which are merged in a single pass.
+ *
+ * Not thread safe.
+ * </pre>
+ */
+public class IncrementalDecryptor {
+
+    private final SymAHE scheme;
+
+    // the segments [starts[i], ends[i]) of the last version in increasing order and the
+    // cardinality of their ids reduced modulo the scheme modulo, never 0
+    private Segments segments = new Segments();
+
+    // the sum of the random number of every id times its cardinality
+    private long obfuscation;
+
+    // the number of random numbers computed by the last call
+    private int lastRandNums;
+
+    /**
+     * Disjoint segments of ids in increasing order. Adjacent segments with the same cardinality
+     * are joined as they are added.
+     */
+    private static class Segments {
+        long[] starts = new long[4];
+        long[] ends = new long[4];
+        long[] cards = new long[4];
+        int size;
+
+        /**
+         * Adds the ids [start, end) with cardinality `card`. `start` must not be smaller than the
+         * end of the last segment.
+         */
+        void add(long start, long end, long card) {
+            if (card == 0 || start >= end)
+                return;
+            if (size > 0 && ends[size - 1] == start && cards[size - 1] == card) {
+                ends[size - 1] = end;
+                return;
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * size);
+                ends = Arrays.copyOf(ends, 2 * size);
+                cards = Arrays.copyOf(cards, 2 * size);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            cards[size++] = card;
+        }
+    }
+
+    public IncrementalDecryptor(SymAHE scheme) {
+        this.scheme = scheme;
+    }
+
+    public long decrypt(SymCipher c) {
+        long modulo = scheme.modulo;
+        Segments newSegments = c instanceof RangeSymCipher
+                ? fromRuns(((RangeSymCipher) c).getRuns(), modulo)
+                : fromIds(c.getIds(), c.getSize(), modulo);
+
+        // sweep the boundaries of the old and new segments, keeping the ids whose cardinality
+        // changed and by how much
+        Segments old = segments;
+        long[] deltaIds = new long[16];
+        long[] deltaCards = new long[16];
+        int deltas = 0;
+        int oldIndex = 0;
+        int newIndex = 0;
+        long position = Long.MIN_VALUE;
+        while (true) {
+            while (oldIndex < old.size && old.ends[oldIndex] <= position)
+                oldIndex++;
+            while (newIndex < newSegments.size && newSegments.ends[newIndex] <= position)
+                newIndex++;
+            if (oldIndex >= old.size && newIndex >= newSegments.size)
+                break;
+
+            long oldCard = 0;
+            long newCard = 0;
+            long next = Long.MAX_VALUE;
+            if (oldIndex < old.size) {
+                if (old.starts[oldIndex] <= position) {
+                    oldCard = old.cards[oldIndex];
+                    next = old.ends[oldIndex];
+                } else {
+                    next = old.starts[oldIndex];
+                }
+            }
+            if (newIndex < newSegments.size) {
+                if (newSegments.starts[newIndex] <= position) {
+                    newCard = newSegments.cards[newIndex];
+                    next = Math.min(next, newSegments.ends[newIndex]);
+                } else {
+                    next = Math.min(next, newSegments.starts[newIndex]);
+                }
+            }
+
+            long delta = MathUtils.modSubtract(newCard, oldCard, modulo);
+            if (delta != 0) {
+                int count = Math.toIntExact(next - position);
+                if (deltas + count > deltaIds.length) {
+                    int capacity = Math.max(deltas + count, 2 * deltaIds.length);
+                    deltaIds = Arrays.copyOf(deltaIds, capacity);
+                    deltaCards = Arrays.copyOf(deltaCards, capacity);
+                }
+                for (int i = 0; i < count; i++) {
+                    deltaIds[deltas] = position + i;
+                    deltaCards[deltas++] = delta;
+                }
+            }
+            position = next;
+        }
+
+        long[] randNums = new long[deltas];
+        scheme.getRandNums(deltaIds, 0, deltas, randNums);
+        for (int i = 0; i < deltas; i++)
+            obfuscation = MathUtils.modAdd(obfuscation, MathUtils.modMul(randNums[i], deltaCards[i], modulo), modulo);
+        lastRandNums = deltas;
+
+        segments = newSegments;
+        long m = MathUtils.modSubtract(c.getValue(), obfuscation, modulo);
+        return scheme.handleNegative(m);
+    }
+
+    /**
+     * Returns the segments of the given runs, see RangeSymCipher.getRuns(). Only the boundaries of
+     * the runs are sorted, so the cost depends on the number of runs, not of ids.
+     */
+    private static Segments fromRuns(long[][] runs, long modulo) {
+        int count = runs[0].length;
+        // the cardinality changes by +card at the first id of a run and by -card after its last
+        long[][] boundaries = new long[2 * count][];
+        for (int i = 0; i < count; i++) {
+            long card = MathUtils.mod(runs[0][i], modulo);
+            boundaries[2 * i] = new long[]{runs[1][i], card};
+            boundaries[2 * i + 1] = new long[]{runs[1][i] + runs[2][i], MathUtils.modNegate(card, modulo)};
+        }
+        Arrays.sort(boundaries, Comparator.comparingLong(b -> b[0]));
+
+        Segments segments = new Segments();
+        long card = 0;
+        for (int i = 0; i < boundaries.length; i++) {
+            card = MathUtils.modAdd(card, boundaries[i][1], modulo);
+            if (i + 1 < boundaries.length)
+                segments.add(boundaries[i][0], boundaries[i + 1][0], card);
+        }
+        return segments;
+    }
+
+    /**
+     * Returns the segments of the given ids and cardinalities. The ids are expected to be at most
+     * two lists in increasing order, e.g., the positive and negative ids of an ArraySymCipher,
+     * which are merged in one pass. Other orders are sorted.
+     */
+    private static Segments fromIds(long[][] ids, int size, long modulo) {
+        int split = Math.min(1, size);
+        while (split < size && ids[0][split] >= ids[0][split - 1])
+            split++;
+        int end = split + 1;
+        while (end < size && ids[0][end] >= ids[0][end - 1])
+            end++;
+        if (end < size) {
+            long[][] runs = {Arrays.copyOf(ids[1], size), Arrays.copyOf(ids[0], size), new long[size]};
+            Arrays.fill(runs[2], 1);
+            return fromRuns(runs, modulo);
+        }
+
+        // merge [0, split) and [split, size), adding up the cardinalities of equal ids
+        Segments segments = new Segments();
+        int first = 0;
+        int second = split;
+        long id = 0;
+        long card = 0;
+        boolean pending = false;
+        while (first < split || second < size) {
+            int index = second >= size || (first < split && ids[0][first] <= ids[0][second]) ? first++ : second++;
+            long c = MathUtils.mod(ids[1][index], modulo);
+            if (pending && ids[0][index] == id) {
+                card = MathUtils.modAdd(card, c, modulo);
+                continue;
+            }
+            if (pending)
+                segments.add(id, id + 1, card);
+            id = ids[0][index];
+            card = c;
+            pending = true;
+        }
+        if (pending)
+            segments.add(id, id + 1, card);
+        return segments;
+    }
+
+    /**
+     * Returns the number of random numbers computed by the last call to decrypt().
+     */
+    public int getLastRandNums() {
+        return lastRandNums;
+    }
+
+    /**
+     * Forgets the last decrypted version.
+     */
+    public void reset() {
+        segments = new Segments();
+        obfuscation = 0;
+        lastRandNums = 0;
+    }
+}
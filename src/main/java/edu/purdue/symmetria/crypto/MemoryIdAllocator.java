@@ -0,0 +1,45 @@
+package edu.purdue.symmetria.crypto;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out consecutive ids from memory. The ids start over when the process restarts, so it is
+ * only safe for keys that do not outlive the process or when a single process encrypts once. See
+ * FileIdAllocator otherwise.
+ */
+public class MemoryIdAllocator implements IdAllocator {
+
+    private final AtomicLong nextId;
+
+    public MemoryIdAllocator(long firstId) {
+        this.nextId = new AtomicLong(firstId);
+    }
+
+    @Override
+    public long next() {
+        return check(nextId.getAndIncrement(), 1);
+    }
+
+    @Override
+    public long reserve(int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("count must be non-negative");
+        return check(nextId.getAndAdd(count), count);
+    }
+
+    @Override
+    public long getMaxId() {
+        return SymPHE.MAX_ID;
+    }
+
+    private static long check(long firstId, int count) {
+        if (firstId > SymPHE.MAX_ID - count + 1)
+            throw new RuntimeException("No ids left");
+        return firstId;
+    }
+
+    @Override
+    public String toString() {
+        return "<" + this.getClass().getSimpleName() + " nextId=" + nextId.get() + ">";
+    }
+}
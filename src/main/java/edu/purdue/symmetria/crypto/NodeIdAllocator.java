@@ -0,0 +1,95 @@
+package edu.purdue.symmetria.crypto;
+
+/**
+ * <pre>
+ * Hands out ids with the number of the node (or shard) that encrypts in the high bits, so nodes
+ * that encrypt under the same key never hand out the same id without coordinating.
+ *
+ * An id is
+ *
+ *   node << localBits | localId
+ *
+ * where localBits = ID_BITS - nodeBits and localId comes from the allocator of the node, e.g., a
+ * FileIdAllocator. Ids have at most ID_BITS bits, so they stay below SymPHE.MAX_ID whatever the
+ * node. The ids of one node are dense, so ciphers store them as
+ * small differences, and all ids of a node come before all ids of the next node, so the sum of
+ * ciphers of different nodes is a concatenation of per-node segments.
+ * </pre>
+ */
+public class NodeIdAllocator implements IdAllocator {
+
+    // 2^53 - 1 < SymPHE.MAX_ID
+    public static final int ID_BITS = 53;
+
+    public static final int DEFAULT_NODE_BITS = 16;
+
+    private final int node;
+    private final int localBits;
+    private final long prefix;
+    private final long maxLocalId;
+    private final IdAllocator local;
+
+    public NodeIdAllocator(int node, IdAllocator local) {
+        this(node, DEFAULT_NODE_BITS, local);
+    }
+
+    /**
+     * Creates an allocator for node `node` (0 to 2^nodeBits - 1) that prefixes the ids of `local`.
+     */
+    public NodeIdAllocator(int node, int nodeBits, IdAllocator local) {
+        if (nodeBits < 1 || nodeBits > 31)
+            throw new IllegalArgumentException("nodeBits must be between 1 and 31");
+        if (node < 0 || node >= 1 << nodeBits)
+            throw new IllegalArgumentException("Node " + node + " does not fit in " + nodeBits + " bits");
+        this.node = node;
+        this.localBits = ID_BITS - nodeBits;
+        this.prefix = (long) node << localBits;
+        this.maxLocalId = (1L << localBits) - 1;
+        this.local = local;
+    }
+
+    public int getNode() {
+        return node;
+    }
+
+    /**
+     * Returns the node the given id was handed out by.
+     */
+    public long getNode(long id) {
+        return id >>> localBits;
+    }
+
+    /**
+     * Returns the id the given id was handed out as by the allocator of its node.
+     */
+    public long getLocalId(long id) {
+        return id & maxLocalId;
+    }
+
+    @Override
+    public long getMaxId() {
+        return prefix | maxLocalId;
+    }
+
+    @Override
+    public long next() {
+        return toId(local.next(), 1);
+    }
+
+    @Override
+    public long reserve(int count) {
+        return toId(local.reserve(count), count);
+    }
+
+    private long toId(long localId, int count) {
+        if (localId < 0 || localId > maxLocalId - count + 1)
+            throw new RuntimeException("Node " + node + " has no ids left");
+        return prefix | localId;
+    }
+
+    @Override
+    public String toString() {
+        return "<" + this.getClass().getSimpleName() + " node=" + node + " localBits=" + localBits
+                + " local=" + local + ">";
+    }
+}
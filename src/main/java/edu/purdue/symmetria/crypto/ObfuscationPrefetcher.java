@@ -0,0 +1,151 @@
+package edu.purdue.symmetria.crypto;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <pre>
+ * Precomputes the obfuscations of SymAHE/SymMHE encryptions in a background thread, so encrypt()
+ * only adds (or multiplies) a precomputed number instead of running the PRF (and a modPow).
+ *
+ * A producer thread reserves batches of ids with reserveIds() and publishes (id, obfuscation)
+ * pairs in a ring that is consumed by any number of encrypting threads. The ring is lock-free:
+ * the producer publishes entries by moving the volatile `tail` and consumers claim entries by a
+ * CAS on `head`. A consumer reads its entry before the CAS, and the producer only overwrites an
+ * entry after `head` moved past it, so a successful CAS means the values read were valid.
+ *
+ * When the ring is empty encrypt() computes the obfuscation inline. Ids that were reserved but
+ * never used, e.g., when the prefetcher is closed, are skipped.
+ * </pre>
+ */
+public class ObfuscationPrefetcher implements Closeable {
+
+    private static final int DEFAULT_BATCH = 256;
+
+    // how long the producer sleeps when the ring is full
+    private static final long PARK_NANOS = 100_000;
+
+    private final SymPHE scheme;
+    private final int capacity;
+    private final int mask;
+    private final int batch;
+
+    private final long[] ids;
+    private final long[] obfuscations;
+
+    // the next entry to consume and the next entry to produce
+    private final AtomicLong head = new AtomicLong();
+    private volatile long tail;
+
+    private final LongAdder fallbacks = new LongAdder();
+
+    private final Thread producer;
+    private volatile boolean running = true;
+
+    public ObfuscationPrefetcher(SymPHE scheme, int capacity) {
+        this(scheme, capacity, Math.min(DEFAULT_BATCH, capacity));
+    }
+
+    /**
+     * Creates and starts a prefetcher whose ring holds `capacity` entries, rounded up to a power of
+     * two, and that reserves `batch` ids at a time.
+     */
+    public ObfuscationPrefetcher(SymPHE scheme, int capacity, int batch) {
+        if (capacity <= 0 || batch <= 0 || batch > capacity)
+            throw new IllegalArgumentException("capacity and batch must be positive and batch <= capacity");
+        this.scheme = scheme;
+        int slots = 1;
+        while (slots < capacity)
+            slots <<= 1;
+        this.capacity = slots;
+        this.mask = slots - 1;
+        this.batch = batch;
+        this.ids = new long[slots];
+        this.obfuscations = new long[slots];
+
+        this.producer = new Thread(this::produce, "obfuscation-prefetcher");
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+    private void produce() {
+        long[] randNums = new long[batch];
+        while (running) {
+            long t = tail;
+            if (capacity - (t - head.get()) < batch) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+                continue;
+            }
+
+            long firstId = scheme.reserveIds(batch);
+            scheme.getRandNums(firstId, batch, scheme.modulo, randNums);
+            for (int i = 0; i < batch; i++) {
+                int slot = (int) (t + i) & mask;
+                ids[slot] = firstId + i;
+                obfuscations[slot] = scheme.toObfuscation(randNums[i]);
+            }
+            tail = t + batch;
+        }
+    }
+
+    /**
+     * Takes the next precomputed entry and stores its id in `entry[0]` and its obfuscation in
+     * `entry[1]`. Returns false if the ring is empty.
+     */
+    boolean poll(long[] entry) {
+        while (true) {
+            long h = head.get();
+            long t = tail;
+            if (h >= t) {
+                fallbacks.increment();
+                LockSupport.unpark(producer);
+                return false;
+            }
+
+            int slot = (int) h & mask;
+            long id = ids[slot];
+            long obfuscation = obfuscations[slot];
+            if (head.compareAndSet(h, h + 1)) {
+                entry[0] = id;
+                entry[1] = obfuscation;
+                if (t - h <= capacity / 2)
+                    LockSupport.unpark(producer);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of precomputed entries.
+     */
+    public int size() {
+        return (int) Math.max(0, tail - head.get());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of times the ring was empty and the obfuscation was computed inline.
+     */
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * Stops the producer thread. The remaining entries can still be consumed.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(producer);
+        try {
+            producer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package edu.purdue.symmetria.crypto;
+
+import java.math.BigInteger;
+
+/**
+ * <pre>
+ * Packs several long values into one Paillier plaintext, so one encryption, addition or
+ * decryption handles all of them.
+ *
+ * Slot i holds bits slotBits * i to slotBits * (i + 1) - 1 of the plaintext, so packing and
+ * unpacking are shifts and masks. A value must fit in `valueBits` signed bits and is stored with a
+ * bias of 2^(valueBits - 1), so every slot is non-negative and carries never cross slots. Adding
+ * packed vectors adds the biases too: a slot can absorb the sum of 2^(slotBits - valueBits)
+ * vectors, see getMaxTerms(), and the bias of every vector is subtracted when unpacking.
+ *
+ * The number of slots is derived from the bit length of the plaintext space, leaving the top bit
+ * free so a packed plaintext is always smaller than n.
+ * </pre>
+ */
+public class PackingCodec {
+
+    private final int slotBits;
+    private final int valueBits;
+    private final int slots;
+
+    private final long bias;
+    private final long slotMask;
+    private final long maxTerms;
+
+    /**
+     * Creates a codec for plaintexts of `plaintextBits` bits, i.e., the bit length of n, with slots
+     * of `slotBits` bits (at most 64) holding values of `valueBits` signed bits.
+     */
+    public PackingCodec(int plaintextBits, int slotBits, int valueBits) {
+        if (slotBits < 1 || slotBits > Long.SIZE)
+            throw new IllegalArgumentException("slotBits must be between 1 and " + Long.SIZE);
+        if (valueBits < 1 || valueBits > slotBits)
+            throw new IllegalArgumentException("valueBits must be between 1 and slotBits");
+        this.slotBits = slotBits;
+        this.valueBits = valueBits;
+        this.slots = (plaintextBits - 1) / slotBits;
+        if (slots < 1)
+            throw new IllegalArgumentException("A slot of " + slotBits + " bits does not fit in " + plaintextBits + " bits");
+
+        this.bias = 1L << (valueBits - 1);
+        this.slotMask = slotBits == Long.SIZE ? -1L : (1L << slotBits) - 1;
+        this.maxTerms = slotBits - valueBits >= Long.SIZE - 1 ? Long.MAX_VALUE : 1L << (slotBits - valueBits);
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public int getSlotBits() {
+        return slotBits;
+    }
+
+    public int getValueBits() {
+        return valueBits;
+    }
+
+    /**
+     * Returns the number of packed vectors whose sum fits in the slots.
+     */
+    public long getMaxTerms() {
+        return maxTerms;
+    }
+
+    /**
+     * Returns the number of packed vectors that can still be added to a sum of `terms` vectors.
+     */
+    public long getRemainingTerms(long terms) {
+        return maxTerms - terms;
+    }
+
+    /**
+     * Throws an ArithmeticException if the sum of `terms` packed vectors may overflow its slots.
+     */
+    void checkTerms(long terms) {
+        if (terms > maxTerms || terms < 0)
+            throw new ArithmeticException("A slot of " + slotBits + " bits can only hold the sum of " + maxTerms
+                    + " values of " + valueBits + " bits");
+    }
+
+    /**
+     * Returns the plaintext of the given values, which must fit in the slots and in `valueBits`
+     * signed bits. Slots without a value hold 0.
+     */
+    public BigInteger pack(long[] values) {
+        if (values.length > slots)
+            throw new IllegalArgumentException("Expected at most " + slots + " values but got " + values.length);
+
+        long[] words = new long[(slots * slotBits + Long.SIZE - 1) / Long.SIZE];
+        for (int i = 0; i < slots; i++) {
+            long value = i < values.length ? values[i] : 0;
+            if (valueBits < Long.SIZE && (value < -bias || value >= bias))
+                throw new IllegalArgumentException("Value " + value + " does not fit in " + valueBits + " bits");
+
+            long slot = (value + bias) & slotMask;
+            long offset = (long) i * slotBits;
+            int word = (int) (offset >>> 6);
+            int shift = (int) (offset & 63);
+            words[word] |= slot << shift;
+            if (shift + slotBits > Long.SIZE)
+                words[word + 1] |= slot >>> (Long.SIZE - shift);
+        }
+        return toBigInteger(words);
+    }
+
+    /**
+     * Unpacks the first `length` slots of a sum of `terms` packed vectors into `out` starting at
+     * `offset`.
+     */
+    public void unpack(BigInteger packed, int length, long terms, long[] out, int offset) {
+        if (length < 0 || length > slots)
+            throw new IllegalArgumentException("Expected at most " + slots + " values but got " + length);
+        checkTerms(terms);
+        long[] words = toWords(packed, (slots * slotBits + Long.SIZE - 1) / Long.SIZE + 1);
+        // the biases are subtracted modulo 2^64, so the result is right whenever the sum fits in a long
+        long totalBias = bias * terms;
+        for (int i = 0; i < length; i++) {
+            long bitOffset = (long) i * slotBits;
+            int word = (int) (bitOffset >>> 6);
+            int shift = (int) (bitOffset & 63);
+            long slot = words[word] >>> shift;
+            if (shift + slotBits > Long.SIZE)
+                slot |= words[word + 1] << (Long.SIZE - shift);
+            out[offset + i] = (slot & slotMask) - totalBias;
+        }
+    }
+
+    public long[] unpack(BigInteger packed, int length, long terms) {
+        long[] values = new long[length];
+        unpack(packed, length, terms, values, 0);
+        return values;
+    }
+
+    /**
+     * Returns the non-negative number whose little-endian 64-bit words are given.
+     */
+    private static BigInteger toBigInteger(long[] words) {
+        // big-endian, with a leading zero byte for the sign
+        byte[] bytes = new byte[words.length * Long.BYTES + 1];
+        for (int w = 0; w < words.length; w++)
+            for (int b = 0; b < Long.BYTES; b++)
+                bytes[bytes.length - 1 - w * Long.BYTES - b] = (byte) (words[w] >>> (b * 8));
+        return new BigInteger(bytes);
+    }
+
+    /**
+     * Returns the lowest `count` little-endian 64-bit words of the given non-negative number.
+     */
+    private static long[] toWords(BigInteger packed, int count) {
+        byte[] bytes = packed.toByteArray();
+        long[] words = new long[count];
+        for (int i = 0; i < bytes.length && i < count * Long.BYTES; i++)
+            words[i / Long.BYTES] |= (bytes[bytes.length - 1 - i] & 0xffL) << (i % Long.BYTES * 8);
+        return words;
+    }
+
+    @Override
+    public String toString() {
+        return "<" + this.getClass().getSimpleName() + " slots=" + slots + " slotBits=" + slotBits
+                + " valueBits=" + valueBits + ">";
+    }
+}
@@ -1,29 +1,68 @@
 package edu.purdue.symmetria.crypto;
 
+import edu.purdue.symmetria.crypto.cipher.PackedCipher;
 import edu.purdue.symmetria.utils.FileUtils;
 
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class Paillier extends AsymPHE<BigInteger> {
 
     private static final String DEFAULT_PUBLIC_KEY_PATH = "/tmp/paillier.pk";
     private static final String DEFAULT_PRIVATE_KEY_PATH = "/tmp/paillier.sk";
 
+    private static final int DEFAULT_SLOT_BITS = 64;
+    private static final int DEFAULT_VALUE_BITS = 40;
+
+    // number of terms from which weightedSum() uses all cores
+    private static final int PARALLEL_WEIGHTED_SUM = 1024;
+
     // load keys
     private final BigInteger n2; // n squared
     private final BigInteger g;
     private final BigInteger mu;
     private final BigInteger lambda; // private key
 
+    // the private key of keys that keep p and q, null for keys that only keep lambda
+    private final PaillierSK sk;
+
+    // g = n + 1, so g^m = 1 + m * n mod n^2
+    private final boolean fastEncrypt;
+
+    // decrypt modulo p^2 and q^2 instead of n^2
+    private final boolean crtDecrypt;
+
     // precomputed random
     private BigInteger preRand;
 
+    // layout of the packed methods
+    private volatile PackingCodec packingCodec;
+
     public Paillier() {
         this(DEFAULT_NEGDIVISOR, DEFAULT_PUBLIC_KEY_PATH, DEFAULT_PRIVATE_KEY_PATH);
     }
 
+    /**
+     * Uses the given keys. If `fastPaths` is false the g = n + 1 and CRT fast paths are not used
+     * even if the keys allow them, e.g., to measure their speedup.
+     */
+    public Paillier(String publicKeyPath, String privateKeyPath, boolean fastPaths) {
+        this(DEFAULT_NEGDIVISOR, publicKeyPath, privateKeyPath, fastPaths);
+    }
+
     public Paillier(int negDivisor, String publicKeyPath, String privateKeyPath) {
+        this(negDivisor, publicKeyPath, privateKeyPath, true);
+    }
+
+    public Paillier(int negDivisor, String publicKeyPath, String privateKeyPath, boolean fastPaths) {
         super(publicKeyPath, privateKeyPath);
 
         PaillierPK pk = (PaillierPK) publicKey;
@@ -31,90 +70,158 @@ public class Paillier extends AsymPHE<BigInteger> {
         n2 = pk.n2;
         g = pk.g;
         mu = pk.mu;
-        lambda = (BigInteger) privateKey;
+
+        // keys generated before PaillierSK only keep lambda
+        if (privateKey instanceof PaillierSK) {
+            sk = (PaillierSK) privateKey;
+            lambda = sk.lambda;
+        } else {
+            sk = null;
+            lambda = (BigInteger) privateKey;
+        }
+        fastEncrypt = fastPaths && g.equals(n.add(BigInteger.ONE));
+        crtDecrypt = fastPaths && sk != null;
 
         if (!ENABLE_RANDOM)
-            preRand = new BigInteger(BITLENGTH, RNG).modPow(n, n2);
+            preRand = modPow(new BigInteger(BITLENGTH, RNG), n, n2);
 
+        packingCodec = new PackingCodec(n.bitLength(), DEFAULT_SLOT_BITS, DEFAULT_VALUE_BITS);
         setupNegative(negDivisor);
     }
 
     public void keyGen() {
-        BigInteger p = BigInteger.probablePrime(BITLENGTH / 2, RNG);
+        keyGen(BITLENGTH, publicKeyPath, privateKeyPath);
+    }
+
+    /**
+     * Generates keys with a modulus n of the given bit length and saves them to the given paths.
+     */
+    public static void keyGen(int bits, String publicKeyPath, String privateKeyPath) {
+        BigInteger p = BigInteger.probablePrime(bits / 2, RNG);
         BigInteger q;
         do {
-            q = BigInteger.probablePrime(BITLENGTH / 2, RNG);
+            q = BigInteger.probablePrime(bits / 2, RNG);
         } while (p.equals(q));
 
         BigInteger n = p.multiply(q);
         BigInteger n2 = n.multiply(n);
 
-        // lambda = lcm(n-1, q-1) = (n-1)*(q-1)/gcd(n-1, q-1).
+        // lambda = lcm(p-1, q-1) = (p-1)*(q-1)/gcd(p-1, q-1).
         BigInteger p1 = p.subtract(BigInteger.ONE);
         BigInteger q1 = q.subtract(BigInteger.ONE);
         BigInteger lambda = p1.multiply(q1).divide(p1.gcd(q1));
 
-        // verify g, the following must hold: gcd(L(g^lambda mod n^2), n) = 1, where L(u) = (u-1)/n
-        BigInteger g;
-        do {
-            g = BigInteger.probablePrime(BITLENGTH, RNG);
-        } while (g.modPow(lambda, n2).subtract(BigInteger.ONE).divide(n).gcd(n).intValue() != 1);
-        BigInteger mu = g.modPow(lambda, n2).subtract(BigInteger.ONE).divide(n).modInverse(n);
+        // with g = n + 1, L(g^lambda mod n^2) = lambda mod n, where L(u) = (u-1)/n
+        BigInteger g = n.add(BigInteger.ONE);
+        BigInteger mu = lambda.modInverse(n);
 
-        FileUtils.saveObjectToFile(lambda, privateKeyPath);
+        FileUtils.saveObjectToFile(new PaillierSK(p, q, lambda, g), privateKeyPath);
         FileUtils.saveObjectToFile(new PaillierPK(n, n2, g, mu), publicKeyPath);
     }
 
+    /**
+     * Returns g^m mod n^2.
+     */
+    private BigInteger gPow(BigInteger m) {
+        if (fastEncrypt)
+            return m.multiply(n).add(BigInteger.ONE).mod(n2);
+        return modPow(g, m, n2);
+    }
+
+    @Override
+    BigInteger[] newBlinding() {
+        return new BigInteger[]{modPow(new BigInteger(BITLENGTH, RNG), n, n2)};
+    }
+
     @Override
     public BigInteger encrypt(long m) {
         BigInteger rn = preRand;
         if (ENABLE_RANDOM)
-            rn = new BigInteger(BITLENGTH, RNG).modPow(n, n2);
-        BigInteger gm = g.modPow(BigInteger.valueOf(m), n2);
+            rn = nextBlinding()[0];
+        BigInteger gm = gPow(BigInteger.valueOf(m));
         return gm.multiply(rn).mod(n2);
     }
 
-    // adds 32 bits of padding before each number. This allows for a total of 21 messages per packed message.
-    private BigInteger pack(long[] messages) {
-        BigInteger packedMessage = BigInteger.ZERO;
-        BigInteger shift = BigInteger.valueOf(2).multiply(BigInteger.valueOf(95 /*64 + 21*/));
-        for (long m : messages) {
-            packedMessage = packedMessage.multiply(shift);
-            packedMessage = packedMessage.add(BigInteger.valueOf(m));
-        }
-        return packedMessage;
+    /**
+     * Sets the layout of the packed methods. By default slots of 64 bits hold values of 40 bits,
+     * so a packed ciphertext can absorb 2^24 additions. Packed ciphertexts must be added and
+     * decrypted with the layout they were encrypted with.
+     */
+    public void setPackingCodec(PackingCodec packingCodec) {
+        this.packingCodec = packingCodec;
     }
 
-    // assume there are exactly 21 items in packed message.
-    private long[] unpack(BigInteger packedMessage) {
-        long[] messages = new long[21];
-        BigInteger shift = BigInteger.valueOf(2).multiply(BigInteger.valueOf(95 /* 64 + 21 */));
-        for (int i = 0; i < 21; i++) {
-            BigInteger message = packedMessage.mod(shift);
-            messages[i] = message.longValue(); // assume no overflow
-            packedMessage = packedMessage.divide(shift);
-        }
-        return messages;
+    public PackingCodec getPackingCodec() {
+        return packingCodec;
     }
 
-    public BigInteger encryptPacked(long[] messages) {
+    /**
+     * Encrypts up to getPackingCodec().getSlots() values in one ciphertext.
+     */
+    public PackedCipher encryptPacked(long[] messages) {
         BigInteger rn = preRand;
         if (ENABLE_RANDOM)
-            rn = new BigInteger(BITLENGTH, RNG).modPow(n, n2);
-        BigInteger packedMessage = pack(messages);
-        BigInteger gm = g.modPow(packedMessage, n2);
-        return gm.multiply(rn).mod(n2);
+            rn = nextBlinding()[0];
+        BigInteger gm = gPow(packingCodec.pack(messages));
+        return new PackedCipher(gm.multiply(rn).mod(n2), messages.length, 1);
     }
 
-    public long[] decryptPacked(BigInteger c) {
-        BigInteger m = c.modPow(lambda, n2).subtract(BigInteger.ONE).divide(n).multiply(mu).mod(n);
-        return unpack(m);
+    /**
+     * Encrypts the given messages using all cores. See encryptAll(long[], Object[], ExecutorService)
+     * to use a given executor.
+     */
+    public BigInteger[] encryptAll(long[] messages) {
+        BigInteger[] ciphertexts = new BigInteger[messages.length];
+        encryptAll(messages, ciphertexts, Runtime.getRuntime().availableProcessors());
+        return ciphertexts;
+    }
+
+    /**
+     * Decrypts the given ciphertexts using all cores, with CRT if the keys allow it.
+     */
+    public long[] decryptAll(BigInteger[] ciphertexts) {
+        long[] messages = new long[ciphertexts.length];
+        decryptAll(ciphertexts, messages, Runtime.getRuntime().availableProcessors());
+        return messages;
+    }
+
+    public long[] decryptPacked(PackedCipher c) {
+        return packingCodec.unpack(decryptRaw(c.c), c.length, c.terms);
+    }
+
+    /**
+     * Decrypts the given ciphertexts into one array of their values, in order.
+     */
+    public long[] decryptPacked(PackedCipher[] c) {
+        int length = 0;
+        for (PackedCipher packed : c)
+            length += packed.length;
+        long[] messages = new long[length];
+        int offset = 0;
+        for (PackedCipher packed : c) {
+            packingCodec.unpack(decryptRaw(packed.c), packed.length, packed.terms, messages, offset);
+            offset += packed.length;
+        }
+        return messages;
     }
 
     @Override
     public long decrypt(BigInteger c) {
-        BigInteger m = c.modPow(lambda, n2).subtract(BigInteger.ONE).divide(n).multiply(mu).mod(n);
-        return handleNegative(m).longValue();
+        return handleNegative(decryptRaw(c)).longValue();
+    }
+
+    /**
+     * Returns the plaintext of the given ciphertext in the range 0 to n - 1.
+     */
+    private BigInteger decryptRaw(BigInteger c) {
+        if (!crtDecrypt)
+            return modPow(c, lambda, n2).subtract(BigInteger.ONE).divide(n).multiply(mu).mod(n);
+
+        // decrypt modulo p^2 and q^2, whose exponents and moduli are half as long, and combine
+        // m = mq + q * ((mp - mq) * q^-1 mod p)
+        BigInteger mp = sk.l(modPow(c.mod(sk.p2), sk.p1, sk.p2), sk.p).multiply(sk.hp).mod(sk.p);
+        BigInteger mq = sk.l(modPow(c.mod(sk.q2), sk.q1, sk.q2), sk.q).multiply(sk.hq).mod(sk.q);
+        return mp.subtract(mq).multiply(sk.qInvP).mod(sk.p).multiply(sk.q).add(mq);
     }
 
     public BigInteger add(BigInteger c1, BigInteger c2) {
@@ -122,11 +229,28 @@ public class Paillier extends AsymPHE<BigInteger> {
     }
 
     public BigInteger addPlaintext(BigInteger c, long m) {
-        return c.multiply(g.modPow(BigInteger.valueOf(m), n2)).mod(n2);
+        return c.multiply(gPow(BigInteger.valueOf(m))).mod(n2);
+    }
+
+    /**
+     * Adds the given packed ciphertexts slot by slot. Throws an ArithmeticException if the sums
+     * may overflow their slots.
+     */
+    public PackedCipher addPacked(PackedCipher c1, PackedCipher c2) {
+        long terms = c1.terms + c2.terms;
+        packingCodec.checkTerms(terms);
+        return new PackedCipher(add(c1.c, c2.c), Math.max(c1.length, c2.length), terms);
     }
 
-    public BigInteger addPlaintextPacked(BigInteger c, long[] m) {
-        return c.multiply(g.modPow(pack(m), n2)).mod(n2);
+    /**
+     * Adds the given values to the slots of the given ciphertext. Throws an ArithmeticException if
+     * the sums may overflow their slots.
+     */
+    public PackedCipher addPlaintextPacked(PackedCipher c, long[] m) {
+        long terms = c.terms + 1;
+        packingCodec.checkTerms(terms);
+        BigInteger sum = c.c.multiply(gPow(packingCodec.pack(m))).mod(n2);
+        return new PackedCipher(sum, Math.max(c.length, m.length), terms);
     }
 
     public BigInteger subtract(BigInteger c1, BigInteger c2) {
@@ -134,16 +258,177 @@ public class Paillier extends AsymPHE<BigInteger> {
     }
 
     public BigInteger multiply(BigInteger c, long m) {
-        return c.modPow(BigInteger.valueOf(m), n2);
+        return modPow(c, BigInteger.valueOf(m), n2);
     }
 
     public BigInteger negate(BigInteger ciphertext) {
         return multiply(ciphertext, -1l);
     }
 
+    /**
+     * Returns the encryption of the sum of the messages of the given ciphertexts, computed as a
+     * parallel product tree on the common fork-join pool. An empty array sums to 1, an encryption
+     * of 0.
+     */
+    public BigInteger sum(BigInteger[] c) {
+        return sum(c, ForkJoinPool.commonPool());
+    }
+
+    public BigInteger sum(BigInteger[] c, ForkJoinPool pool) {
+        return ProductTree.product((i, component) -> c[i], c.length, 1, new BarrettReducer(n2), pool)[0];
+    }
+
+    /**
+     * Returns the encryption of the sum of w[i] * m[i], where c[i] encrypts m[i]. See
+     * weightedSum(BigInteger[], long[], int).
+     */
+    public BigInteger weightedSum(BigInteger[] c, long[] w) {
+        int threads = c.length < PARALLEL_WEIGHTED_SUM ? 1 : Runtime.getRuntime().availableProcessors();
+        return weightedSum(c, w, threads);
+    }
+
+    /**
+     * <pre>
+     * Returns the encryption of the sum of w[i] * m[i], where c[i] encrypts m[i], i.e., the product
+     * of c[i]^w[i] mod n^2.
+     *
+     * Instead of one modPow() per term, the weights are split into windows of signed digits and
+     * every window is computed with Pippenger's bucket method: the ciphertexts are multiplied into
+     * the bucket of their digit and the buckets are combined with two running products, so a
+     * window costs about one multiplication per term. Terms with negative digits are multiplied
+     * into separate buckets whose product is inverted once at the end. The terms are split between
+     * `threads` threads.
+     * </pre>
+     */
+    public BigInteger weightedSum(BigInteger[] c, long[] w, int threads) {
+        if (c.length != w.length)
+            throw new IllegalArgumentException("Expected " + c.length + " weights but got " + w.length);
+        BarrettReducer reducer = new BarrettReducer(n2);
+
+        BigInteger[] products;
+        if (threads <= 1 || c.length < 2 * threads) {
+            products = multiExp(c, w, 0, c.length, reducer);
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<BigInteger[]>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int from = (int) ((long) c.length * t / threads);
+                    int to = (int) ((long) c.length * (t + 1) / threads);
+                    futures.add(pool.submit(() -> multiExp(c, w, from, to, reducer)));
+                }
+                products = new BigInteger[]{BigInteger.ONE, BigInteger.ONE};
+                for (Future<BigInteger[]> future : futures) {
+                    BigInteger[] part = future.get();
+                    products[0] = reducer.mulMod(products[0], part[0]);
+                    products[1] = reducer.mulMod(products[1], part[1]);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while computing weighted sum", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Unable to compute weighted sum", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        if (products[1].equals(BigInteger.ONE))
+            return products[0];
+        return reducer.mulMod(products[0], products[1].modInverse(n2));
+    }
+
+    /**
+     * Returns the product of c[i]^w[i] over the positive digits and the product over the negative
+     * digits of terms `from` (inclusive) to `to` (exclusive).
+     */
+    private static BigInteger[] multiExp(BigInteger[] c, long[] w, int from, int to, BarrettReducer reducer) {
+        int count = to - from;
+        if (count == 0)
+            return new BigInteger[]{BigInteger.ONE, BigInteger.ONE};
+
+        // about log2(count) - 2 bits per window balances the multiplications into buckets and the
+        // multiplications that combine them
+        int window = Math.max(1, Math.min(16, 31 - Integer.numberOfLeadingZeros(count) - 2));
+        int half = 1 << (window - 1);
+        // one extra window for the carry of the top digit
+        int windows = Long.SIZE / window + 1;
+
+        // signed digits in the range -half to half of every weight, least significant first. The
+        // magnitude of a weight is treated as unsigned so that Long.MIN_VALUE works.
+        int[] digits = new int[count * windows];
+        long mask = (1L << window) - 1;
+        for (int i = 0; i < count; i++) {
+            long weight = w[from + i];
+            long magnitude = weight < 0 ? -weight : weight;
+            int carry = 0;
+            for (int j = 0; j < windows; j++) {
+                int digit = (int) (magnitude & mask) + carry;
+                magnitude >>>= window;
+                if (digit > half) {
+                    digit -= 1 << window;
+                    carry = 1;
+                } else {
+                    carry = 0;
+                }
+                digits[i * windows + j] = weight < 0 ? -digit : digit;
+            }
+        }
+
+        BigInteger pos = BigInteger.ONE;
+        BigInteger neg = BigInteger.ONE;
+        BigInteger[] posBuckets = new BigInteger[half + 1];
+        BigInteger[] negBuckets = new BigInteger[half + 1];
+        for (int j = windows - 1; j >= 0; j--) {
+            for (int s = 0; s < window; s++) {
+                pos = reducer.mulMod(pos, pos);
+                neg = reducer.mulMod(neg, neg);
+            }
+
+            Arrays.fill(posBuckets, null);
+            Arrays.fill(negBuckets, null);
+            for (int i = 0; i < count; i++) {
+                int digit = digits[i * windows + j];
+                if (digit > 0)
+                    posBuckets[digit] = multiply(posBuckets[digit], c[from + i], reducer);
+                else if (digit < 0)
+                    negBuckets[-digit] = multiply(negBuckets[-digit], c[from + i], reducer);
+            }
+
+            pos = multiply(pos, combine(posBuckets, reducer), reducer);
+            neg = multiply(neg, combine(negBuckets, reducer), reducer);
+        }
+        return new BigInteger[]{pos, neg};
+    }
+
+    /**
+     * Returns the product of buckets[k]^k, computed as the product of the running products of the
+     * buckets from the largest k down.
+     */
+    private static BigInteger combine(BigInteger[] buckets, BarrettReducer reducer) {
+        BigInteger running = null;
+        BigInteger total = null;
+        for (int k = buckets.length - 1; k >= 1; k--) {
+            running = multiply(running, buckets[k], reducer);
+            total = multiply(total, running, reducer);
+        }
+        return total;
+    }
+
+    /**
+     * Returns a * b where null stands for 1.
+     */
+    private static BigInteger multiply(BigInteger a, BigInteger b, BarrettReducer reducer) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+        return reducer.mulMod(a, b);
+    }
+
     @Override
     public String toString() {
-        return "<Paillier modLength=" + BITLENGTH + ">";
+        return "<Paillier modLength=" + n.bitLength() + ">";
     }
 
     public static byte[] toBytes(BigInteger c) {
@@ -169,4 +454,43 @@ class PaillierPK implements Serializable {
         this.mu = mu;
     }
 
-}
\ No newline at end of file
+}
+
+/**
+ * The private key with the factors of n and the constants of CRT decryption.
+ */
+class PaillierSK implements Serializable {
+    private static final long serialVersionUID = 6958377619807093751L;
+
+    final BigInteger p;
+    final BigInteger q;
+    final BigInteger lambda;
+
+    final BigInteger p1; // p - 1
+    final BigInteger q1; // q - 1
+    final BigInteger p2; // p squared
+    final BigInteger q2; // q squared
+    final BigInteger hp; // L_p(g^(p-1) mod p^2)^-1 mod p
+    final BigInteger hq; // L_q(g^(q-1) mod q^2)^-1 mod q
+    final BigInteger qInvP; // q^-1 mod p
+
+    PaillierSK(BigInteger p, BigInteger q, BigInteger lambda, BigInteger g) {
+        this.p = p;
+        this.q = q;
+        this.lambda = lambda;
+        this.p1 = p.subtract(BigInteger.ONE);
+        this.q1 = q.subtract(BigInteger.ONE);
+        this.p2 = p.multiply(p);
+        this.q2 = q.multiply(q);
+        this.hp = l(AsymPHE.modPow(g.mod(p2), p1, p2), p).modInverse(p);
+        this.hq = l(AsymPHE.modPow(g.mod(q2), q1, q2), q).modInverse(q);
+        this.qInvP = q.modInverse(p);
+    }
+
+    /**
+     * L(u) = (u - 1) / d
+     */
+    BigInteger l(BigInteger u, BigInteger d) {
+        return u.subtract(BigInteger.ONE).divide(d);
+    }
+}
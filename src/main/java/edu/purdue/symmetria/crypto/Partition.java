@@ -0,0 +1,69 @@
+package edu.purdue.symmetria.crypto;
+
+/**
+ * <pre>
+ * Hands out the ids of one table or partition in contiguous segments, so that its rows get
+ * consecutive ids in the order they are encrypted even when other partitions are encrypted with
+ * the same scheme at the same time.
+ *
+ * A segment of `segmentSize` ids is reserved from the scheme at a time. Ids are then taken from
+ * the segment in order, so the rows of a partition form one run of consecutive ids per segment
+ * and the sum of a scan over them collapses to a few ranges in a RangeSymCipher. A batch that does
+ * not fit in what is left of a segment starts a new one, and the rest of the old segment is left
+ * unused.
+ * </pre>
+ */
+public class Partition {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 16;
+
+    private final SymPHE scheme;
+    private final int segmentSize;
+
+    // the current segment is [nextId, limit)
+    private long nextId;
+    private long limit;
+
+    private int segments;
+
+    public Partition(SymPHE scheme) {
+        this(scheme, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public Partition(SymPHE scheme, int segmentSize) {
+        if (segmentSize < 1)
+            throw new IllegalArgumentException("segmentSize must be positive");
+        this.scheme = scheme;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Reserves `count` consecutive ids that follow the ids reserved before, unless a new segment
+     * has to be started, and returns the first one.
+     */
+    public synchronized long reserveIds(int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("count must be non-negative");
+        if (limit - nextId < count) {
+            int size = Math.max(count, segmentSize);
+            nextId = scheme.reserveIds(size);
+            limit = nextId + size;
+            segments++;
+        }
+        long firstId = nextId;
+        nextId += count;
+        return firstId;
+    }
+
+    /**
+     * Returns the number of segments reserved so far.
+     */
+    public synchronized int getSegments() {
+        return segments;
+    }
+
+    @Override
+    public String toString() {
+        return "<" + this.getClass().getSimpleName() + " segmentSize=" + segmentSize + " segments=" + segments + ">";
+    }
+}
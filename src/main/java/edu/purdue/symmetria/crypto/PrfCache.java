@@ -0,0 +1,187 @@
+package edu.purdue.symmetria.crypto;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * <pre>
+ * A size-bounded cache of PRF outputs keyed by id, for workloads that decrypt the same (hot) ids
+ * over and over.
+ *
+ * The cache holds the raw output of the PRF, before it is reduced modulo, so schemes with
+ * different moduli can share it. Since the output depends on the key, a cache must only be used by
+ * schemes with the same private key.
+ *
+ * The cache is split into stripes, each guarded by its own lock. A stripe is an open-addressing
+ * table of primitive longs where an id can only be stored in the PROBES slots after its hash slot.
+ * When all of them are taken a slot is evicted with the CLOCK algorithm: slots that were read
+ * since the hand last passed get a second chance. Slots are only ever replaced, never emptied, so
+ * a lookup can stop at the first empty slot.
+ * </pre>
+ */
+public class PrfCache {
+
+    // memory per entry: id, output and state
+    static final int ENTRY_BYTES = Long.BYTES + Long.BYTES + 1;
+
+    private static final int PROBES = 8;
+    private static final int DEFAULT_STRIPES = 16;
+
+    // slot states
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte REFERENCED = 2;
+
+    private static class Stripe {
+        final long[] ids;
+        final long[] outputs;
+        final byte[] states;
+        final int mask;
+
+        // the CLOCK hand, an offset in the probed slots
+        int hand;
+
+        Stripe(int slots) {
+            ids = new long[slots];
+            outputs = new long[slots];
+            states = new byte[slots];
+            mask = slots - 1;
+        }
+    }
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public PrfCache(long maxBytes) {
+        this(maxBytes, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Creates a cache that uses at most `maxBytes` bytes for its entries. `stripes` is rounded down
+     * to a power of two.
+     */
+    public PrfCache(long maxBytes, int stripes) {
+        if (stripes <= 0)
+            throw new IllegalArgumentException("stripes must be positive");
+        stripes = Integer.highestOneBit(stripes);
+        long slots = Long.highestOneBit(Math.max(1, maxBytes / ENTRY_BYTES / stripes));
+        if (slots < PROBES)
+            throw new IllegalArgumentException("maxBytes must allow at least " + PROBES + " entries per stripe");
+        if (slots > 1 << 30)
+            throw new IllegalArgumentException("maxBytes is too large");
+
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++)
+            this.stripes[i] = new Stripe((int) slots);
+        this.stripeMask = stripes - 1;
+    }
+
+    private static long hash(long id) {
+        id ^= id >>> 33;
+        id *= 0xff51afd7ed558ccdL;
+        id ^= id >>> 33;
+        return id;
+    }
+
+    /**
+     * Returns the PRF output of the given id, computing it with `prf` and caching it if missing.
+     * `prf` is called without holding a lock.
+     */
+    public long getOrCompute(long id, LongUnaryOperator prf) {
+        long hash = hash(id);
+        Stripe stripe = stripes[(int) (hash >>> 32) & stripeMask];
+        int slot = (int) hash & stripe.mask;
+
+        synchronized (stripe) {
+            for (int i = 0; i < PROBES; i++) {
+                int s = (slot + i) & stripe.mask;
+                if (stripe.states[s] == EMPTY)
+                    break;
+                if (stripe.ids[s] == id) {
+                    stripe.states[s] = REFERENCED;
+                    hits.increment();
+                    return stripe.outputs[s];
+                }
+            }
+        }
+
+        misses.increment();
+        long output = prf.applyAsLong(id);
+        synchronized (stripe) {
+            put(stripe, slot, id, output);
+        }
+        return output;
+    }
+
+    private void put(Stripe stripe, int slot, long id, long output) {
+        for (int i = 0; i < PROBES; i++) {
+            int s = (slot + i) & stripe.mask;
+            // empty, or added by another thread in the meantime
+            if (stripe.states[s] == EMPTY || stripe.ids[s] == id) {
+                stripe.ids[s] = id;
+                stripe.outputs[s] = output;
+                stripe.states[s] = USED;
+                return;
+            }
+        }
+
+        // CLOCK over the probed slots. At most 2 * PROBES steps are needed since the first pass
+        // clears all REFERENCED states.
+        while (true) {
+            int s = (slot + stripe.hand) & stripe.mask;
+            stripe.hand = (stripe.hand + 1) & (PROBES - 1);
+            if (stripe.states[s] == REFERENCED) {
+                stripe.states[s] = USED;
+                continue;
+            }
+            stripe.ids[s] = id;
+            stripe.outputs[s] = output;
+            stripe.states[s] = USED;
+            evictions.increment();
+            return;
+        }
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     */
+    public long getCapacity() {
+        return (long) stripes.length * stripes[0].ids.length;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Removes all entries and resets the counters.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes)
+            synchronized (stripe) {
+                Arrays.fill(stripe.states, EMPTY);
+            }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "<" + this.getClass().getSimpleName() + " capacity=" + getCapacity() + " hits=" + getHits() +
+                " misses=" + getMisses() + " evictions=" + getEvictions() + ">";
+    }
+}
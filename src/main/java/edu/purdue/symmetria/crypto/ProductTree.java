@@ -0,0 +1,79 @@
+package edu.purdue.symmetria.crypto;
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <pre>
+ * Multiplies many ciphertexts modulo a fixed modulus as a balanced product tree on a fork-join
+ * pool, e.g., to add Paillier ciphertexts or multiply ElGamal ciphertexts in bulk.
+ *
+ * A ciphertext has one or more components (one for Paillier, c1 and c2 for ElGamal) that are
+ * multiplied independently. Ranges of up to LEAF ciphertexts are folded into one accumulator per
+ * component, so no intermediate ciphertext objects are created, and larger ranges are split in
+ * half and run in parallel. All products are reduced with Barrett reduction.
+ * </pre>
+ */
+class ProductTree extends RecursiveTask<BigInteger[]> {
+    private static final long serialVersionUID = 3302582984916263078L;
+
+    // ciphertexts folded sequentially by one task
+    static final int LEAF = 512;
+
+    /**
+     * Returns the given component of the ciphertext at the given index.
+     */
+    interface Terms {
+        BigInteger get(int index, int component);
+    }
+
+    private final Terms terms;
+    private final int components;
+    private final BarrettReducer reducer;
+    private final int from;
+    private final int to;
+
+    private ProductTree(Terms terms, int components, BarrettReducer reducer, int from, int to) {
+        this.terms = terms;
+        this.components = components;
+        this.reducer = reducer;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Returns the products of every component of the first `count` terms modulo the modulus of
+     * `reducer`, or ones if `count` is 0.
+     */
+    static BigInteger[] product(Terms terms, int count, int components, BarrettReducer reducer, ForkJoinPool pool) {
+        ProductTree root = new ProductTree(terms, components, reducer, 0, count);
+        if (count <= LEAF)
+            return root.compute();
+        return pool.invoke(root);
+    }
+
+    @Override
+    protected BigInteger[] compute() {
+        if (to - from <= LEAF) {
+            BigInteger[] products = new BigInteger[components];
+            for (int j = 0; j < components; j++) {
+                BigInteger product = from < to ? terms.get(from, j) : BigInteger.ONE;
+                for (int i = from + 1; i < to; i++)
+                    product = reducer.mulMod(product, terms.get(i, j));
+                products[j] = product;
+            }
+            return products;
+        }
+
+        int mid = (from + to) >>> 1;
+        ProductTree left = new ProductTree(terms, components, reducer, from, mid);
+        left.fork();
+        BigInteger[] products = new ProductTree(terms, components, reducer, mid, to).compute();
+        BigInteger[] leftProducts = left.join();
+        // reuse the array of the right half for the result
+        for (int j = 0; j < components; j++)
+            products[j] = reducer.mulMod(leftProducts[j], products[j]);
+        return products;
+    }
+}
@@ -0,0 +1,174 @@
+package edu.purdue.symmetria.crypto;
+
+import edu.purdue.symmetria.utils.FileUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * A pool of precomputed blinding factors for Paillier (r^n mod n^2) and ElGamal (g^r and h^r mod
+ * n), so encryption does not run a 2048-bit exponentiation on the request path.
+ *
+ * Worker threads fill a bounded queue in the background and encrypt() takes a factor from it, or
+ * computes one inline if the queue is empty. A factor is only ever used once.
+ *
+ * If a path is given, the remaining factors are saved to it on close() and loaded (and the file
+ * deleted, so they cannot be used twice) when the pool of the same key is created again. Anyone
+ * who can read the file can decrypt the ciphertexts encrypted with its factors, so it must be as
+ * protected as the private key.
+ * </pre>
+ */
+public class RandomnessPool implements Closeable {
+
+    private final AsymPHE<?> scheme;
+    private final String path;
+    private final ArrayBlockingQueue<BigInteger[]> queue;
+    private final Thread[] workers;
+    private volatile boolean running = true;
+
+    private final long startTime = System.nanoTime();
+    private final LongAdder produced = new LongAdder();
+    private final LongAdder consumed = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public RandomnessPool(AsymPHE<?> scheme, int capacity, int threads) {
+        this(scheme, capacity, threads, null);
+    }
+
+    /**
+     * Creates a pool of at most `capacity` factors filled by `threads` worker threads. If `path` is
+     * not null the pool starts with the factors saved in it, if any.
+     */
+    public RandomnessPool(AsymPHE<?> scheme, int capacity, int threads, String path) {
+        if (capacity <= 0 || threads < 0)
+            throw new IllegalArgumentException("capacity must be positive and threads non-negative");
+        this.scheme = scheme;
+        this.path = path;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        if (path != null)
+            load();
+
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::fill, "randomness-pool-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    private void fill() {
+        try {
+            while (running) {
+                queue.put(scheme.newBlinding());
+                produced.increment();
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Takes a factor from the pool, or returns null if the pool is empty.
+     */
+    BigInteger[] poll() {
+        BigInteger[] blinding = queue.poll();
+        if (blinding == null)
+            misses.increment();
+        else
+            consumed.increment();
+        return blinding;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load() {
+        if (!new File(path).exists())
+            return;
+        Object[] saved = (Object[]) FileUtils.readObjectFromFile(path);
+        // delete the file first, a factor must never be used twice
+        if (!new File(path).delete())
+            throw new RuntimeException("Unable to delete randomness pool `" + path + "`");
+        if (saved == null || !scheme.n.equals(saved[0]))
+            return;
+        for (BigInteger[] blinding : (ArrayList<BigInteger[]>) saved[1])
+            if (!queue.offer(blinding))
+                break;
+    }
+
+    /**
+     * Returns the number of factors in the pool.
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of factors computed by the workers.
+     */
+    public long getProduced() {
+        return produced.sum();
+    }
+
+    /**
+     * Returns the number of factors taken from the pool.
+     */
+    public long getConsumed() {
+        return consumed.sum();
+    }
+
+    /**
+     * Returns the number of times the pool was empty and a factor was computed inline.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of factors computed per second since the pool was created.
+     */
+    public double getRefillRate() {
+        long nanos = System.nanoTime() - startTime;
+        return nanos == 0 ? 0 : getProduced() * 1e9 / nanos;
+    }
+
+    /**
+     * Returns the number of factors taken per second since the pool was created.
+     */
+    public double getDepletionRate() {
+        long nanos = System.nanoTime() - startTime;
+        return nanos == 0 ? 0 : getConsumed() * 1e9 / nanos;
+    }
+
+    /**
+     * Stops the workers and saves the remaining factors if the pool has a path.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Thread worker : workers)
+            worker.interrupt();
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (path != null) {
+            ArrayList<BigInteger[]> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            FileUtils.saveObjectToFile(new Object[]{scheme.n, remaining}, path);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<" + this.getClass().getSimpleName() + " size=" + size() + " produced=" + getProduced() +
+                " consumed=" + getConsumed() + " misses=" + getMisses() + ">";
+    }
+}
@@ -2,6 +2,8 @@ package edu.purdue.symmetria.crypto;
 
 import edu.purdue.symmetria.crypto.cipher.SymCipher;
 import edu.purdue.symmetria.crypto.cipher.SymCipher.CipherType;
+import edu.purdue.symmetria.crypto.cipher.VectorSymCipher;
+import edu.purdue.symmetria.metrics.Metrics;
 import edu.purdue.symmetria.utils.FileUtils;
 import edu.purdue.symmetria.utils.MathUtils;
 
@@ -11,6 +13,9 @@ public class SymAHE extends SymPHE {
 
     private static final String DEFAULT_KEY_PATH = "/tmp/symahe.sk";
 
+    // values encrypted or decrypted per block of random numbers by encryptColumn() and decryptColumn()
+    private static final int COLUMN_BLOCK = 4096;
+
     public SymAHE() {
         this(DEFAULT_CIPHER_TYPE, CryptoScheme.DEFAULT_NEGDIVISOR, DEFAULT_KEY_PATH);
     }
@@ -42,19 +47,34 @@ public class SymAHE extends SymPHE {
 
     @Override
     public SymCipher encrypt(long m) {
-        long nextId = getNextId();
-        long v = MathUtils.modAdd(m, getRandNum(nextId, this.modulo), this.modulo);
-        return SymPHE.generateCipher(cipherType, v, nextId);
+        long[] entry = new long[2];
+        nextObfuscation(entry);
+        long v = MathUtils.modAdd(m, entry[1], this.modulo);
+        return SymPHE.generateCipher(cipherType, v, entry[0]);
+    }
+
+    @Override
+    long toObfuscation(long randNum) {
+        return randNum;
     }
 
     @Override
     public long decrypt(SymCipher c) {
-        long m = c.getValue();
         long[][] ids = c.getIds();
+        long[] randNums = new long[c.getSize()];
+        for (int i = 0; i < randNums.length; i++)
+            randNums[i] = getCachedRandNum(ids[0][i], modulo);
+        return decrypt(c, ids, randNums);
+    }
+
+    @Override
+    long decrypt(SymCipher c, long[][] ids, long[] randNums) {
+        if (Metrics.ENABLED)
+            Metrics.DECRYPT_IDS.record(c.getSize());
+        long m = c.getValue();
         for (int i = 0; i < c.getSize(); i++) {
-            long id = ids[0][i];
             long card = ids[1][i];
-            long obf = getRandNum(id, modulo);
+            long obf = randNums[i];
             if (card < 0)
                 m = MathUtils.modAdd(m, MathUtils.modMul(obf, -card, modulo), modulo);
             else
@@ -86,6 +106,133 @@ public class SymAHE extends SymPHE {
         return this.multiply(c, -1L);
     }
 
+    /**
+     * Encrypt the given values as the columns of a single vector cipher that uses a single id.
+     */
+    public VectorSymCipher encrypt(long[] m) {
+        long nextId = getNextId();
+        long[] r = new long[m.length];
+        getColumnRandNums(nextId, m.length, this.modulo, r);
+        long[] v = new long[m.length];
+        for (int i = 0; i < m.length; i++)
+            v[i] = MathUtils.modAdd(m[i], r[i], this.modulo);
+        return new VectorSymCipher(v, SymPHE.generateCipher(cipherType, 0, nextId));
+    }
+
+    public long[] decrypt(VectorSymCipher c) {
+        int columns = c.getColumns();
+        long[] m = new long[columns];
+        for (int j = 0; j < columns; j++)
+            m[j] = c.getValue(j);
+
+        long[] r = new long[columns];
+        long[][] ids = c.getIds();
+        for (int i = 0; i < c.getSize(); i++) {
+            long card = ids[1][i];
+            getColumnRandNums(ids[0][i], columns, modulo, r);
+            for (int j = 0; j < columns; j++) {
+                if (card < 0)
+                    m[j] = MathUtils.modAdd(m[j], MathUtils.modMul(r[j], -card, modulo), modulo);
+                else
+                    m[j] = MathUtils.modSubtract(m[j], MathUtils.modMul(r[j], card, modulo), modulo);
+            }
+        }
+
+        for (int j = 0; j < columns; j++)
+            m[j] = handleNegative(m[j]);
+        return m;
+    }
+
+    public VectorSymCipher add(VectorSymCipher c1, VectorSymCipher c2) {
+        c1.add(c2, this.modulo);
+        return c1;
+    }
+
+    public VectorSymCipher addPlaintext(VectorSymCipher c, long[] m) {
+        c.addValues(m, this.modulo);
+        return c;
+    }
+
+    public VectorSymCipher subtract(VectorSymCipher c1, VectorSymCipher c2) {
+        return this.add(c1, this.negate(c2));
+    }
+
+    public VectorSymCipher multiply(VectorSymCipher c, long m) {
+        c.multiply(m, this.modulo);
+        return c;
+    }
+
+    public VectorSymCipher negate(VectorSymCipher c) {
+        return this.multiply(c, -1L);
+    }
+
+    /**
+     * Encrypts the given column with fresh consecutive ids. Returns the id of the first value, see
+     * encryptColumn(long[], long, long[]).
+     */
+    public long encryptColumn(long[] in, long[] out) {
+        long firstId = reserveIds(in.length);
+        encryptColumn(in, firstId, out);
+        return firstId;
+    }
+
+    /**
+     * <pre>
+     * Encrypts the values of `in` with the consecutive ids starting at `firstId` into `out`, i.e.,
+     * out[i] is the value of the cipher of in[i] with id firstId + i. The ids must have been
+     * reserved with reserveIds().
+     *
+     * No cipher objects are created: the random numbers are computed in blocks of COLUMN_BLOCK
+     * ids with the bulk PRF and added in a primitive loop. Can be called from several threads at
+     * once, e.g., on different ranges of a column.
+     * </pre>
+     */
+    public void encryptColumn(long[] in, long firstId, long[] out) {
+        if (out.length < in.length)
+            throw new IllegalArgumentException("Expected room for " + in.length + " values but got " + out.length);
+        long[] r = new long[Math.min(in.length, COLUMN_BLOCK)];
+        for (int start = 0; start < in.length; start += COLUMN_BLOCK) {
+            int count = Math.min(COLUMN_BLOCK, in.length - start);
+            getRandNums(firstId + start, count, modulo, r, 0);
+            for (int i = 0; i < count; i++)
+                out[start + i] = MathUtils.modAddReduced(MathUtils.mod(in[start + i], modulo), r[i], modulo);
+        }
+    }
+
+    /**
+     * Encrypts the given rows of partition `p` in order, so their ids are consecutive within the
+     * segments of the partition and sums of a scan over them compress to a few ranges.
+     */
+    public SymCipher[] encrypt(long[] values, Partition p) {
+        long firstId = p.reserveIds(values.length);
+        long[] ciphers = new long[values.length];
+        encryptColumn(values, firstId, ciphers);
+        SymCipher[] out = new SymCipher[values.length];
+        for (int i = 0; i < values.length; i++)
+            out[i] = SymPHE.generateCipher(cipherType, ciphers[i], firstId + i);
+        return out;
+    }
+
+    /**
+     * Decrypts the values of `in` encrypted with encryptColumn() with the consecutive ids starting
+     * at `firstId` into `out`. The PRF cache is not used, since a scan would only evict hot ids.
+     */
+    public void decryptColumn(long[] in, long firstId, long[] out) {
+        if (out.length < in.length)
+            throw new IllegalArgumentException("Expected room for " + in.length + " values but got " + out.length);
+        long[] r = new long[Math.min(in.length, COLUMN_BLOCK)];
+        for (int start = 0; start < in.length; start += COLUMN_BLOCK) {
+            int count = Math.min(COLUMN_BLOCK, in.length - start);
+            getRandNums(firstId + start, count, modulo, r, 0);
+            for (int i = 0; i < count; i++) {
+                long m = in[start + i] - r[i];
+                if (m < 0)
+                    m += modulo;
+                out[start + i] = handleNegative(m);
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return "<" + this.getClass().getSimpleName() + ">";
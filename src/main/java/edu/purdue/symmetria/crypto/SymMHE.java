@@ -2,6 +2,7 @@ package edu.purdue.symmetria.crypto;
 
 import edu.purdue.symmetria.crypto.cipher.SymCipher;
 import edu.purdue.symmetria.crypto.cipher.SymCipher.CipherType;
+import edu.purdue.symmetria.metrics.Metrics;
 import edu.purdue.symmetria.utils.FileUtils;
 import edu.purdue.symmetria.utils.MathUtils;
 
@@ -63,19 +64,33 @@ public class SymMHE extends SymPHE {
 
     @Override
     public SymCipher encrypt(long m) {
-        long nextId = getNextId();
-        long obf = MathUtils.modPow(g, getRandNum(nextId, modulo), modulo);
-        long v = MathUtils.modMul(m, obf, modulo);
-        return SymPHE.generateCipher(cipherType, v, nextId);
+        long[] entry = new long[2];
+        nextObfuscation(entry);
+        long v = MathUtils.modMul(m, entry[1], modulo);
+        return SymPHE.generateCipher(cipherType, v, entry[0]);
+    }
+
+    @Override
+    long toObfuscation(long randNum) {
+        return MathUtils.modPow(g, randNum, modulo);
     }
 
     @Override
     public long decrypt(SymCipher c) {
-        long m = c.getValue();
         long[][] ids = c.getIds();
+        long[] randNums = new long[c.getSize()];
+        for (int i = 0; i < randNums.length; i++)
+            randNums[i] = getCachedRandNum(ids[0][i], modulo);
+        return decrypt(c, ids, randNums);
+    }
+
+    @Override
+    long decrypt(SymCipher c, long[][] ids, long[] randNums) {
+        if (Metrics.ENABLED)
+            Metrics.DECRYPT_IDS.record(c.getSize());
+        long m = c.getValue();
         for (int i = 0; i < c.getSize(); i++) {
-            long r = getRandNum(ids[0][i], modulo);
-            long obf = MathUtils.modPow(g, r, modulo);
+            long obf = MathUtils.modPow(g, randNums[i], modulo);
             long card = ids[1][i];
             if (card >= 0)
                 obf = MathUtils.modInverse(obf, modulo);
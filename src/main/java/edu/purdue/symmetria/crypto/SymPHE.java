@@ -4,6 +4,7 @@ import edu.purdue.symmetria.crypto.cipher.ArraySymCipher;
 import edu.purdue.symmetria.crypto.cipher.RangeSymCipher;
 import edu.purdue.symmetria.crypto.cipher.SymCipher;
 import edu.purdue.symmetria.crypto.cipher.SymCipher.CipherType;
+import edu.purdue.symmetria.metrics.Metrics;
 import edu.purdue.symmetria.utils.ByteUtils;
 import edu.purdue.symmetria.utils.MathUtils;
 
@@ -11,16 +12,29 @@ import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.SecretKeySpec;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongUnaryOperator;
 
 public abstract class SymPHE extends CryptoScheme {
 
     static final CipherType DEFAULT_CIPHER_TYPE = CipherType.ARRAY;
 
+    // the largest id to encrypt with. The PRF only depends on the first 16 decimal digits of an
+    // id, see getRandNums(), so larger ids would reuse the random numbers of smaller ones.
+    public static final long MAX_ID = 9_999_999_999_999_999L;
+
     // arithmetic modulo
     public long modulo;
 
@@ -32,17 +46,54 @@ public abstract class SymPHE extends CryptoScheme {
     // what type of cipher to use. This includes the method to use to handle id lists.
     CipherType cipherType;
 
-    // the next id to use
-    long nextId;
+    // hands out the ids to encrypt with, see setIdAllocator()
+    private volatile IdAllocator idAllocator = new MemoryIdAllocator(1);
 
     // used to generate random numbers
     Cipher aesBlockCipher;
 
+    // optional cache of PRF outputs, see setPrfCache()
+    private volatile PrfCache prfCache;
+
+    // optional source of precomputed obfuscations, see setPrefetcher()
+    private volatile ObfuscationPrefetcher prefetcher;
+
+    // ids whose random numbers are computed with one call to the block cipher
+    private static final int PRF_BATCH = 256;
+
+    // the threads of decryptAll(), kept across calls and stopped after a minute without work
+    private static final ExecutorService BULK_POOL = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "SymPHE-bulk");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // used by prf(), one per thread since a Cipher cannot be shared between threads.
+    private final ThreadLocal<PrfState> prfState = ThreadLocal.withInitial(() -> new PrfState(newBlockCipher("AES")));
+
+    // prf() as a function, created once for the PRF cache
+    private final LongUnaryOperator prfFunction = this::prf;
+
+    // used to generate the random numbers of the columns of vector ciphers and in bulk.
+    private final ThreadLocal<Cipher> columnBlockCipher = ThreadLocal.withInitial(() -> newBlockCipher("AES/ECB/NoPadding"));
+
+    /**
+     * The block cipher and the buffers of one thread, so that prf() does not allocate.
+     */
+    private static class PrfState {
+        final Cipher cipher;
+        final byte[] in = new byte[20];
+        final byte[] out = new byte[32];
+
+        PrfState(Cipher cipher) {
+            this.cipher = cipher;
+        }
+    }
+
     public SymPHE(CipherType cipherType, int negDivisor, String privateKeyPath) {
         super(privateKeyPath);
         this.cipherType = cipherType;
         setupRandNum();
-        nextId = 1;
     }
 
     /**
@@ -59,6 +110,19 @@ public abstract class SymPHE extends CryptoScheme {
         return cipher;
     }
 
+    /**
+     * Returns a cipher of the given value that holds the first `count` ids of `sortedIds`, each
+     * with cardinality 1, e.g., the sum of a group of rows. The ids must be strictly increasing.
+     */
+    public SymCipher generateCipher(long value, long[] sortedIds, int count) {
+        if (cipherType == CipherType.ARRAY)
+            return new ArraySymCipher(value, sortedIds, count);
+        else if (cipherType == CipherType.RANGE)
+            return new RangeSymCipher(value, sortedIds, count);
+        else
+            throw new RuntimeException("Invalid cipher type");
+    }
+
     /**
      * Encrypt the given message
      */
@@ -69,12 +133,179 @@ public abstract class SymPHE extends CryptoScheme {
      */
     public abstract long decrypt(SymCipher ciphertext);
 
+    /**
+     * Decrypt the given ciphertext whose ids are `ids` (as returned by getIds()) given the random
+     * number `randNums[i]` of every id `ids[0][i]`.
+     */
+    abstract long decrypt(SymCipher ciphertext, long[][] ids, long[] randNums);
+
+    /**
+     * Decrypts all given ciphertexts. See decryptAll(List, int).
+     */
+    public long[] decryptAll(List<SymCipher> ciphertexts) {
+        return decryptAll(ciphertexts, 1);
+    }
+
+    /**
+     * <pre>
+     * Decrypts all given ciphertexts, e.g., the groups of a GROUP BY or several aggregates over
+     * the same rows.
+     *
+     * decrypt() computes the random number of every id of every ciphertext. Here the ids of all
+     * ciphertexts are sorted and deduplicated first, so the random number of an id that is held by
+     * several ciphertexts is computed once. Runs of consecutive ids are computed in bulk and split
+     * between `threads` threads.
+     * </pre>
+     */
+    public long[] decryptAll(List<SymCipher> ciphertexts, int threads) {
+        int n = ciphertexts.size();
+        long[][][] ids = new long[n][][];
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            ids[i] = ciphertexts.get(i).getIds();
+            total += ciphertexts.get(i).getSize();
+        }
+
+        // the distinct ids of all ciphertexts in increasing order
+        long[] distinct = new long[total];
+        int index = 0;
+        for (int i = 0; i < n; i++) {
+            int size = ciphertexts.get(i).getSize();
+            System.arraycopy(ids[i][0], 0, distinct, index, size);
+            index += size;
+        }
+        Arrays.sort(distinct);
+        int count = 0;
+        for (int i = 0; i < total; i++)
+            if (count == 0 || distinct[i] != distinct[count - 1])
+                distinct[count++] = distinct[i];
+
+        long[] distinctRandNums = new long[count];
+        getRandNums(distinct, count, distinctRandNums, threads);
+
+        long[] result = new long[n];
+        for (int i = 0; i < n; i++) {
+            SymCipher c = ciphertexts.get(i);
+            long[] randNums = new long[c.getSize()];
+            for (int j = 0; j < randNums.length; j++)
+                randNums[j] = distinctRandNums[Arrays.binarySearch(distinct, 0, count, ids[i][0][j])];
+            result[i] = decrypt(c, ids[i], randNums);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the random numbers of the first `count` ids of `sortedIds` using `threads` threads:
+     * the calling thread and `threads - 1` threads of BULK_POOL, each computing a slice of the ids.
+     */
+    private void getRandNums(long[] sortedIds, int count, long[] out, int threads) {
+        if (threads <= 1 || count < 2 * threads) {
+            getRandNums(sortedIds, 0, count, out);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 1; t < threads; t++) {
+                int from = (int) ((long) count * t / threads);
+                int to = (int) ((long) count * (t + 1) / threads);
+                futures.add(BULK_POOL.submit(() -> getRandNums(sortedIds, from, to, out)));
+            }
+            getRandNums(sortedIds, 0, (int) ((long) count / threads), out);
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while generating random numbers", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to generate random numbers", e.getCause());
+        } finally {
+            for (Future<?> future : futures)
+                future.cancel(true);
+        }
+    }
+
+    /**
+     * Computes the random numbers of `sortedIds[from]` to `sortedIds[to - 1]`, one run of
+     * consecutive ids at a time.
+     */
+    void getRandNums(long[] sortedIds, int from, int to, long[] out) {
+        if (prfCache != null) {
+            for (int i = from; i < to; i++)
+                out[i] = getCachedRandNum(sortedIds[i], modulo);
+            return;
+        }
+
+        int start = from;
+        while (start < to) {
+            int end = start + 1;
+            while (end < to && sortedIds[end] == sortedIds[end - 1] + 1)
+                end++;
+            getRandNums(sortedIds[start], end - start, modulo, out, start);
+            start = end;
+        }
+    }
+
+    /**
+     * Returns the obfuscation of a plaintext given the random number of its id.
+     */
+    abstract long toObfuscation(long randNum);
+
+    /**
+     * Stores the id of the next encryption in `entry[0]` and its obfuscation in `entry[1]`. Takes
+     * them from the prefetcher if one is set and it is not empty.
+     */
+    void nextObfuscation(long[] entry) {
+        ObfuscationPrefetcher p = prefetcher;
+        if (p != null && p.poll(entry))
+            return;
+        entry[0] = getNextId();
+        entry[1] = toObfuscation(getRandNum(entry[0], modulo));
+    }
+
+    /**
+     * Sets the prefetcher encrypt() takes obfuscations from, or computes them inline if null. The
+     * prefetcher must have been created for this scheme.
+     */
+    public void setPrefetcher(ObfuscationPrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+
+    /**
+     * Sets the allocator the ids to encrypt with come from. By default ids are handed out from
+     * memory starting at 1, so a scheme whose key outlives the process should use a
+     * FileIdAllocator. Must be set before the first encryption. The allocator must not hand out
+     * ids above MAX_ID.
+     */
+    public void setIdAllocator(IdAllocator idAllocator) {
+        if (idAllocator.getMaxId() > MAX_ID)
+            throw new IllegalArgumentException("Allocator " + idAllocator + " hands out ids above " + MAX_ID);
+        this.idAllocator = idAllocator;
+    }
+
+    public IdAllocator getIdAllocator() {
+        return idAllocator;
+    }
 
     /**
      * Returns the next id to use to encrypt.
      */
     public long getNextId() {
-        return nextId++;
+        return checkIds(idAllocator.next(), 1);
+    }
+
+    /**
+     * Reserves `count` consecutive ids and returns the first one. The reserved ids are never
+     * returned by getNextId().
+     */
+    public long reserveIds(int count) {
+        return checkIds(idAllocator.reserve(count), count);
+    }
+
+    private static long checkIds(long firstId, int count) {
+        if (firstId < 0 || firstId > MAX_ID - count + 1)
+            throw new IllegalStateException("Id " + firstId + " is above " + MAX_ID);
+        return firstId;
     }
 
     /**
@@ -82,22 +313,147 @@ public abstract class SymPHE extends CryptoScheme {
      * number generator.
      */
     public long getRandNum(long id, long modulo) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
         byte[] b = new byte[0];
         try {
             b = aesBlockCipher.doFinal(String.valueOf(id).getBytes());
         } catch (Exception e) {
             e.printStackTrace();
         }
+        if (Metrics.ENABLED) {
+            Metrics.PRF_CALLS.increment();
+            Metrics.PRF_NANOS.record(System.nanoTime() - start);
+        }
         return MathUtils.mod(ByteUtils.bytesToLong(b), modulo);
     }
 
+    /**
+     * Same as getRandNum() but goes through the PRF cache if one is set. Only used to decrypt,
+     * since the fresh ids of encryptions would only evict useful entries.
+     */
+    long getCachedRandNum(long id, long modulo) {
+        PrfCache cache = prfCache;
+        if (cache == null)
+            return getRandNum(id, modulo);
+        return MathUtils.mod(cache.getOrCompute(id, prfFunction), modulo);
+    }
+
+    /**
+     * Returns the output of the PRF for the given id before it is reduced modulo. Can be called
+     * from several threads at once.
+     */
+    private long prf(long id) {
+        if (Metrics.ENABLED)
+            Metrics.PRF_CALLS.increment();
+        PrfState state = prfState.get();
+        try {
+            int length = ByteUtils.longToDecimalBytes(id, state.in);
+            state.cipher.doFinal(state.in, 0, length, state.out, 0);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Unable to generate random numbers", e);
+        }
+        return ByteUtils.bytesToLong(state.out);
+    }
+
+    /**
+     * Sets the cache of PRF outputs used to decrypt, or disables caching if null. The cache must
+     * only be shared by schemes with the same private key.
+     */
+    public void setPrfCache(PrfCache prfCache) {
+        this.prfCache = prfCache;
+    }
+
+    public PrfCache getPrfCache() {
+        return prfCache;
+    }
+
+    /**
+     * Computes the random numbers of the `count` consecutive ids starting at `firstId` and stores
+     * them in `out`. Produces the same numbers as getRandNum() but can be called from several
+     * threads at once and does not allocate per id.
+     */
+    public void getRandNums(long firstId, int count, long modulo, long[] out) {
+        getRandNums(firstId, count, modulo, out, 0);
+    }
+
+    /**
+     * <pre>
+     * Same as getRandNums() but stores the numbers starting at `out[offset]`.
+     *
+     * The PRF encrypts the decimal digits of an id with AES/ECB and PKCS5 padding and only uses
+     * the first output block, which depends only on the first 16 bytes of the input, hence ids are
+     * kept at or below MAX_ID by getNextId() and reserveIds(). So the first
+     * blocks of up to PRF_BATCH ids are padded here and encrypted with a single doFinal() of the
+     * unpadded cipher, which saves the per-call overhead of the JCE.
+     * </pre>
+     */
+    public void getRandNums(long firstId, int count, long modulo, long[] out, int offset) {
+        if (Metrics.ENABLED)
+            Metrics.PRF_CALLS.add(count);
+        Cipher cipher = columnBlockCipher.get();
+        byte[] digits = new byte[20];
+        byte[] blocks = new byte[16 * Math.min(count, PRF_BATCH)];
+        try {
+            for (int start = 0; start < count; start += PRF_BATCH) {
+                int batch = Math.min(PRF_BATCH, count - start);
+                for (int i = 0; i < batch; i++) {
+                    int length = ByteUtils.longToDecimalBytes(firstId + start + i, digits);
+                    int copied = Math.min(length, 16);
+                    System.arraycopy(digits, 0, blocks, 16 * i, copied);
+                    // PKCS5 padding, only present in the first block if the digits are shorter
+                    Arrays.fill(blocks, 16 * i + copied, 16 * (i + 1), (byte) (16 - length));
+                }
+                cipher.doFinal(blocks, 0, 16 * batch, blocks, 0);
+                for (int i = 0; i < batch; i++)
+                    out[offset + start + i] = MathUtils.mod(ByteUtils.bytesToLong(blocks, 16 * i), modulo);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Unable to generate random numbers", e);
+        }
+    }
+
+    /**
+     * Computes the random numbers of the first `columns` columns of the given id and stores them in
+     * `out`. Every AES block gives the numbers of two columns. The input block is the id followed
+     * by a 0xFF byte and the block number. getRandNum() encrypts the decimal digits of an id with
+     * padding, none of which is 0xFF, so the two never encrypt the same block.
+     */
+    public void getColumnRandNums(long id, int columns, long modulo, long[] out) {
+        Cipher cipher = columnBlockCipher.get();
+        ByteBuffer in = ByteBuffer.allocate(16);
+        byte[] b = new byte[16];
+        try {
+            for (int block = 0; 2 * block < columns; block++) {
+                in.clear();
+                in.putLong(id);
+                in.putInt(0xFF000000);
+                in.putInt(block);
+                cipher.doFinal(in.array(), 0, 16, b, 0);
+
+                ByteBuffer rand = ByteBuffer.wrap(b);
+                out[2 * block] = MathUtils.mod(rand.getLong(), modulo);
+                if (2 * block + 1 < columns)
+                    out[2 * block + 1] = MathUtils.mod(rand.getLong(), modulo);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Unable to generate random numbers", e);
+        }
+    }
 
     /**
      * Setup cipher used for generating random numbers
      */
     void setupRandNum() {
+        aesBlockCipher = newBlockCipher("AES");
+    }
+
+    /**
+     * Returns a new block cipher of the given transformation initialized with the private key.
+     */
+    private Cipher newBlockCipher(String transformation) {
         String algorithm = "AES";
         String key = (String) privateKey;
+        Cipher cipher = null;
         try {
             byte[] keyBA = key.getBytes(StandardCharsets.UTF_8);
             MessageDigest sha = MessageDigest.getInstance("SHA-1");
@@ -105,11 +461,12 @@ public abstract class SymPHE extends CryptoScheme {
             keyBA = Arrays.copyOf(keyBA, 16);
 
             SecretKeySpec secretKeySpec = new SecretKeySpec(keyBA, algorithm);
-            aesBlockCipher = Cipher.getInstance(algorithm);
-            aesBlockCipher.init(Cipher.ENCRYPT_MODE, secretKeySpec);
+            cipher = Cipher.getInstance(transformation);
+            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec);
         } catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException e) {
             e.printStackTrace();
         }
+        return cipher;
     }
 
     /**
@@ -1,5 +1,6 @@
 package edu.purdue.symmetria.crypto.cipher;
 
+import edu.purdue.symmetria.metrics.Metrics;
 import edu.purdue.symmetria.utils.MathUtils;
 
 import java.util.Arrays;
@@ -30,282 +31,359 @@ import java.util.Map;
  *
  * 6. Compresses lists
  *
+ * 7. ids too far from the previous id for an int, e.g., the first id of another node (see
+ * NodeIdAllocator), are stored as FAR and their id is kept in a map. A list is a run of segments,
+ * each with a long base and dense int deltas.
+ *
+ * 8. when all ids of one list come after all ids of the other, e.g., the ids of two nodes or of
+ * rows encrypted one after the other, the lists are concatenated instead of merged. Appending is
+ * done in place with amortized growth.
+ *
  * </pre>
  */
 public class ArraySymCipher extends SymCipher {
 
-    // number of items in id arrays
-    private int sizePos;
-    private int sizeNeg;
+    /**
+     * A sorted list of ids and their cardinalities.
+     */
+    private static class IdList {
+        // marks an id whose difference to the previous id does not fit in an int
+        private static final int FAR = -1;
 
-    private long offsetPos;
-    private long offsetNeg;
+        // number of items in `ids`, which may be longer
+        private int size;
 
-    // hold the ids
-    private int[] idsPos;
-    private int[] idsNeg;
+        // the first and last id
+        private long offset;
+        private long last;
 
-    // for all cardinalities not in the map
-    private long cardMultiplierPos;
-    private long cardMultiplierNeg;
+        // the differences of every id to the previous one, 0 for the first id
+        private int[] ids;
 
-    // card multiplier does not apply for this map. The map holds the actual cardinality.
-    // index of "ids" array--> cardinality
-    private Map<Integer, Long> cardPos;
-    private Map<Integer, Long> cardNeg;
+        // index of "ids" array --> id, for the FAR ids
+        private Map<Integer, Long> bases;
 
-    public ArraySymCipher(long value, long id) {
-        setValue(value);
-        sizePos = 1;
-        offsetPos = id;
-        idsPos = new int[1];
-        cardMultiplierPos = 1;
-    }
+        // for all cardinalities not in the map
+        private long cardMultiplier = 1;
 
-    /**
-     * adds the ids of the other ciphertext to this ciphertext
-     */
-    private void addIds(ArraySymCipher other, boolean isPos) {
-        int thisSize;
-        long thisOffset;
-        int[] thisIds;
-        long thisCardMultiplier;
-        Map<Integer, Long> thisCard;
-
-        int otherSize;
-        long otherOffset;
-        int[] otherIds;
-        long otherCardMultiplier;
-        Map<Integer, Long> otherCard;
-
-        // choose positive or negative items
-        if (isPos) {
-            thisSize = sizePos;
-            thisOffset = offsetPos;
-            thisIds = idsPos;
-            thisCardMultiplier = cardMultiplierPos;
-            thisCard = cardPos;
-
-            otherSize = other.sizePos;
-            otherOffset = other.offsetPos;
-            otherIds = other.idsPos;
-            otherCardMultiplier = other.cardMultiplierPos;
-            otherCard = other.cardPos;
-        } else {
-            thisSize = sizeNeg;
-            thisOffset = offsetNeg;
-            thisIds = idsNeg;
-            thisCardMultiplier = cardMultiplierNeg;
-            thisCard = cardNeg;
-
-            otherSize = other.sizeNeg;
-            otherOffset = other.offsetNeg;
-            otherIds = other.idsNeg;
-            otherCardMultiplier = other.cardMultiplierNeg;
-            otherCard = other.cardNeg;
+        // card multiplier does not apply for this map. The map holds the actual cardinality.
+        // index of "ids" array--> cardinality
+        private Map<Integer, Long> card;
+
+        IdList() {
+            this.ids = new int[0];
         }
 
-        if (otherSize == 0)
-            return;
+        IdList(int capacity, long cardMultiplier) {
+            this.ids = new int[capacity];
+            this.cardMultiplier = cardMultiplier;
+        }
 
-        int newSize;
-        long newOffset = 0;
-        int[] newIds;
-        long newCardMultiplier;
-        Map<Integer, Long> newCard;
-
-        if (thisSize == 0) {
-            newSize = otherSize;
-            newOffset = otherOffset;
-            newIds = otherIds;
-            newCardMultiplier = otherCardMultiplier;
-            newCard = otherCard;
-        } else {
-            // upper bound on new size since ids can cancel out, i.e., in case cardinality
-            // sums up to 0.
-            int upperSize = thisSize + otherSize;
-            newIds = new int[upperSize];
-            newCard = new HashMap<>();
-
-            // keep the cardinality multiplier of the longest ciphertext
-            newCardMultiplier = thisCardMultiplier;
-            if (thisSize < otherSize)
-                newCardMultiplier = otherCardMultiplier;
-
-            int thisIndex = 0;
-            int otherIndex = 0;
-            int newIndex = 0;
-            long currentOffset = 0;
-
-            while (thisIndex < thisSize || otherIndex < otherSize) {
-
-                long thisId = -1;
-                long otherId = -1;
-                if (thisIndex < thisSize)
-                    thisId = thisOffset + thisIds[thisIndex];
-                if (otherIndex < otherSize)
-                    otherId = otherOffset + otherIds[otherIndex];
-
-                if (otherIndex >= otherSize || (thisIndex < thisSize && thisId < otherId)) {
-                    // set the id
-                    newIds[newIndex] = (int) (thisId - currentOffset);
-                    if (newIndex == 0) {
-                        newOffset = newIds[newIndex];
-                        newIds[newIndex] = 0;
-                    }
+        IdList(long id) {
+            this.size = 1;
+            this.offset = id;
+            this.last = id;
+            this.ids = new int[1];
+        }
 
-                    // update offsets
-                    thisOffset = thisId;
-                    currentOffset = thisId;
-
-                    // set the cardinality
-                    long card = thisCardMultiplier;
-                    if (thisCard != null && thisCard.containsKey(thisIndex))
-                        card = thisCard.get(thisIndex);
-                    if (card != newCardMultiplier)
-                        newCard.put(newIndex, card);
-
-                    // update indices
-                    thisIndex++;
-                    newIndex++;
-                } else if (thisIndex >= thisSize || otherId < thisId) {
-                    // set the id
-                    newIds[newIndex] = (int) (otherId - currentOffset);
-                    if (newIndex == 0) {
-                        newOffset = newIds[newIndex];
-                        newIds[newIndex] = 0;
-                    }
+        /**
+         * Returns a copy whose array can hold `capacity` ids.
+         */
+        IdList copy(int capacity) {
+            IdList c = new IdList();
+            c.size = size;
+            c.offset = offset;
+            c.last = last;
+            c.ids = Arrays.copyOf(ids, capacity);
+            c.bases = bases == null ? null : new HashMap<>(bases);
+            c.cardMultiplier = cardMultiplier;
+            c.card = card == null ? null : new HashMap<>(card);
+            return c;
+        }
 
-                    // update offsets
-                    otherOffset = otherId;
-                    currentOffset = otherId;
+        /**
+         * Returns the id at `index` given the id at `index - 1`.
+         */
+        private long id(int index, long previous) {
+            if (index == 0)
+                return offset;
+            int delta = ids[index];
+            return delta == FAR ? bases.get(index) : previous + delta;
+        }
 
-                    // set the cardinality
-                    long card = otherCardMultiplier;
-                    if (otherCard != null && otherCard.containsKey(otherIndex))
-                        card = otherCard.get(otherIndex);
-                    if (card != newCardMultiplier)
-                        newCard.put(newIndex, card);
+        private long card(int index) {
+            if (card == null)
+                return cardMultiplier;
+            Long c = card.get(index);
+            return c == null ? cardMultiplier : c;
+        }
 
-                    // update indices
-                    otherIndex++;
-                    newIndex++;
-                } else {
-                    // set the id
-                    newIds[newIndex] = (int) (thisId - currentOffset);
-                    if (newIndex == 0) {
-                        newOffset = newIds[newIndex];
-                        newIds[newIndex] = 0;
+        private void putCard(int index, long c) {
+            if (card == null)
+                card = new HashMap<>();
+            card.put(index, c);
+        }
+
+        /**
+         * Stores `id` at `index`, which must follow `last`.
+         */
+        private void putId(int index, long id) {
+            long delta = id - last;
+            if (delta > Integer.MAX_VALUE) {
+                if (bases == null)
+                    bases = new HashMap<>();
+                bases.put(index, id);
+                ids[index] = FAR;
+            } else {
+                ids[index] = (int) delta;
+            }
+        }
+
+        /**
+         * Adds `id` with cardinality `c` at the end. `id` must not be smaller than the last id and
+         * the array must have room for it.
+         */
+        void add(long id, long c) {
+            if (size == 0)
+                offset = id;
+            else
+                putId(size, id);
+            if (c != cardMultiplier)
+                putCard(size, c);
+            last = id;
+            size++;
+        }
+
+        /**
+         * Adds all ids of `other` at the end. They must all be larger than the last id.
+         */
+        void addAll(IdList other) {
+            int newSize = size + other.size;
+            if (ids.length < newSize)
+                ids = Arrays.copyOf(ids, Math.max(newSize, 2 * size));
+
+            // keep the cardinality multiplier of the longest list
+            if (other.size > size && other.cardMultiplier != cardMultiplier)
+                setCardMultiplier(other.cardMultiplier);
+
+            System.arraycopy(other.ids, 0, ids, size, other.size);
+            putId(size, other.offset);
+            if (other.bases != null)
+                for (Map.Entry<Integer, Long> entry : other.bases.entrySet())
+                    if (entry.getKey() > 0) {
+                        if (bases == null)
+                            bases = new HashMap<>();
+                        bases.put(size + entry.getKey(), entry.getValue());
                     }
 
-                    // update offsets
-                    thisOffset = thisId;
-                    otherOffset = thisId;
-                    currentOffset = thisId;
+            if (other.cardMultiplier == cardMultiplier) {
+                if (other.card != null)
+                    for (Map.Entry<Integer, Long> entry : other.card.entrySet())
+                        putCard(size + entry.getKey(), entry.getValue());
+            } else {
+                for (int i = 0; i < other.size; i++) {
+                    long c = other.card(i);
+                    if (c != cardMultiplier)
+                        putCard(size + i, c);
+                }
+            }
 
-                    // set the cardinality
-                    long card1 = thisCardMultiplier;
-                    if (thisCard != null && thisCard.containsKey(thisIndex))
-                        card1 = thisCard.get(thisIndex);
+            last = other.last;
+            size = newSize;
+        }
 
-                    long card2 = otherCardMultiplier;
-                    if (otherCard != null && otherCard.containsKey(otherIndex))
-                        card2 = otherCard.get(otherIndex);
+        private void setCardMultiplier(long newCardMultiplier) {
+            Map<Integer, Long> newCard = null;
+            for (int i = 0; i < size; i++) {
+                long c = card(i);
+                if (c != newCardMultiplier) {
+                    if (newCard == null)
+                        newCard = new HashMap<>();
+                    newCard.put(i, c);
+                }
+            }
+            cardMultiplier = newCardMultiplier;
+            card = newCard;
+        }
 
-                    long card = card1 + card2;
-                    if (card != newCardMultiplier)
-                        newCard.put(newIndex, card);
+        void multiplyCards(long multiplier, long modulo) {
+            cardMultiplier = MathUtils.modMul(cardMultiplier, multiplier, modulo);
+            if (card != null)
+                for (Map.Entry<Integer, Long> entry : card.entrySet())
+                    card.put(entry.getKey(), MathUtils.modMul(entry.getValue(), multiplier, modulo));
+        }
 
-                    // update indices
-                    thisIndex++;
-                    otherIndex++;
-                    newIndex++;
+        /**
+         * Returns the sum of both lists. `a` may be modified and returned, `b` is left as is.
+         */
+        static IdList add(IdList a, IdList b) {
+            if (b.size == 0)
+                return a;
+            if (a.size == 0)
+                return b.copy(b.size);
+
+            // the lists do not overlap: concatenate
+            if (b.offset > a.last) {
+                a.addAll(b);
+                return a;
+            }
+            if (b.last < a.offset) {
+                IdList sum = b.copy(a.size + b.size);
+                sum.addAll(a);
+                return sum;
+            }
+
+            // upper bound on new size since ids can cancel out, i.e., in case cardinality
+            // sums up to 0. Keep the cardinality multiplier of the longest list.
+            IdList sum = new IdList(a.size + b.size, a.size < b.size ? b.cardMultiplier : a.cardMultiplier);
+            int aIndex = 0;
+            int bIndex = 0;
+            long aId = a.offset;
+            long bId = b.offset;
+            while (aIndex < a.size || bIndex < b.size) {
+                if (bIndex >= b.size || (aIndex < a.size && aId < bId)) {
+                    sum.add(aId, a.card(aIndex));
+                    if (++aIndex < a.size)
+                        aId = a.id(aIndex, aId);
+                } else if (aIndex >= a.size || bId < aId) {
+                    sum.add(bId, b.card(bIndex));
+                    if (++bIndex < b.size)
+                        bId = b.id(bIndex, bId);
+                } else {
+                    sum.add(aId, a.card(aIndex) + b.card(bIndex));
+                    if (++aIndex < a.size)
+                        aId = a.id(aIndex, aId);
+                    if (++bIndex < b.size)
+                        bId = b.id(bIndex, bId);
                 }
             }
-            newSize = newIndex;
+            return sum;
+        }
+
+        /**
+         * Writes the ids and cardinalities, negated if `negate`, at `index` of the given arrays.
+         */
+        void toArrays(long[] outIds, long[] outCard, int index, boolean negate) {
+            long id = offset;
+            for (int i = 0; i < size; i++) {
+                id = id(i, id);
+                outIds[index + i] = id;
+                outCard[index + i] = negate ? -card(i) : card(i);
+            }
+        }
+
+        /**
+         * The size, offset and cardinality multiplier, 4 bytes per id and 12 bytes per entry of
+         * the maps.
+         */
+        int byteSize() {
+            int bytes = Integer.BYTES + Long.BYTES + Long.BYTES;
+            bytes += size * Integer.BYTES;
+            if (bases != null)
+                bytes += bases.size() * (Integer.BYTES + Long.BYTES);
+            if (card != null)
+                bytes += card.size() * (Integer.BYTES + Long.BYTES);
+            return bytes;
         }
 
-        if (isPos) {
-            sizePos = newSize;
-            offsetPos = newOffset;
-            idsPos = newIds;
-            cardMultiplierPos = newCardMultiplier;
-            cardPos = newCard;
-        } else {
-            sizeNeg = newSize;
-            offsetNeg = newOffset;
-            idsNeg = newIds;
-            cardMultiplierNeg = newCardMultiplier;
-            cardNeg = newCard;
+        @Override
+        public String toString() {
+            return "\n\tsiz=" + size +
+                    "\n\tofs=" + offset +
+                    "\n\tids=" + Arrays.toString(Arrays.copyOf(ids, size)) +
+                    "\n\tbas=" + bases +
+                    "\n\tmult=" + cardMultiplier +
+                    "\n\tcard=" + card;
         }
     }
 
+    private IdList pos;
+    private IdList neg;
+
+    public ArraySymCipher(long value, long id) {
+        setValue(value);
+        pos = new IdList(id);
+        neg = new IdList();
+    }
+
+    /**
+     * Creates a cipher that holds the first `count` ids of `sortedIds`, each with cardinality 1.
+     * The ids must be strictly increasing. Builds the id array directly instead of merging one id
+     * at a time.
+     */
+    public ArraySymCipher(long value, long[] sortedIds, int count) {
+        if (count <= 0)
+            throw new IllegalArgumentException("count must be positive");
+        setValue(value);
+        pos = new IdList(count, 1);
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && sortedIds[i] <= sortedIds[i - 1])
+                throw new IllegalArgumentException("ids must be strictly increasing");
+            pos.add(sortedIds[i], 1);
+        }
+        neg = new IdList();
+    }
+
+    private ArraySymCipher() {
+    }
+
+    /**
+     * adds the ids of the other ciphertext to this ciphertext
+     */
     private void addIds(ArraySymCipher other) {
-        addIds(other, true);
-        addIds(other, false);
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        pos = IdList.add(pos, other.pos);
+        neg = IdList.add(neg, other.neg);
+        if (Metrics.ENABLED) {
+            Metrics.ARRAY_MERGES.increment();
+            Metrics.MERGE_IDS.record(other.getSize());
+            Metrics.MERGE_NANOS.record(System.nanoTime() - start);
+        }
     }
 
     private void multiplyIds(long multiplier, long modulo) {
         if (multiplier == 0) {
-            sizePos = 0;
-            sizeNeg = 0;
-            offsetPos = 0;
-            offsetNeg = 0;
-            idsPos = null;
-            idsNeg = null;
-            cardMultiplierPos = 1;
-            cardMultiplierNeg = 1;
-            cardPos = null;
-            cardNeg = null;
+            pos = new IdList();
+            neg = new IdList();
             return;
         }
 
         // swap
         if (multiplier < 0) {
             multiplier = -multiplier;
-            // swap sizes
-            int size = sizePos;
-            sizePos = sizeNeg;
-            sizeNeg = size;
-
-            // swap offsets
-            long offset = offsetPos;
-            offsetPos = offsetNeg;
-            offsetNeg = offset;
-
-            // swap ids
-            int[] ids = idsPos;
-            idsPos = idsNeg;
-            idsNeg = ids;
-
-            // swap cardMultiplier
-            long cm = cardMultiplierPos;
-            cardMultiplierPos = cardMultiplierNeg;
-            cardMultiplierNeg = cm;
-
-            // swap cardinalities
-            Map<Integer, Long> card = cardPos;
-            cardPos = cardNeg;
-            cardNeg = card;
+            IdList ids = pos;
+            pos = neg;
+            neg = ids;
         }
 
         if (multiplier == 1)
             return;
 
-        cardMultiplierPos = MathUtils.modMul(cardMultiplierPos, multiplier, modulo);
-        if (cardPos != null)
-            for (Map.Entry<Integer, Long> entry : cardPos.entrySet())
-                cardPos.put(entry.getKey(), MathUtils.modMul(entry.getValue(), multiplier, modulo));
+        pos.multiplyCards(multiplier, modulo);
+        neg.multiplyCards(multiplier, modulo);
+    }
 
-        cardMultiplierNeg = MathUtils.modMul(cardMultiplierNeg, multiplier, modulo);
-        if (cardNeg != null)
-            for (Map.Entry<Integer, Long> entry : cardNeg.entrySet())
-                cardNeg.put(entry.getKey(), MathUtils.modMul(entry.getValue(), multiplier, modulo));
+    @Override
+    public SymCipher copy() {
+        ArraySymCipher c = new ArraySymCipher();
+        c.setValue(getValue());
+        c.pos = pos.copy(pos.size);
+        c.neg = neg.copy(neg.size);
+        return c;
     }
 
     @Override
     public int getSize() {
-        return this.sizePos + this.sizeNeg;
+        return pos.size + neg.size;
+    }
+
+    /**
+     * The size, offset and cardinality multiplier of both lists, 4 bytes per id and 12 bytes per
+     * entry of the maps.
+     */
+    @Override
+    public int byteSize() {
+        return pos.byteSize() + neg.byteSize();
     }
 
     @Override
@@ -313,34 +391,10 @@ public class ArraySymCipher extends SymCipher {
         int size = getSize();
         long[] ids = new long[size];
         long[] card = new long[size];
-
-        long currentOffset = offsetPos;
-        for (int i = 0; i < sizePos; i++) {
-            long id = currentOffset + idsPos[i];
-            currentOffset = id;
-            ids[i] = id;
-
-            long c = this.cardMultiplierPos;
-            if (this.cardPos != null && this.cardPos.containsKey(i))
-                c = this.cardPos.get(i);
-            card[i] = c;
-        }
-
-        currentOffset = offsetNeg;
-        for (int i = 0; i < sizeNeg; i++) {
-            long id = currentOffset + idsNeg[i];
-            currentOffset = id;
-            ids[i + sizePos] = id;
-
-            long c = this.cardMultiplierNeg;
-            if (this.cardNeg != null && this.cardNeg.containsKey(i))
-                c = this.cardNeg.get(i);
-            card[i + sizePos] = -c;
-        }
-
+        pos.toArrays(ids, card, 0, false);
+        neg.toArrays(ids, card, pos.size, true);
         return new long[][]{ids, card};
     }
-
     @Override
     public void add(SymCipher other, long modulo) {
         addValue(other.getValue(), modulo);
@@ -376,17 +430,9 @@ public class ArraySymCipher extends SymCipher {
     @Override
     public String toString() {
         return this.getClass().getSimpleName() + "<\nvalue=" + this.getValue() +
-                "\nPOS=\n\tsiz=" + sizePos +
-                "\n\tofs=" + offsetPos +
-                "\n\tids=" + Arrays.toString(idsPos) +
-                "\n\tmult=" + cardMultiplierPos +
-                "\n\tcard=" + cardPos +
-                "\nNEG=\n\tsiz=" + sizeNeg +
-                "\n\tofs=" + offsetNeg +
-                "\n\tids=" + Arrays.toString(idsNeg) +
-                "\n\tcml=" + cardMultiplierNeg +
-                "\n\tcrd=" + cardNeg +
+                "\nPOS=" + pos +
+                "\nNEG=" + neg +
                 ">";
     }
 
-}
\ No newline at end of file
+}
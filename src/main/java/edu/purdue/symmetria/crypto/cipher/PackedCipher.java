@@ -0,0 +1,27 @@
+package edu.purdue.symmetria.crypto.cipher;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+
+/**
+ * A Paillier ciphertext of several values packed into the slots of one plaintext. `terms` is the
+ * number of packed vectors (ciphertexts or plaintexts) that were added into it, which bounds the
+ * values of its slots. See PackingCodec.
+ */
+public class PackedCipher implements Serializable {
+    private static final long serialVersionUID = -1343808243027652554L;
+
+    public final BigInteger c;
+
+    // the number of packed values
+    public final int length;
+
+    // the number of packed vectors added into the slots
+    public final long terms;
+
+    public PackedCipher(BigInteger c, int length, long terms) {
+        this.c = c;
+        this.length = length;
+        this.terms = terms;
+    }
+}
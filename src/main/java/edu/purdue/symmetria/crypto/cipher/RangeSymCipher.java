@@ -1,5 +1,6 @@
 package edu.purdue.symmetria.crypto.cipher;
 
+import edu.purdue.symmetria.metrics.Metrics;
 import edu.purdue.symmetria.utils.MathUtils;
 
 import java.util.Arrays;
@@ -11,12 +12,17 @@ public class RangeSymCipher extends SymCipher {
 
     /**
      * The first id is stored as the `offset`. Every other id is stored in `ids` as the
-     * difference of the id minus the previous id.
+     * difference of the id minus the previous id. An id too far from the previous id for an int,
+     * e.g., the first id of another node (see NodeIdAllocator), is stored as FAR and kept in
+     * `bases`, so the ids form segments with a long base and dense int differences.
      */
     static class CardId {
-        // the amount by which the ids array is extended if it cannot hold more more ids.
+        // the minimum amount by which the ids array is extended if it cannot hold more more ids.
         private static final int EXTEND_BY = 5;
 
+        // marks an id whose difference to the previous id does not fit in an int
+        private static final int FAR = -1;
+
         // stores the first (smallest) id
         private long offset;
 
@@ -35,6 +41,9 @@ public class RangeSymCipher extends SymCipher {
         // `ids` index to number of consecutive ids.
         private Map<Integer, Integer> ranges;
 
+        // `ids` index to id, for the FAR ids.
+        private Map<Integer, Long> bases;
+
         CardId(long offset) {
             this.size = 0;
             this.total = 1;
@@ -44,6 +53,28 @@ public class RangeSymCipher extends SymCipher {
             this.ranges = null;
         }
 
+        /**
+         * Holds the `range + 1` consecutive ids starting at `offset`.
+         */
+        CardId(long offset, int range) {
+            this(offset);
+            if (range > 0) {
+                this.total += range;
+                putRange(-1, range);
+            }
+        }
+
+        CardId copy() {
+            CardId c = new CardId(offset);
+            c.lastId = lastId;
+            c.size = size;
+            c.total = total;
+            c.ids = ids == null ? null : ids.clone();
+            c.ranges = ranges == null ? null : new HashMap<>(ranges);
+            c.bases = bases == null ? null : new HashMap<>(bases);
+            return c;
+        }
+
         private int getRange(int index) {
             if (this.ranges == null)
                 return 0;
@@ -56,20 +87,47 @@ public class RangeSymCipher extends SymCipher {
             this.ranges.put(index, range);
         }
 
+        /**
+         * Returns the id at `index` of the ids array given the id before it.
+         */
+        private long id(int index, long previous) {
+            int delta = this.ids[index];
+            return delta == FAR ? this.bases.get(index) : previous + delta;
+        }
+
+        /**
+         * Stores `id` at `index` of the ids array. Expects that `id >= this.lastId`.
+         */
+        private void putId(int index, long id) {
+            long delta = id - this.lastId;
+            if (delta > Integer.MAX_VALUE) {
+                if (this.bases == null)
+                    this.bases = new HashMap<>();
+                this.bases.put(index, id);
+                this.ids[index] = FAR;
+            } else {
+                this.ids[index] = (int) delta;
+            }
+        }
+
+        /**
+         * Makes sure the ids array can hold `capacity` ids. It grows by at least half, so that
+         * adding ids one by one takes amortized constant time.
+         */
+        private void ensureCapacity(int capacity) {
+            if (ids == null)
+                this.ids = new int[Math.max(capacity, EXTEND_BY)];
+            else if (this.ids.length < capacity)
+                this.ids = Arrays.copyOf(this.ids, Math.max(capacity, this.ids.length + Math.max(this.ids.length / 2, EXTEND_BY)));
+        }
+
         /**
          * Adds given id at position size of the array and adds its associated range if it's not zero.
          */
         private void addNext(long id, int range) {
-            // if the ids array cannot hold more ids, increase its size.
-            if (ids == null)
-                this.ids = new int[EXTEND_BY];
-            else if (this.ids.length <= size) {
-                int[] newIds = new int[size + EXTEND_BY];
-                System.arraycopy(this.ids, 0, newIds, 0, this.size);
-                this.ids = newIds;
-            }
+            ensureCapacity(size + 1);
             int index = size++;
-            this.ids[index] = (int) (id - this.lastId);
+            putId(index, id);
             this.lastId = id;
             if (range > 0)
                 putRange(index, range);
@@ -100,95 +158,94 @@ public class RangeSymCipher extends SymCipher {
          * Expects: `other.offset >= this.lastId`.
          */
         private void addAfter(CardId other) {
-            // extend array if needed. if `other.size` is zero then the given object contains only
-            // a single id in offset, in which case we don't extend the array in case the new id
-            // can be captured as a range.
-            if (other.size > 0) {
-                int newSize = this.size + other.size + 1;
-                if (ids == null)
-                    this.ids = new int[newSize + EXTEND_BY];
-                else if (this.ids.length <= newSize) {
-                    int[] newIds = new int[newSize + EXTEND_BY];
-                    System.arraycopy(this.ids, 0, newIds, 0, this.size);
-                    this.ids = newIds;
-                }
-            }
-
-            // add other offset
-            addIdEnd(other.offset, 0);
+            // add other offset, which may extend the last range of this object.
+            addIdEnd(other.offset, other.getRange(-1));
+            if (other.size == 0)
+                return;
 
-            // add other ids
-            long realId = other.offset;
-            for (int index = 0; index < other.size; index++) {
-                int range = other.getRange(index);
-                realId += other.ids[index];
-                addIdEnd(realId, range);
-            }
+            // copy the other ids as they are, except the first, which is stored relative to the
+            // last id of this object.
+            int first = this.size;
+            ensureCapacity(first + other.size);
+            System.arraycopy(other.ids, 0, this.ids, first, other.size);
+            putId(first, other.id(0, other.offset));
+            if (other.ranges != null)
+                for (Map.Entry<Integer, Integer> entry : other.ranges.entrySet())
+                    if (entry.getKey() >= 0)
+                        putRange(first + entry.getKey(), entry.getValue());
+            if (other.bases != null)
+                for (Map.Entry<Integer, Long> entry : other.bases.entrySet())
+                    if (entry.getKey() > 0) {
+                        if (this.bases == null)
+                            this.bases = new HashMap<>();
+                        this.bases.put(first + entry.getKey(), entry.getValue());
+                    }
+            this.size = first + other.size;
+            this.lastId = other.lastId;
         }
 
-        /**
-         * TODO: merge without creating new array
-         */
         public void add(CardId other) {
             if (other == null)
                 return;
-
-            this.total += other.total;
+            if (other == this)
+                other = other.copy();
 
             // other ids are all >= this ids.
             if (other.offset >= this.lastId) {
+                this.total += other.total;
                 addAfter(other);
                 return;
             }
 
-            // size of this and other ids plus 1 offset.
-            int newSize = this.size + other.size + 1;
-            int[] thisIds = this.ids;
-            this.ids = null;
-            if (newSize > 1)
-                this.ids = new int[newSize];
-
-            Map<Integer, Integer> thisRanges = this.ranges;
-            this.ranges = null;
-
-            int thisSize = this.size;
-            this.size = 0;
-
-            int thisIndex = -1;
-            int otherIndex = -1;
-            long thisOffset = this.offset;
-            long otherOffset = other.offset;
-
-            // set new offset to be the smallest of this and other offset
-            if (thisOffset < otherOffset) {
-                this.offset = thisOffset;
-                int range = (thisRanges == null) ? 0 : thisRanges.getOrDefault(thisIndex, 0);
-                if (range != 0)
-                    this.putRange(-1, range);
-                this.lastId = this.offset;
-                thisIndex = 0;
-            } else {
-                this.offset = otherOffset;
-                this.lastId = this.offset;
-                otherIndex = 0;
+            // other ids are all < this ids: append this to a copy of other.
+            if (other.lastId + other.getRange(other.size - 1) < this.offset) {
+                CardId merged = other.copy();
+                merged.addAfter(this);
+                this.offset = merged.offset;
+                this.lastId = merged.lastId;
+                this.size = merged.size;
+                this.ids = merged.ids;
+                this.ranges = merged.ranges;
+                this.bases = merged.bases;
+                this.total += other.total;
+                return;
             }
 
-            while (thisIndex < thisSize || otherIndex < other.size) {
-                long thisId = (thisIndex == -1 || thisIndex >= thisSize) ? thisOffset : thisOffset + thisIds[thisIndex];
-                long otherId = (otherIndex == -1 || otherIndex >= other.size) ? otherOffset : otherOffset + other.ids[otherIndex];
-
-                if (otherIndex >= other.size || thisId < otherId) {
-                    int range = (thisRanges == null) ? 0 : thisRanges.getOrDefault(thisIndex, 0);
-                    addIdEnd(thisId, range);
-                    thisOffset = thisId;
-                    thisIndex++;
+            // merge the runs of consecutive ids of both objects in order of their first id. Run
+            // position 0 is the offset and position i > 0 is the id at index i - 1.
+            CardId merged = null;
+            int thisPos = 0;
+            int otherPos = 0;
+            long thisId = this.offset;
+            long otherId = other.offset;
+            while (thisPos <= this.size || otherPos <= other.size) {
+                long id;
+                int range;
+                if (otherPos > other.size || (thisPos <= this.size && thisId <= otherId)) {
+                    id = thisId;
+                    range = this.getRange(thisPos - 1);
+                    if (++thisPos <= this.size)
+                        thisId = this.id(thisPos - 1, thisId);
                 } else {
-                    int range = other.getRange(otherIndex);
-                    addIdEnd(otherId, range);
-                    otherOffset = otherId;
-                    otherIndex++;
+                    id = otherId;
+                    range = other.getRange(otherPos - 1);
+                    if (++otherPos <= other.size)
+                        otherId = other.id(otherPos - 1, otherId);
                 }
+
+                if (merged == null)
+                    merged = new CardId(id, range);
+                else
+                    merged.addIdEnd(id, range);
             }
+
+            this.offset = merged.offset;
+            this.lastId = merged.lastId;
+            this.size = merged.size;
+            this.ids = merged.ids;
+            this.ranges = merged.ranges;
+            this.bases = merged.bases;
+            this.total += other.total;
         }
 
         private int toArray(int index, long[] array, long id, int idIndex) {
@@ -209,7 +266,7 @@ public class RangeSymCipher extends SymCipher {
 
             if (this.ids != null) {
                 for (int i = 0; i < this.size; i++) {
-                    id += this.ids[i];
+                    id = id(i, id);
                     index = toArray(index, array, id, i);
                 }
             }
@@ -217,17 +274,37 @@ public class RangeSymCipher extends SymCipher {
             return array;
         }
 
+        /**
+         * Writes the runs of consecutive ids with cardinality `card` at `index` of the given
+         * arrays and returns the index after them.
+         */
+        int toRuns(long card, long[] outCards, long[] outFirstIds, long[] outCounts, int index) {
+            long id = this.offset;
+            outCards[index] = card;
+            outFirstIds[index] = id;
+            outCounts[index++] = getRange(-1) + 1;
+            for (int i = 0; i < this.size; i++) {
+                id = id(i, id);
+                outCards[index] = card;
+                outFirstIds[index] = id;
+                outCounts[index++] = getRange(i) + 1;
+            }
+            return index;
+        }
+
         int byteSize() {
             int bytes = Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
             bytes += size * Integer.BYTES;
             if (ranges != null)
                 bytes += ranges.size() * Integer.BYTES * 2;
+            if (bases != null)
+                bytes += bases.size() * (Integer.BYTES + Long.BYTES);
             return bytes;
         }
 
         @Override
         public String toString() {
-            return "[size=" + this.size + " offset=" + this.offset + " ids=" + Arrays.toString(this.ids) + " ranges=" + this.ranges + "]";
+            return "[size=" + this.size + " offset=" + this.offset + " ids=" + Arrays.toString(this.ids) + " ranges=" + this.ranges + " bases=" + this.bases + "]";
         }
     }
 
@@ -245,9 +322,51 @@ public class RangeSymCipher extends SymCipher {
         this.size = 1;
     }
 
+    /**
+     * Creates a cipher whose ids are the `count` consecutive ids starting at `firstId`, e.g., the
+     * sum of a block of rows encrypted with consecutive ids.
+     */
+    public RangeSymCipher(long value, long firstId, int count) {
+        if (count <= 0)
+            throw new IllegalArgumentException("count must be positive");
+        setValue(value);
+        CardId cardId = new CardId(firstId, count - 1);
+        this.ids = new HashMap<>();
+        this.ids.put(1L, cardId);
+        this.size = count;
+    }
+
+    /**
+     * Creates a cipher that holds the first `count` ids of `sortedIds`, each with cardinality 1.
+     * The ids must be strictly increasing. Consecutive ids are collapsed into ranges in a single
+     * pass instead of merging one id at a time.
+     */
+    public RangeSymCipher(long value, long[] sortedIds, int count) {
+        if (count <= 0)
+            throw new IllegalArgumentException("count must be positive");
+        setValue(value);
+        CardId cardId = new CardId(sortedIds[0]);
+        for (int i = 1; i < count; i++) {
+            if (sortedIds[i] <= sortedIds[i - 1])
+                throw new IllegalArgumentException("ids must be strictly increasing");
+            cardId.addIdEnd(sortedIds[i], 0);
+        }
+        cardId.total = count;
+        this.ids = new HashMap<>();
+        this.ids.put(1L, cardId);
+        this.size = count;
+    }
+
+    private RangeSymCipher() {
+    }
+
+    /**
+     * Adds the given ids. The ids are copied since the object would otherwise be shared with the
+     * other cipher and later merges would modify both ciphers.
+     */
     private void addIds(Long card, CardId cardId) {
         if (!this.ids.containsKey(card)) {
-            this.ids.put(card, cardId);
+            this.ids.put(card, cardId.copy());
         } else
             this.ids.get(card).add(cardId);
     }
@@ -255,30 +374,57 @@ public class RangeSymCipher extends SymCipher {
     private void addIds(RangeSymCipher other) {
         if (other.ids == null)
             return;
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
         if (this.ids == null) {
-            this.ids = other.ids;
-            this.size = other.size;
-            return;
+            this.ids = new HashMap<>();
+            this.size = 0;
         }
         this.size += other.size;
         for (Map.Entry<Long, CardId> entry : other.ids.entrySet())
             addIds(entry.getKey(), entry.getValue());
+        if (Metrics.ENABLED) {
+            Metrics.RANGE_MERGES.increment();
+            Metrics.MERGE_IDS.record(other.size);
+            Metrics.MERGE_NANOS.record(System.nanoTime() - start);
+        }
     }
 
     private void multiplyIds(long multiplier, long modulo) {
         if (multiplier == 0) {
             this.ids = null;
+            this.size = 0;
             return;
         }
         if (multiplier == 1 || ids == null)
             return;
 
+        // cardinalities that are equal modulo `modulo` (e.g., -2 and modulo - 2) map to the same
+        // new cardinality, in which case their ids are merged.
         Map<Long, CardId> newIds = new HashMap<>();
-        for (Long card : ids.keySet())
-            newIds.put(MathUtils.modMul(card, multiplier, modulo), ids.get(card));
+        for (Long card : ids.keySet()) {
+            long newCard = MathUtils.modMul(card, multiplier, modulo);
+            CardId cardId = newIds.get(newCard);
+            if (cardId == null)
+                newIds.put(newCard, ids.get(card));
+            else
+                cardId.add(ids.get(card));
+        }
         ids = newIds;
     }
 
+    @Override
+    public SymCipher copy() {
+        RangeSymCipher c = new RangeSymCipher();
+        c.setValue(getValue());
+        c.size = size;
+        if (ids != null) {
+            c.ids = new HashMap<>();
+            for (Map.Entry<Long, CardId> entry : ids.entrySet())
+                c.ids.put(entry.getKey(), entry.getValue().copy());
+        }
+        return c;
+    }
+
     @Override
     public int getSize() {
         return this.size;
@@ -302,6 +448,25 @@ public class RangeSymCipher extends SymCipher {
         return ids;
     }
 
+    /**
+     * Returns the runs of consecutive ids without expanding them into single ids, as 3 arrays of
+     * the same length: the cardinality, the first id and the number of ids of every run. The runs
+     * of a cardinality are in increasing order of their first id. Runs may overlap, in which case
+     * the cardinalities of the ids they share add up.
+     */
+    public long[][] getRuns() {
+        int count = 0;
+        if (this.ids != null)
+            for (CardId cid : this.ids.values())
+                count += cid.size + 1;
+        long[][] runs = new long[3][count];
+        int index = 0;
+        if (this.ids != null)
+            for (Map.Entry<Long, CardId> entry : this.ids.entrySet())
+                index = entry.getValue().toRuns(entry.getKey(), runs[0], runs[1], runs[2], index);
+        return runs;
+    }
+
     @Override
     public void add(SymCipher other, long modulo) {
         addValue(other.getValue(), modulo);
@@ -340,6 +505,7 @@ public class RangeSymCipher extends SymCipher {
                 this.ids.toString() + "\n>";
     }
 
+    @Override
     public int byteSize() {
         int bytes = Integer.BYTES;
         if (this.ids != null)
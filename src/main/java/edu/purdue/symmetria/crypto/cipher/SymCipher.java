@@ -39,11 +39,22 @@ public abstract class SymCipher {
     }
 
 
+    /**
+     * Return a deep copy of this cipher. Operations on the copy do not affect this cipher.
+     */
+    public abstract SymCipher copy();
+
     /**
      * Return the number of ids currently stored.
      */
     public abstract int getSize();
 
+    /**
+     * Return the number of bytes needed to store the ids and cardinalities of this cipher, without
+     * its value.
+     */
+    public abstract int byteSize();
+
     /**
      * Return a 2 long arrays (2-d array). The first is the ids and the second their corresponding
      * cardinalities. Arrays return might be longer than the actual items, so getSize() should be
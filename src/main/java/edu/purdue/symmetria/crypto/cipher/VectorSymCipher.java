@@ -0,0 +1,98 @@
+package edu.purdue.symmetria.crypto.cipher;
+
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.util.Arrays;
+
+/**
+ * <pre>
+ * A cipher of several values (columns) that were encrypted with the same ids, e.g., several
+ * aggregates over the same rows. The columns share a single id list, so the ids are stored and
+ * merged once for all columns. Every column uses a different random number for the same id.
+ *
+ * The ids are held by a SymCipher of any type whose own value is not used.
+ * </pre>
+ */
+public class VectorSymCipher {
+
+    private final long[] values;
+
+    // holds the ids shared by all columns
+    private final SymCipher ids;
+
+    public VectorSymCipher(long[] values, SymCipher ids) {
+        this.values = values;
+        this.ids = ids;
+    }
+
+    /**
+     * Returns the number of columns.
+     */
+    public int getColumns() {
+        return values.length;
+    }
+
+    public long getValue(int column) {
+        return values[column];
+    }
+
+    /**
+     * Return the number of ids currently stored.
+     */
+    public int getSize() {
+        return ids.getSize();
+    }
+
+    /**
+     * Return the ids and their cardinalities. See SymCipher.getIds().
+     */
+    public long[][] getIds() {
+        return ids.getIds();
+    }
+
+    /**
+     * Add the given cipher to this object: this = this + other. Both ciphers must have the same
+     * number of columns.
+     */
+    public void add(VectorSymCipher other, long modulo) {
+        checkColumns(other.values.length);
+        for (int i = 0; i < values.length; i++)
+            values[i] = MathUtils.modAdd(values[i], other.values[i], modulo);
+        ids.add(other.ids, modulo);
+    }
+
+    /**
+     * Add the given plaintext values to the columns of this object.
+     */
+    public void addValues(long[] v, long modulo) {
+        checkColumns(v.length);
+        for (int i = 0; i < values.length; i++)
+            values[i] = MathUtils.modAdd(values[i], v[i], modulo);
+    }
+
+    /**
+     * Multiply all columns by the given plaintext value: this = this * m.
+     */
+    public void multiply(long m, long modulo) {
+        for (int i = 0; i < values.length; i++)
+            values[i] = MathUtils.modMul(values[i], m, modulo);
+        ids.multiply(m, modulo);
+    }
+
+    /**
+     * Return a deep copy of this cipher.
+     */
+    public VectorSymCipher copy() {
+        return new VectorSymCipher(values.clone(), ids.copy());
+    }
+
+    private void checkColumns(int columns) {
+        if (columns != values.length)
+            throw new IllegalArgumentException("Expected " + values.length + " columns but got " + columns);
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "<\nvalues=" + Arrays.toString(values) + "\nids=" + ids + "\n>";
+    }
+}
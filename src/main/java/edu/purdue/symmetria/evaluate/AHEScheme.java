@@ -15,10 +15,53 @@ public class AHEScheme {
     private static final SymAHE symAHE = new SymAHE();
     private static final Paillier paillier = new Paillier();
 
+    // keys with p, q and g = n + 1, used with and without the fast paths
+    private static final String FAST_PUBLIC_KEY_PATH = "/tmp/paillier-fast.pk";
+    private static final String FAST_PRIVATE_KEY_PATH = "/tmp/paillier-fast.sk";
+    private static final Paillier paillierSlow = new Paillier(FAST_PUBLIC_KEY_PATH, FAST_PRIVATE_KEY_PATH, false);
+    private static final Paillier paillierFast = new Paillier(FAST_PUBLIC_KEY_PATH, FAST_PRIVATE_KEY_PATH, true);
+
     public enum AHEOp {
         ENCRYPT, DECRYPT, ADD, ADD_PLAINTEXT, SUBTRACT, MULTIPLY, NEGATE
     }
 
+    /**
+     * Returns the time in nanoseconds the given Paillier operation takes.
+     */
+    private static long timePaillier(Paillier paillier, AHEOp op, long m1, long m2) {
+        BigInteger c1 = paillier.encrypt(m1);
+        BigInteger c2 = paillier.encrypt(m2);
+
+        long startTime = System.nanoTime();
+        switch (op) {
+            case ENCRYPT:
+                paillier.encrypt(m1);
+                break;
+            case DECRYPT:
+                paillier.decrypt(c1);
+                break;
+            case ADD:
+                paillier.add(c1, c2);
+                break;
+            case ADD_PLAINTEXT:
+                paillier.addPlaintext(c1, m2);
+                break;
+            case SUBTRACT:
+                paillier.subtract(c1, c2);
+                break;
+            case MULTIPLY:
+                paillier.multiply(c1, m2);
+                break;
+            case NEGATE:
+                paillier.negate(c1);
+                break;
+            default:
+                System.out.println("Unexpected operation");
+                System.exit(1);
+        }
+        return System.nanoTime() - startTime;
+    }
+
     private static void timeOp(AHEOp op) {
 
         System.out.println("\nEvaluating " + op.name() + " ...");
@@ -26,111 +69,62 @@ public class AHEScheme {
         long startTime;
         long symAHETime = 0;
         long paillierTime = 0;
+        long paillierSlowTime = 0;
+        long paillierFastTime = 0;
         for (int i = 0; i < ITERATIONS + WARMUP; i++) {
             long m1 = MathUtils.randLong(1_000_000);
             long m2 = MathUtils.randLong(1_000_000);
 
             SymCipher c_ahe1 = symAHE.encrypt(m1);
             SymCipher c_ahe2 = symAHE.encrypt(m2);
-            BigInteger c_paillier1 = paillier.encrypt(m1);
-            BigInteger c_paillier2 = paillier.encrypt(m2);
 
+            startTime = System.nanoTime();
             switch (op) {
                 case ENCRYPT:
-                    startTime = System.nanoTime();
                     symAHE.encrypt(m1);
-                    if (i >= WARMUP)
-                        symAHETime += (System.nanoTime() - startTime);
-
-                    startTime = System.nanoTime();
-                    paillier.encrypt(m1);
-                    if (i >= WARMUP)
-                        paillierTime += (System.nanoTime() - startTime);
                     break;
-
                 case DECRYPT:
-                    startTime = System.nanoTime();
                     symAHE.decrypt(c_ahe1);
-                    if (i >= WARMUP)
-                        symAHETime += (System.nanoTime() - startTime);
-
-                    startTime = System.nanoTime();
-                    paillier.decrypt(c_paillier1);
-                    if (i >= WARMUP)
-                        paillierTime += (System.nanoTime() - startTime);
                     break;
-
                 case ADD:
-                    startTime = System.nanoTime();
                     symAHE.add(c_ahe1, c_ahe2);
-                    if (i >= WARMUP)
-                        symAHETime += (System.nanoTime() - startTime);
-
-                    startTime = System.nanoTime();
-                    paillier.add(c_paillier1, c_paillier2);
-                    if (i >= WARMUP)
-                        paillierTime += (System.nanoTime() - startTime);
                     break;
-
                 case ADD_PLAINTEXT:
-                    startTime = System.nanoTime();
                     symAHE.addPlaintext(c_ahe1, m2);
-                    if (i >= WARMUP)
-                        symAHETime += (System.nanoTime() - startTime);
-
-                    startTime = System.nanoTime();
-                    paillier.addPlaintext(c_paillier1, m2);
-                    if (i >= WARMUP)
-                        paillierTime += (System.nanoTime() - startTime);
                     break;
-
                 case SUBTRACT:
-                    startTime = System.nanoTime();
                     symAHE.subtract(c_ahe1, c_ahe2);
-                    if (i >= WARMUP)
-                        symAHETime += (System.nanoTime() - startTime);
-                    startTime = System.nanoTime();
-
-                    paillier.subtract(c_paillier1, c_paillier2);
-                    if (i >= WARMUP)
-                        paillierTime += (System.nanoTime() - startTime);
                     break;
-
                 case MULTIPLY:
-                    startTime = System.nanoTime();
                     symAHE.multiply(c_ahe1, m2);
-                    if (i >= WARMUP)
-                        symAHETime += (System.nanoTime() - startTime);
-
-                    startTime = System.nanoTime();
-                    paillier.multiply(c_paillier1, m2);
-                    if (i >= WARMUP)
-                        paillierTime += (System.nanoTime() - startTime);
                     break;
-
                 case NEGATE:
-                    startTime = System.nanoTime();
                     symAHE.negate(c_ahe1);
-                    if (i >= WARMUP)
-                        symAHETime += (System.nanoTime() - startTime);
-
-                    startTime = System.nanoTime();
-                    paillier.negate(c_paillier1);
-                    if (i >= WARMUP)
-                        paillierTime += (System.nanoTime() - startTime);
                     break;
-
                 default:
                     System.out.println("Unexpected operation");
                     System.exit(1);
             }
+            long time = System.nanoTime() - startTime;
+
+            long paillierOpTime = timePaillier(paillier, op, m1, m2);
+            long paillierSlowOpTime = timePaillier(paillierSlow, op, m1, m2);
+            long paillierFastOpTime = timePaillier(paillierFast, op, m1, m2);
+            if (i >= WARMUP) {
+                symAHETime += time;
+                paillierTime += paillierOpTime;
+                paillierSlowTime += paillierSlowOpTime;
+                paillierFastTime += paillierFastOpTime;
+            }
         }
 
-        symAHETime = symAHETime / ITERATIONS ;
-        paillierTime = paillierTime / ITERATIONS ;
+        symAHETime = symAHETime / ITERATIONS;
+        paillierTime = paillierTime / ITERATIONS;
+        paillierSlowTime = paillierSlowTime / ITERATIONS;
+        paillierFastTime = paillierFastTime / ITERATIONS;
 
-        System.out.println("SymAHE\tPaillier (nanoseconds)");
-        System.out.println(symAHETime + "\t" + paillierTime);
+        System.out.println("SymAHE\tPaillier\tPaillier new keys, no fast paths\tPaillier new keys, fast paths (nanoseconds)");
+        System.out.println(symAHETime + "\t" + paillierTime + "\t" + paillierSlowTime + "\t" + paillierFastTime);
     }
 
 
@@ -0,0 +1,50 @@
+package edu.purdue.symmetria.evaluate;
+
+import edu.purdue.symmetria.crypto.ElGamal;
+import edu.purdue.symmetria.crypto.Paillier;
+import edu.purdue.symmetria.crypto.cipher.ElGamalCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.math.BigInteger;
+
+/**
+ * Measures the throughput of Paillier and ElGamal encryptAll() and decryptAll() for 1 thread up to
+ * the number of cores.
+ */
+public class AsymBulk {
+    private static final int MESSAGES = 500;
+
+    public static void main(String[] args) {
+        Paillier paillier = new Paillier();
+        ElGamal elGamal = new ElGamal();
+        long[] messages = new long[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++)
+            messages[i] = MathUtils.randLong(1_000_000);
+
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        System.out.println("Scheme\tThreads\tEncryptions/s\tDecryptions/s");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            BigInteger[] paillierCiphers = new BigInteger[MESSAGES];
+            long startTime = System.nanoTime();
+            paillier.encryptAll(messages, paillierCiphers, threads);
+            long encrypt = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            paillier.decryptAll(paillierCiphers, new long[MESSAGES], threads);
+            long decrypt = System.nanoTime() - startTime;
+            System.out.println("Paillier\t" + threads + "\t" + perSecond(encrypt) + "\t" + perSecond(decrypt));
+
+            ElGamalCipher[] elGamalCiphers = new ElGamalCipher[MESSAGES];
+            startTime = System.nanoTime();
+            elGamal.encryptAll(messages, elGamalCiphers, threads);
+            encrypt = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            elGamal.decryptAll(elGamalCiphers, new long[MESSAGES], threads);
+            decrypt = System.nanoTime() - startTime;
+            System.out.println("ElGamal\t" + threads + "\t" + perSecond(encrypt) + "\t" + perSecond(decrypt));
+        }
+    }
+
+    private static long perSecond(long nanos) {
+        return MESSAGES * 1_000_000_000L / nanos;
+    }
+}
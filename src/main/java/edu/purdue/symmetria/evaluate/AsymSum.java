@@ -0,0 +1,67 @@
+package edu.purdue.symmetria.evaluate;
+
+import edu.purdue.symmetria.crypto.ElGamal;
+import edu.purdue.symmetria.crypto.Paillier;
+import edu.purdue.symmetria.crypto.cipher.ElGamalCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.math.BigInteger;
+
+/**
+ * Compares the serial add()/multiply() chain with the bulk Paillier.sum() and ElGamal.product().
+ * The sizes can be given as arguments, e.g., 10000 100000 1000000 10000000.
+ */
+public class AsymSum {
+    private static final int[] SIZES = {10_000, 100_000};
+
+    // encrypting millions of ciphertexts takes too long, so the arrays repeat these many
+    private static final int DISTINCT = 1_000;
+
+    public static void main(String[] args) {
+        int[] sizes = SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        Paillier paillier = new Paillier();
+        ElGamal elGamal = new ElGamal();
+        BigInteger[] paillierDistinct = new BigInteger[DISTINCT];
+        ElGamalCipher[] elGamalDistinct = new ElGamalCipher[DISTINCT];
+        for (int i = 0; i < DISTINCT; i++) {
+            paillierDistinct[i] = paillier.encrypt(MathUtils.randLong(1000));
+            elGamalDistinct[i] = elGamal.encrypt(MathUtils.randLong(1000));
+        }
+
+        System.out.println("Scheme\tCiphertexts\tSerial (ms)\tProduct tree (ms)");
+        for (int size : sizes) {
+            BigInteger[] paillierCiphers = new BigInteger[size];
+            ElGamalCipher[] elGamalCiphers = new ElGamalCipher[size];
+            for (int i = 0; i < size; i++) {
+                paillierCiphers[i] = paillierDistinct[i % DISTINCT];
+                elGamalCiphers[i] = elGamalDistinct[i % DISTINCT];
+            }
+
+            long startTime = System.nanoTime();
+            BigInteger sum = paillierCiphers[0];
+            for (int i = 1; i < size; i++)
+                sum = paillier.add(sum, paillierCiphers[i]);
+            long serial = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            paillier.sum(paillierCiphers);
+            long tree = System.nanoTime() - startTime;
+            System.out.println("Paillier\t" + size + "\t" + serial / 1_000_000 + "\t" + tree / 1_000_000);
+
+            startTime = System.nanoTime();
+            ElGamalCipher product = elGamalCiphers[0];
+            for (int i = 1; i < size; i++)
+                product = elGamal.multiply(product, elGamalCiphers[i]);
+            serial = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            elGamal.product(elGamalCiphers);
+            tree = System.nanoTime() - startTime;
+            System.out.println("ElGamal\t" + size + "\t" + serial / 1_000_000 + "\t" + tree / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package edu.purdue.symmetria.evaluate;
+
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.cipher.ArraySymCipher;
+import edu.purdue.symmetria.crypto.cipher.RangeSymCipher;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.crypto.cipher.SymCipher.CipherType;
+import edu.purdue.symmetria.evaluate.SelectionWorkload.Pattern;
+import edu.purdue.symmetria.utils.MathUtils;
+
+/**
+ * Sums the rows selected by every pattern of SelectionWorkload with ARRAY and RANGE ciphers and
+ * reports the time to merge the ciphers, the time to decrypt the sum and the size of its ids.
+ */
+public class Fragmentation {
+    private static final int ROWS = 50_000;
+    private static final double[] SELECTIVITIES = {0.01, 0.1, 0.5, 0.9};
+    private static final long SEED = 42;
+
+    public static void main(String[] args) {
+        SymAHE symAHE = new SymAHE();
+
+        // the table, encrypted with consecutive ids
+        long[] values = new long[ROWS];
+        for (int i = 0; i < ROWS; i++)
+            values[i] = MathUtils.randLong(1_000_000);
+        long[] ciphers = new long[ROWS];
+        long firstId = symAHE.encryptColumn(values, ciphers);
+
+        SelectionWorkload workload = new SelectionWorkload(ROWS, SEED);
+        System.out.println("Pattern\tSelectivity\tRows\tCipherType\tMerge (ms)\tDecrypt (ms)\tSize (bytes)\tCorrect");
+        for (Pattern pattern : Pattern.values()) {
+            for (double selectivity : SELECTIVITIES) {
+                int[] selected = workload.select(pattern, selectivity);
+                long expected = 0;
+                for (int row : selected)
+                    expected += values[row];
+
+                for (CipherType type : CipherType.values()) {
+                    long startTime = System.nanoTime();
+                    SymCipher sum = null;
+                    for (int row : selected) {
+                        SymCipher c = type == CipherType.ARRAY
+                                ? new ArraySymCipher(ciphers[row], firstId + row)
+                                : new RangeSymCipher(ciphers[row], firstId + row);
+                        sum = sum == null ? c : symAHE.add(sum, c);
+                    }
+                    long merge = System.nanoTime() - startTime;
+                    if (sum == null)
+                        continue;
+
+                    startTime = System.nanoTime();
+                    long decrypted = symAHE.decrypt(sum);
+                    long decrypt = System.nanoTime() - startTime;
+
+                    System.out.println(pattern + "\t" + selectivity + "\t" + selected.length + "\t" + type + "\t"
+                            + merge / 1_000_000 + "\t" + decrypt / 1_000_000 + "\t" + sum.byteSize() + "\t"
+                            + (decrypted == expected));
+                }
+            }
+        }
+    }
+}
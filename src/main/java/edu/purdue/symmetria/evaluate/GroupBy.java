@@ -0,0 +1,57 @@
+package edu.purdue.symmetria.evaluate;
+
+import edu.purdue.symmetria.aggregate.GroupBySum;
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.cipher.RangeSymCipher;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class GroupBy {
+    private static final int ROWS = 2_000_000;
+    private static final int[] GROUPS = {1_000, 10_000, 100_000, 1_000_000};
+
+    public static void main(String[] args) {
+        SymAHE symAHE = new SymAHE(SymCipher.CipherType.RANGE);
+
+        // rows encrypted with consecutive ids, as in a column file
+        long[] values = new long[ROWS];
+        long[] ids = new long[ROWS];
+        long firstId = symAHE.reserveIds(ROWS);
+        symAHE.getRandNums(firstId, ROWS, symAHE.modulo, values);
+        for (int i = 0; i < ROWS; i++) {
+            values[i] = MathUtils.modAdd(MathUtils.randLong(1_000_000), values[i], symAHE.modulo);
+            ids[i] = firstId + i;
+        }
+
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        System.out.println("Groups\tadd() loop (ms)\tThreads\tGroupBySum (ms)");
+        for (int groups : GROUPS) {
+            long[] keys = new long[ROWS];
+            for (int i = 0; i < ROWS; i++)
+                keys[i] = MathUtils.randLongPos(groups);
+
+            // baseline: one cipher per group and one add() per row
+            long startTime = System.nanoTime();
+            Map<Long, SymCipher> sums = new HashMap<>();
+            for (int i = 0; i < ROWS; i++) {
+                SymCipher c = new RangeSymCipher(values[i], ids[i]);
+                SymCipher sum = sums.get(keys[i]);
+                if (sum == null)
+                    sums.put(keys[i], c);
+                else
+                    symAHE.add(sum, c);
+            }
+            long baseline = System.nanoTime() - startTime;
+
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                startTime = System.nanoTime();
+                new GroupBySum(symAHE, threads).sum(keys, values, ids, ROWS);
+                long time = System.nanoTime() - startTime;
+                System.out.println(groups + "\t" + baseline / 1_000_000 + "\t" + threads + "\t" + time / 1_000_000);
+            }
+        }
+    }
+}
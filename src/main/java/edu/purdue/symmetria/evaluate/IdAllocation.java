@@ -0,0 +1,134 @@
+package edu.purdue.symmetria.evaluate;
+
+import edu.purdue.symmetria.crypto.FileIdAllocator;
+import edu.purdue.symmetria.crypto.IdAllocator;
+import edu.purdue.symmetria.crypto.MemoryIdAllocator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures the throughput of next() of FileIdAllocator for several lease sizes and number of
+ * threads, against MemoryIdAllocator, then has several processes share one id file and checks
+ * that no id is handed out twice.
+ */
+public class IdAllocation {
+    private static final int IDS = 1_000_000;
+    private static final int[] LEASE_SIZES = {1, 64, 4_096, FileIdAllocator.DEFAULT_LEASE_SIZE};
+    private static final int PROCESSES = 4;
+    private static final int PROCESS_IDS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 4 && args[0].equals("child")) {
+            child(args[1], Integer.parseInt(args[2]), args[3]);
+            return;
+        }
+
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        System.out.println("Allocator\tLease Size\tThreads\tIds/s\tLeases");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            System.out.println("Memory\t-\t" + threads + "\t" + perSecond(new MemoryIdAllocator(1), threads, IDS) + "\t-");
+            for (int leaseSize : LEASE_SIZES) {
+                File file = File.createTempFile("symmetria", ".ids");
+                // fsync per id is slow, so small leases hand out fewer ids
+                int ids = leaseSize == 1 ? IDS / 1_000 : IDS;
+                try (FileIdAllocator allocator = new FileIdAllocator(file.toPath(), leaseSize)) {
+                    long perSecond = perSecond(allocator, threads, ids);
+                    System.out.println("File\t" + leaseSize + "\t" + threads + "\t" + perSecond + "\t" + allocator.getLeases());
+                } finally {
+                    file.delete();
+                }
+            }
+        }
+
+        processes();
+    }
+
+    private static long perSecond(IdAllocator allocator, int threads, int ids) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            long startTime = System.nanoTime();
+            for (int t = 0; t < threads; t++)
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < ids / threads; i++)
+                        allocator.next();
+                }));
+            for (Future<?> future : futures)
+                future.get();
+            long time = System.nanoTime() - startTime;
+            return ids * 1_000_000_000L / time;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs PROCESSES processes that take ids from the same file at the same time and checks that
+     * their ids are distinct.
+     */
+    private static void processes() throws IOException, InterruptedException {
+        File file = File.createTempFile("symmetria", ".ids");
+        List<File> outputs = new ArrayList<>();
+        List<Process> processes = new ArrayList<>();
+        try {
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            long startTime = System.nanoTime();
+            for (int p = 0; p < PROCESSES; p++) {
+                File output = File.createTempFile("symmetria", ".out");
+                outputs.add(output);
+                processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        IdAllocation.class.getName(), "child", file.getPath(), "64", output.getPath())
+                        .inheritIO().start());
+            }
+            for (Process process : processes)
+                if (process.waitFor() != 0)
+                    throw new RuntimeException("Child process failed");
+            long time = System.nanoTime() - startTime;
+
+            long[] ids = new long[PROCESSES * PROCESS_IDS];
+            int count = 0;
+            for (File output : outputs)
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(output)))) {
+                    for (int i = 0; i < PROCESS_IDS; i++)
+                        ids[count++] = in.readLong();
+                }
+            Arrays.sort(ids);
+            int duplicates = 0;
+            for (int i = 1; i < ids.length; i++)
+                if (ids[i] == ids[i - 1])
+                    duplicates++;
+
+            System.out.println();
+            System.out.println("Processes\tLease Size\tIds\tTime (ms)\tDuplicates");
+            System.out.println(PROCESSES + "\t64\t" + ids.length + "\t" + time / 1_000_000 + "\t" + duplicates);
+        } finally {
+            for (Process process : processes)
+                process.destroy();
+            for (File output : outputs)
+                output.delete();
+            file.delete();
+        }
+    }
+
+    private static void child(String path, int leaseSize, String output) throws IOException {
+        try (FileIdAllocator allocator = new FileIdAllocator(Paths.get(path), leaseSize);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            for (int i = 0; i < PROCESS_IDS; i++)
+                out.writeLong(allocator.next());
+        }
+    }
+}
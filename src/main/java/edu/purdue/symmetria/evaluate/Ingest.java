@@ -0,0 +1,52 @@
+package edu.purdue.symmetria.evaluate;
+
+import edu.purdue.symmetria.column.SymAHEEncoder;
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.ingest.BinaryValueSource;
+import edu.purdue.symmetria.ingest.BulkEncryptor;
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class Ingest {
+    private static final int ROWS = 2_000_000;
+    private static final int CHUNK_ROWS = 64 * 1024;
+    private static final String INPUT_PATH = "/tmp/symmetria-ingest.bin";
+    private static final String OUTPUT_PATH = "/tmp/symmetria-ingest.col";
+
+    private static void generateInput() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(INPUT_PATH)))) {
+            for (int i = 0; i < ROWS; i++)
+                out.writeLong(MathUtils.randLong(1_000_000));
+        }
+    }
+
+    private static void timeIngest() throws IOException {
+        SymAHE symAHE = new SymAHE();
+
+        // baseline: one encrypt() call per value on a single thread
+        long startTime = System.nanoTime();
+        for (int i = 0; i < ROWS; i++)
+            symAHE.encrypt(i);
+        long baseline = System.nanoTime() - startTime;
+        System.out.println("encrypt() loop\t" + (long) (ROWS * 1e9 / baseline) + " rows/s");
+
+        System.out.println("Threads\tRows/s");
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            BulkEncryptor encryptor = new BulkEncryptor(new SymAHEEncoder(symAHE), CHUNK_ROWS, threads);
+            try (BinaryValueSource source = new BinaryValueSource(INPUT_PATH)) {
+                BulkEncryptor.Stats stats = encryptor.encrypt(source, OUTPUT_PATH);
+                System.out.println(threads + "\t" + (long) stats.rowsPerSecond());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        generateInput();
+        timeIngest();
+    }
+}
@@ -1,15 +1,17 @@
 package edu.purdue.symmetria.evaluate;
 
+import edu.purdue.symmetria.crypto.PackingCodec;
 import edu.purdue.symmetria.crypto.Paillier;
+import edu.purdue.symmetria.crypto.cipher.PackedCipher;
 import edu.purdue.symmetria.utils.MathUtils;
 
-import java.math.BigInteger;
-
 public class PackedScheme {
 
     private static final int WARMUP = 10;
     private static final int ITERATIONS = 100;
-    private static final int PACKED_LENGTH = 21;
+
+    // {slot bits, value bits}
+    private static final int[][] LAYOUTS = {{32, 24}, {48, 32}, {64, 40}, {64, 64}};
 
     private static final Paillier paillier = new Paillier();
 
@@ -17,23 +19,23 @@ public class PackedScheme {
         ENCRYPT, DECRYPT, ADD, ADD_PLAINTEXT
     }
 
-    private static void timeOp(AHEOp op) {
+    private static void timeOp(AHEOp op, int packedLength) {
 
-        System.out.println("\nEvaluating " + op.name() + " ... (nanoseconds)");
+        System.out.println("\nEvaluating " + op.name() + " ... (nanoseconds per value)");
 
         long startTime;
         long paillierTime = 0;
 
         for (int i = 0; i < ITERATIONS + WARMUP; i++) {
 
-            long[] m1 = new long[PACKED_LENGTH];
-            long[] m2 = new long[PACKED_LENGTH];
-            for (int j = 0; j < PACKED_LENGTH; j++) {
+            long[] m1 = new long[packedLength];
+            long[] m2 = new long[packedLength];
+            for (int j = 0; j < packedLength; j++) {
                 m1[j] = MathUtils.randLong(1_000_000);
                 m2[j] = MathUtils.randLong(1_000_000);
             }
-            BigInteger c_paillier1 = paillier.encryptPacked(m1);
-            BigInteger c_paillier2 = paillier.encryptPacked(m2);
+            PackedCipher c_paillier1 = paillier.encryptPacked(m1);
+            PackedCipher c_paillier2 = paillier.encryptPacked(m2);
 
             switch (op) {
                 case ENCRYPT:
@@ -45,14 +47,14 @@ public class PackedScheme {
 
                 case DECRYPT:
                     startTime = System.nanoTime();
-                    paillier.decrypt(c_paillier1);
+                    paillier.decryptPacked(c_paillier1);
                     if (i >= WARMUP)
                         paillierTime += (System.nanoTime() - startTime);
                     break;
 
                 case ADD:
                     startTime = System.nanoTime();
-                    paillier.add(c_paillier1, c_paillier2);
+                    paillier.addPacked(c_paillier1, c_paillier2);
                     if (i >= WARMUP)
                         paillierTime += (System.nanoTime() - startTime);
                     break;
@@ -70,15 +72,20 @@ public class PackedScheme {
             }
         }
 
-        paillierTime = paillierTime / ITERATIONS / PACKED_LENGTH;
+        paillierTime = paillierTime / ITERATIONS / packedLength;
 
         System.out.println(paillierTime);
     }
 
 
     public static void main(String[] args) {
-        for (AHEOp op : AHEOp.values())
-            timeOp(op);
+        for (int[] layout : LAYOUTS) {
+            PackingCodec codec = new PackingCodec(paillier.n.bitLength(), layout[0], layout[1]);
+            paillier.setPackingCodec(codec);
+            System.out.println("\n" + codec + " maxTerms=" + codec.getMaxTerms());
+            for (AHEOp op : AHEOp.values())
+                timeOp(op, codec.getSlots());
+        }
     }
 
 }
@@ -0,0 +1,181 @@
+package edu.purdue.symmetria.evaluate;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * <pre>
+ * Generates the rows selected by a filter over a table of `rows` rows, in the order the selected
+ * rows arrive at the aggregation. Row i is encrypted with the i-th id, so the pattern of the
+ * selection decides how fragmented the ids of the aggregate are.
+ *
+ * UNIFORM       every row is selected independently
+ * CLUSTERED     runs of consecutive rows, e.g., a filter on a column correlated with insertion
+ * PERIODIC      the same part of every period, e.g., business hours of every day
+ * ZIPF          rows of hot blocks are selected far more often than rows of cold blocks
+ * OUT_OF_ORDER  uniform, but some rows arrive late, after rows with larger ids
+ * </pre>
+ */
+public class SelectionWorkload {
+
+    public enum Pattern {
+        UNIFORM, CLUSTERED, PERIODIC, ZIPF, OUT_OF_ORDER
+    }
+
+    // mean length of the runs of CLUSTERED
+    private static final int RUN_LENGTH = 64;
+
+    // rows per period of PERIODIC
+    private static final int PERIOD = 1_000;
+
+    // rows per block and exponent of ZIPF
+    private static final int BLOCK = 1_024;
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    // fraction of late rows of OUT_OF_ORDER and the maximum number of rows they are late by
+    private static final double LATE_FRACTION = 0.1;
+    private static final int MAX_DELAY = 10_000;
+
+    private final int rows;
+    private final Random random;
+
+    public SelectionWorkload(int rows, long seed) {
+        this.rows = rows;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Returns the selected rows in arrival order. About `selectivity` (0 to 1) of all rows are
+     * selected.
+     */
+    public int[] select(Pattern pattern, double selectivity) {
+        switch (pattern) {
+            case UNIFORM:
+                return uniform(selectivity);
+            case CLUSTERED:
+                return clustered(selectivity);
+            case PERIODIC:
+                return periodic(selectivity);
+            case ZIPF:
+                return zipf(selectivity);
+            case OUT_OF_ORDER:
+                return outOfOrder(uniform(selectivity));
+            default:
+                throw new IllegalArgumentException("Unknown pattern " + pattern);
+        }
+    }
+
+    private int[] uniform(double selectivity) {
+        Selection selection = new Selection();
+        for (int i = 0; i < rows; i++)
+            if (random.nextDouble() < selectivity)
+                selection.add(i);
+        return selection.toArray();
+    }
+
+    /**
+     * Alternates runs of selected and not selected rows with geometrically distributed lengths.
+     */
+    private int[] clustered(double selectivity) {
+        Selection selection = new Selection();
+        if (selectivity <= 0)
+            return selection.toArray();
+        double meanGap = RUN_LENGTH * (1 - selectivity) / selectivity;
+        int i = (int) geometric(meanGap);
+        while (i < rows) {
+            int end = (int) Math.min(rows, i + Math.max(1, geometric(RUN_LENGTH)));
+            for (; i < end; i++)
+                selection.add(i);
+            i += geometric(meanGap);
+        }
+        return selection.toArray();
+    }
+
+    private int[] periodic(double selectivity) {
+        Selection selection = new Selection();
+        int selected = (int) Math.round(PERIOD * selectivity);
+        for (int i = 0; i < rows; i++)
+            if (i % PERIOD < selected)
+                selection.add(i);
+        return selection.toArray();
+    }
+
+    /**
+     * Ranks the blocks in random order and selects the rows of the block of rank k with a
+     * probability proportional to 1 / k^ZIPF_EXPONENT, capped at 1.
+     */
+    private int[] zipf(double selectivity) {
+        int blocks = (rows + BLOCK - 1) / BLOCK;
+        double[] weights = new double[blocks];
+        double total = 0;
+        for (int k = 0; k < blocks; k++) {
+            weights[k] = 1 / Math.pow(k + 1, ZIPF_EXPONENT);
+            total += weights[k];
+        }
+        int[] rank = shuffledRange(blocks);
+
+        Selection selection = new Selection();
+        for (int i = 0; i < rows; i++) {
+            double p = Math.min(1, selectivity * blocks * weights[rank[i / BLOCK]] / total);
+            if (random.nextDouble() < p)
+                selection.add(i);
+        }
+        return selection.toArray();
+    }
+
+    /**
+     * Delays LATE_FRACTION of the given rows by up to MAX_DELAY rows.
+     */
+    private int[] outOfOrder(int[] selected) {
+        // sort by arrival time, kept in the high bits, and keep the row in the low bits
+        long[] arrivals = new long[selected.length];
+        for (int i = 0; i < selected.length; i++) {
+            long arrival = selected[i];
+            if (random.nextDouble() < LATE_FRACTION)
+                arrival += 1 + random.nextInt(MAX_DELAY);
+            arrivals[i] = arrival << 32 | selected[i];
+        }
+        Arrays.sort(arrivals);
+        int[] rows = new int[selected.length];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = (int) arrivals[i];
+        return rows;
+    }
+
+    private long geometric(double mean) {
+        if (mean <= 0)
+            return 0;
+        return (long) (Math.log(1 - random.nextDouble()) / Math.log(1 - 1 / (mean + 1)));
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++)
+            a[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+        return a;
+    }
+
+    /**
+     * A growable array of rows.
+     */
+    private static class Selection {
+        private int[] rows = new int[1024];
+        private int size;
+
+        void add(int row) {
+            if (size == rows.length)
+                rows = Arrays.copyOf(rows, size * 2);
+            rows[size++] = row;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(rows, size);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package edu.purdue.symmetria.evaluate;
+
+import edu.purdue.symmetria.column.ColumnFile;
+import edu.purdue.symmetria.column.ColumnWriter;
+import edu.purdue.symmetria.column.SymAHEEncoder;
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.server.AggregationClient;
+import edu.purdue.symmetria.server.AggregationServer;
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs AggregationServer on localhost over an encrypted column and measures the throughput and
+ * latency of random range sums for a growing number of concurrent clients. Every tenth request
+ * reads READ_ROWS rows instead.
+ */
+public class ServerLoad {
+    private static final int ROWS = 1_000_000;
+    private static final int REQUESTS = 20_000;
+    private static final int READ_ROWS = 1_000;
+    private static final int[] CLIENTS = {1, 2, 4, 8, 16};
+
+    public static void main(String[] args) throws Exception {
+        SymAHE symAHE = new SymAHE();
+        SymAHEEncoder encoder = new SymAHEEncoder(symAHE);
+        File file = File.createTempFile("symmetria", ".col");
+        long total = 0;
+        try (ColumnWriter writer = new ColumnWriter(file.getPath(), encoder)) {
+            long[] values = new long[ColumnFile.DEFAULT_BLOCK_ROWS];
+            ByteBuffer out = ByteBuffer.allocate(values.length * encoder.getWidth());
+            for (int start = 0; start < ROWS; start += values.length) {
+                int count = Math.min(values.length, ROWS - start);
+                for (int i = 0; i < count; i++) {
+                    values[i] = MathUtils.randLong(1_000_000);
+                    total += values[i];
+                }
+                long firstId = encoder.reserveIds(count);
+                out.clear();
+                encoder.encode(values, count, firstId, out);
+                out.flip();
+                writer.writeBlock(firstId, count, out);
+            }
+        }
+
+        try (AggregationServer server = new AggregationServer(0)) {
+            server.addColumn("values", file.getPath());
+            Thread thread = new Thread(() -> {
+                try {
+                    server.serve();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            thread.start();
+
+            try (AggregationClient client = new AggregationClient("localhost", server.getPort())) {
+                if (symAHE.decrypt(client.sum("values", 0, ROWS)) != total)
+                    throw new RuntimeException("Wrong sum of all rows");
+            }
+
+            System.out.println("Clients\tRequests/s\tp50 (us)\tp99 (us)\tRequests per Batch");
+            for (int clients : CLIENTS) {
+                long requests = server.getRequests();
+                long batches = server.getBatches();
+                long[] latencies = new long[REQUESTS / clients * clients];
+                long startTime = System.nanoTime();
+                run(server.getPort(), clients, latencies);
+                long time = System.nanoTime() - startTime;
+
+                Arrays.sort(latencies);
+                double perBatch = (double) (server.getRequests() - requests) / Math.max(1, server.getBatches() - batches);
+                System.out.println(clients + "\t" + latencies.length * 1_000_000_000L / time
+                        + "\t" + latencies[latencies.length / 2] / 1_000
+                        + "\t" + latencies[(int) (latencies.length * 0.99)] / 1_000
+                        + "\t" + String.format("%.2f", perBatch));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Runs `latencies.length` requests split among `clients` connections and records the latency
+     * of each.
+     */
+    private static void run(int port, int clients, long[] latencies) throws Exception {
+        int perClient = latencies.length / clients;
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int offset = c * perClient;
+                futures.add(executor.submit(() -> {
+                    try (AggregationClient client = new AggregationClient("localhost", port)) {
+                        for (int i = 0; i < perClient; i++) {
+                            long from = MathUtils.randLongPos(ROWS - READ_ROWS);
+                            long startTime = System.nanoTime();
+                            if (i % 10 == 9)
+                                client.read("values", from, from + READ_ROWS);
+                            else
+                                client.sum("values", from, from + 1 + MathUtils.randLongPos(ROWS - from));
+                            latencies[offset + i] = System.nanoTime() - startTime;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -3,7 +3,6 @@ package edu.purdue.symmetria.evaluate;
 import edu.purdue.symmetria.crypto.Paillier;
 import edu.purdue.symmetria.crypto.Strawman;
 import edu.purdue.symmetria.crypto.SymAHE;
-import edu.purdue.symmetria.crypto.cipher.RangeSymCipher;
 import edu.purdue.symmetria.crypto.cipher.SymCipher;
 import edu.purdue.symmetria.utils.MathUtils;
 
@@ -69,7 +68,7 @@ public class Sum {
                 }
             }
 
-            int size_sahe = ((RangeSymCipher) sum_sahe).byteSize();
+            int size_sahe = sum_sahe.byteSize();
             int size_straw = sum_straw.getBytes().length;
             int size_paillier = sum_paillier.toByteArray().length;
 
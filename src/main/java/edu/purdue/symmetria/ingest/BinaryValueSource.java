@@ -0,0 +1,50 @@
+package edu.purdue.symmetria.ingest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file of raw big endian longs. A file whose length is not a multiple of 8 is an error.
+ */
+public class BinaryValueSource implements ValueSource {
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final String path;
+    private final FileChannel channel;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    public BinaryValueSource(String path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        buf.flip();
+    }
+
+    @Override
+    public int read(long[] buffer) throws IOException {
+        int count = 0;
+        while (count < buffer.length) {
+            if (buf.remaining() < Long.BYTES) {
+                buf.compact();
+                int read = channel.read(buf);
+                buf.flip();
+                if (read < 0) {
+                    if (buf.hasRemaining())
+                        throw new IOException("`" + path + "` ends with a partial value of " + buf.remaining() + " bytes");
+                    break;
+                }
+                continue;
+            }
+            buffer[count++] = buf.getLong();
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,203 @@
+package edu.purdue.symmetria.ingest;
+
+import edu.purdue.symmetria.column.ColumnEncoder;
+import edu.purdue.symmetria.column.ColumnWriter;
+import edu.purdue.symmetria.column.ElGamalEncoder;
+import edu.purdue.symmetria.column.PaillierEncoder;
+import edu.purdue.symmetria.column.SymAHEEncoder;
+import edu.purdue.symmetria.column.SymMHEEncoder;
+import edu.purdue.symmetria.crypto.ElGamal;
+import edu.purdue.symmetria.crypto.Paillier;
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.SymMHE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <pre>
+ * Encrypts a source of values into a column file.
+ *
+ * The values are read in chunks. Each chunk reserves a block of consecutive ids and is encrypted
+ * by a pool of worker threads. Encrypted chunks are written in the order they were read. At most
+ * `maxChunksInFlight` chunks exist at any time and their buffers are reused, so memory is bounded
+ * and reading blocks whenever the workers or the writer fall behind.
+ * </pre>
+ */
+public class BulkEncryptor {
+
+    private static final int DEFAULT_CHUNK_ROWS = 64 * 1024;
+
+    /**
+     * Statistics of a single run.
+     */
+    public static class Stats {
+        public final long rows;
+        public final long nanos;
+
+        Stats(long rows, long nanos) {
+            this.rows = rows;
+            this.nanos = nanos;
+        }
+
+        public double rowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return rows + " rows in " + nanos / 1_000_000 + " ms (" + (long) rowsPerSecond() + " rows/s)";
+        }
+    }
+
+    /**
+     * A chunk of values and the buffer their encryptions are written to.
+     */
+    private static class Chunk {
+        final long[] values;
+        final ByteBuffer out;
+        int count;
+        long firstId;
+
+        Chunk(int rows, int width) {
+            values = new long[rows];
+            out = ByteBuffer.allocate(rows * width);
+        }
+    }
+
+    private final ColumnEncoder encoder;
+    private final int chunkRows;
+    private final int threads;
+    private final int maxChunksInFlight;
+
+    public BulkEncryptor(ColumnEncoder encoder) {
+        this(encoder, DEFAULT_CHUNK_ROWS, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BulkEncryptor(ColumnEncoder encoder, int chunkRows, int threads) {
+        this(encoder, chunkRows, threads, 2 * threads);
+    }
+
+    public BulkEncryptor(ColumnEncoder encoder, int chunkRows, int threads, int maxChunksInFlight) {
+        if (chunkRows <= 0 || threads <= 0 || maxChunksInFlight <= 0)
+            throw new IllegalArgumentException("chunkRows, threads and maxChunksInFlight must be positive");
+        this.encoder = encoder;
+        this.chunkRows = chunkRows;
+        this.threads = threads;
+        this.maxChunksInFlight = maxChunksInFlight;
+    }
+
+    /**
+     * Encrypts all values of the given source and writes them to the given column file.
+     */
+    public Stats encrypt(ValueSource source, String outputPath) throws IOException {
+        return encrypt(source, outputPath, false);
+    }
+
+    /**
+     * Encrypts all values of the given source and writes them to the given column file. If
+     * `append` is true the values are appended to the existing column file.
+     */
+    public Stats encrypt(ValueSource source, String outputPath, boolean append) throws IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (ColumnWriter writer = append ? ColumnWriter.append(outputPath) : new ColumnWriter(outputPath, encoder)) {
+            ArrayDeque<Chunk> free = new ArrayDeque<>();
+            for (int i = 0; i < maxChunksInFlight; i++)
+                free.add(new Chunk(chunkRows, encoder.getWidth()));
+            ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+
+            while (true) {
+                // wait for the oldest chunk if all buffers are in use
+                if (free.isEmpty())
+                    free.add(write(writer, inFlight.poll()));
+                Chunk chunk = free.poll();
+
+                int count = source.read(chunk.values);
+                if (count < 0) {
+                    free.add(chunk);
+                    break;
+                }
+                chunk.count = count;
+                chunk.firstId = encoder.reserveIds(count);
+                rows += count;
+
+                inFlight.add(pool.submit(() -> {
+                    chunk.out.clear();
+                    encoder.encode(chunk.values, chunk.count, chunk.firstId, chunk.out);
+                    chunk.out.flip();
+                    return chunk;
+                }));
+            }
+
+            while (!inFlight.isEmpty())
+                write(writer, inFlight.poll());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return new Stats(rows, System.nanoTime() - start);
+    }
+
+    private static Chunk write(ColumnWriter writer, Future<Chunk> future) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while encrypting", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to encrypt chunk", e.getCause());
+        }
+        writer.writeBlock(chunk.firstId, chunk.count, chunk.out);
+        return chunk;
+    }
+
+    /**
+     * Returns the encoder of the given scheme name (sahe, smhe, paillier or elgamal).
+     */
+    public static ColumnEncoder encoderFor(String scheme) {
+        switch (scheme.toLowerCase()) {
+            case "sahe":
+                return new SymAHEEncoder(new SymAHE());
+            case "smhe":
+                return new SymMHEEncoder(new SymMHE());
+            case "paillier":
+                return new PaillierEncoder(new Paillier());
+            case "elgamal":
+                return new ElGamalEncoder(new ElGamal());
+            default:
+                throw new RuntimeException("Invalid scheme `" + scheme + "`");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: BulkEncryptor <sahe|smhe|paillier|elgamal> <csv|csvh|bin> INPUT OUTPUT [COLUMN] [THREADS]");
+            System.exit(1);
+        }
+        int column = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+        ColumnEncoder encoder = encoderFor(args[0]);
+        ValueSource source;
+        if (args[1].equalsIgnoreCase("csv") || args[1].equalsIgnoreCase("csvh"))
+            source = new CsvValueSource(args[2], column, args[1].equalsIgnoreCase("csvh"));
+        else
+            source = new BinaryValueSource(args[2]);
+
+        BulkEncryptor encryptor = new BulkEncryptor(encoder, DEFAULT_CHUNK_ROWS, threads);
+        try {
+            System.out.println(encryptor.encrypt(source, args[3]));
+        } finally {
+            source.close();
+        }
+    }
+}
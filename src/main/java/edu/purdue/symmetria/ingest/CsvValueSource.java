@@ -0,0 +1,77 @@
+package edu.purdue.symmetria.ingest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Reads the values of a single column of a CSV file. Empty lines and, if requested, a header line
+ * are skipped. Any other line without a number in the column is an error, since skipping it would
+ * shift all later rows.
+ */
+public class CsvValueSource implements ValueSource {
+
+    private static final char SEPARATOR = ',';
+
+    private final BufferedReader reader;
+    private final String path;
+    private final int column;
+    private final boolean header;
+
+    private long lineNumber;
+
+    public CsvValueSource(String path, int column) throws IOException {
+        this(path, column, false);
+    }
+
+    /**
+     * Reads column `column` (0-based) of the CSV file at `path`, skipping the first line if
+     * `header`.
+     */
+    public CsvValueSource(String path, int column, boolean header) throws IOException {
+        this.reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8);
+        this.path = path;
+        this.column = column;
+        this.header = header;
+    }
+
+    @Override
+    public int read(long[] buffer) throws IOException {
+        int count = 0;
+        String line;
+        while (count < buffer.length && (line = reader.readLine()) != null) {
+            lineNumber++;
+            if ((header && lineNumber == 1) || line.isEmpty())
+                continue;
+            // find the start and end of the column without splitting the whole line
+            int start = 0;
+            for (int i = 0; i < column && start >= 0; i++) {
+                start = line.indexOf(SEPARATOR, start);
+                if (start >= 0)
+                    start++;
+            }
+            if (start < 0)
+                throw new IOException("Line " + lineNumber + " of `" + path + "` has no column " + column);
+            int end = line.indexOf(SEPARATOR, start);
+            if (end < 0)
+                end = line.length();
+
+            String field = line.substring(start, end).trim();
+            try {
+                buffer[count] = Long.parseLong(field);
+                count++;
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + lineNumber + " of `" + path + "` has no number in column " + column
+                        + ": `" + field + "`");
+            }
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
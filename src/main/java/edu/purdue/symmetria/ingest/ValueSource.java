@@ -0,0 +1,16 @@
+package edu.purdue.symmetria.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A source of plaintext values that are read in chunks.
+ */
+public interface ValueSource extends Closeable {
+
+    /**
+     * Reads up to `buffer.length` values into `buffer`. Returns the number of values read or -1
+     * if there are no more values.
+     */
+    int read(long[] buffer) throws IOException;
+}
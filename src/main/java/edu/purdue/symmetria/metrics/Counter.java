@@ -0,0 +1,37 @@
+package edu.purdue.symmetria.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter that can be incremented from many threads at once. LongAdder keeps a cell per
+ * contending thread, so increments do not fight over one cache line.
+ */
+public class Counter {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long n) {
+        count.add(n);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+
+    void reset() {
+        count.reset();
+    }
+}
@@ -0,0 +1,118 @@
+package edu.purdue.symmetria.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * A lock-free histogram of non-negative values, e.g., latencies in nanoseconds or sizes.
+ *
+ * Bucket i counts the values of bit length i, i.e., 0 in bucket 0 and 2^(i-1) to 2^i - 1 in
+ * bucket i, so recording is a numberOfLeadingZeros() and a LongAdder increment without allocation
+ * or locks. Percentiles are reported as the upper bound of their bucket, which is within a factor
+ * of 2 of the exact value.
+ * </pre>
+ */
+public class Histogram {
+
+    private static final int BUCKETS = Long.SIZE + 1;
+
+    private final String name;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+
+    Histogram(String name) {
+        this.name = name;
+        for (int i = 0; i < BUCKETS; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records the given value. Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(value)].increment();
+        sum.add(value);
+    }
+
+    /**
+     * Returns a snapshot of the histogram. The buckets are read one by one while other threads may
+     * record, so the snapshot is only consistent once recording stopped.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            counts[i] = buckets[i].sum();
+        return new Snapshot(name, counts, sum.sum());
+    }
+
+    void reset() {
+        for (LongAdder bucket : buckets)
+            bucket.reset();
+        sum.reset();
+    }
+
+    public static class Snapshot {
+        private final String name;
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        Snapshot(String name, long[] counts, long sum) {
+            this.name = name;
+            this.counts = counts;
+            this.sum = sum;
+            long count = 0;
+            for (long c : counts)
+                count += c;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the upper bound of the bucket of the given percentile (0 to 100), or 0 if the
+         * histogram is empty.
+         */
+        public long getPercentile(double percentile) {
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0)
+                    return upperBound(i);
+            }
+            return 0;
+        }
+
+        /**
+         * Returns the number of values of bit length i.
+         */
+        public long getBucket(int i) {
+            return counts[i];
+        }
+
+        public static long upperBound(int bucket) {
+            return bucket >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+    }
+}
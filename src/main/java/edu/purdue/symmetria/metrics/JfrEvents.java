@@ -0,0 +1,105 @@
+package edu.purdue.symmetria.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * <pre>
+ * Emits the counters and histograms of Metrics as JFR events, e.g., to scrape them from a
+ * recording started with -XX:StartFlightRecording or jcmd JFR.start.
+ *
+ * The events are periodic: JFR calls a hook once per period, by default every second, that emits
+ * one event per counter and histogram. The hot paths are left as they are, so recording adds no
+ * work or allocation to them.
+ *
+ * Only loaded by Metrics when jdk.jfr is available (JDK 11+ and OpenJDK 8u272+), since this
+ * class does not load without it.
+ * </pre>
+ */
+class JfrEvents {
+
+    private static boolean registered;
+
+    @Name("symmetria.Counter")
+    @Label("Symmetria Counter")
+    @Category("Symmetria")
+    @Description("The value of a counter of the crypto hot paths")
+    @Period("1 s")
+    @StackTrace(false)
+    static class CounterEvent extends Event {
+        @Label("Name")
+        String name;
+
+        @Label("Value")
+        long value;
+    }
+
+    @Name("symmetria.Histogram")
+    @Label("Symmetria Histogram")
+    @Category("Symmetria")
+    @Description("The count, sum and percentiles of a histogram of the crypto hot paths")
+    @Period("1 s")
+    @StackTrace(false)
+    static class HistogramEvent extends Event {
+        @Label("Name")
+        String name;
+
+        @Label("Count")
+        long count;
+
+        @Label("Sum")
+        long sum;
+
+        @Label("p50")
+        long p50;
+
+        @Label("p99")
+        long p99;
+
+        @Label("Max")
+        long max;
+    }
+
+    private JfrEvents() {
+    }
+
+    /**
+     * Registers the periodic events. Called by Metrics through reflection, later calls do nothing.
+     */
+    static synchronized void register() {
+        if (registered)
+            return;
+        FlightRecorder.addPeriodicEvent(CounterEvent.class, JfrEvents::emitCounters);
+        FlightRecorder.addPeriodicEvent(HistogramEvent.class, JfrEvents::emitHistograms);
+        registered = true;
+    }
+
+    private static void emitCounters() {
+        for (Counter counter : Metrics.getCounters()) {
+            CounterEvent event = new CounterEvent();
+            event.name = counter.getName();
+            event.value = counter.get();
+            event.commit();
+        }
+    }
+
+    private static void emitHistograms() {
+        for (Histogram histogram : Metrics.getHistograms()) {
+            Histogram.Snapshot snapshot = histogram.snapshot();
+            HistogramEvent event = new HistogramEvent();
+            event.name = snapshot.getName();
+            event.count = snapshot.getCount();
+            event.sum = snapshot.getSum();
+            event.p50 = snapshot.getPercentile(50);
+            event.p99 = snapshot.getPercentile(99);
+            event.max = snapshot.getPercentile(100);
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package edu.purdue.symmetria.metrics;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <pre>
+ * Counters and histograms of the crypto hot paths.
+ *
+ * Metrics are disabled unless the JVM is started with -Dsymmetria.metrics=true. ENABLED is a
+ * static final constant, so when it is false the JIT removes the guarded code and the hot paths
+ * cost nothing. The instrumented code reads clocks and increments LongAdders only, no objects are
+ * allocated.
+ *
+ * Instrumented code follows the pattern:
+ *
+ *   long start = Metrics.ENABLED ? System.nanoTime() : 0;
+ *   ...
+ *   if (Metrics.ENABLED)
+ *       Metrics.PRF_NANOS.record(System.nanoTime() - start);
+ *
+ * snapshot() returns all values, e.g., to expose them to a scraper. When metrics are enabled and
+ * the JVM has JFR, the values are also emitted as periodic JFR events, see JfrEvents.
+ * </pre>
+ */
+public class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("symmetria.metrics");
+
+    // PRF evaluations (getRandNum() and the bulk getRandNums()) and the latency of single ones
+    public static final Counter PRF_CALLS = new Counter("prf_calls");
+    public static final Histogram PRF_NANOS = new Histogram("prf_nanos");
+
+    // merges of the id lists of two ciphers, their latency and the number of ids merged in
+    public static final Counter ARRAY_MERGES = new Counter("array_merges");
+    public static final Counter RANGE_MERGES = new Counter("range_merges");
+    public static final Histogram MERGE_NANOS = new Histogram("merge_nanos");
+    public static final Histogram MERGE_IDS = new Histogram("merge_ids");
+
+    // the number of ids of every decrypted symmetric cipher
+    public static final Histogram DECRYPT_IDS = new Histogram("decrypt_ids");
+
+    // BigInteger modPow() calls of Paillier and ElGamal and their latency
+    public static final Counter MODPOW_CALLS = new Counter("modpow_calls");
+    public static final Histogram MODPOW_NANOS = new Histogram("modpow_nanos");
+
+    private static final List<Counter> COUNTERS = Collections.unmodifiableList(Arrays.asList(
+            PRF_CALLS, ARRAY_MERGES, RANGE_MERGES, MODPOW_CALLS));
+    private static final List<Histogram> HISTOGRAMS = Collections.unmodifiableList(Arrays.asList(
+            PRF_NANOS, MERGE_NANOS, MERGE_IDS, DECRYPT_IDS, MODPOW_NANOS));
+
+    static {
+        if (ENABLED)
+            registerJfrEvents();
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Registers JfrEvents if jdk.jfr is available. JfrEvents is only loaded through reflection, so
+     * Metrics also works on JVMs without JFR.
+     */
+    static boolean registerJfrEvents() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            Method register = Class.forName("edu.purdue.symmetria.metrics.JfrEvents").getDeclaredMethod("register");
+            register.setAccessible(true);
+            register.invoke(null);
+            return true;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public static List<Counter> getCounters() {
+        return COUNTERS;
+    }
+
+    public static List<Histogram> getHistograms() {
+        return HISTOGRAMS;
+    }
+
+    /**
+     * Returns the current value of every counter and histogram.
+     */
+    public static Snapshot snapshot() {
+        long[] counters = new long[COUNTERS.size()];
+        for (int i = 0; i < counters.length; i++)
+            counters[i] = COUNTERS.get(i).get();
+        List<Histogram.Snapshot> histograms = new ArrayList<>();
+        for (Histogram histogram : HISTOGRAMS)
+            histograms.add(histogram.snapshot());
+        return new Snapshot(counters, histograms);
+    }
+
+    /**
+     * Resets all counters and histograms, e.g., between benchmark runs.
+     */
+    public static void reset() {
+        for (Counter counter : COUNTERS)
+            counter.reset();
+        for (Histogram histogram : HISTOGRAMS)
+            histogram.reset();
+    }
+
+    public static class Snapshot {
+        private final long[] counters;
+        private final List<Histogram.Snapshot> histograms;
+
+        Snapshot(long[] counters, List<Histogram.Snapshot> histograms) {
+            this.counters = counters;
+            this.histograms = histograms;
+        }
+
+        /**
+         * Returns the value of the given counter in this snapshot.
+         */
+        public long get(Counter counter) {
+            return counters[COUNTERS.indexOf(counter)];
+        }
+
+        /**
+         * Returns the snapshot of the given histogram.
+         */
+        public Histogram.Snapshot get(Histogram histogram) {
+            return histograms.get(HISTOGRAMS.indexOf(histogram));
+        }
+
+        /**
+         * Returns the snapshot as "name value" lines: the counters, and the count, sum, p50, p99 and
+         * max of every histogram.
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < counters.length; i++)
+                sb.append("symmetria_").append(COUNTERS.get(i).getName()).append(' ').append(counters[i]).append('\n');
+            for (Histogram.Snapshot h : histograms) {
+                String prefix = "symmetria_" + h.getName();
+                sb.append(prefix).append("_count ").append(h.getCount()).append('\n');
+                sb.append(prefix).append("_sum ").append(h.getSum()).append('\n');
+                sb.append(prefix).append("_p50 ").append(h.getPercentile(50)).append('\n');
+                sb.append(prefix).append("_p99 ").append(h.getPercentile(99)).append('\n');
+                sb.append(prefix).append("_max ").append(h.getPercentile(100)).append('\n');
+            }
+            return sb.toString();
+        }
+    }
+}
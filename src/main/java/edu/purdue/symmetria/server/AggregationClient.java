@@ -0,0 +1,136 @@
+package edu.purdue.symmetria.server;
+
+import edu.purdue.symmetria.crypto.cipher.RangeSymCipher;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A blocking client of AggregationServer with one request in flight at a time. Not thread safe,
+ * threads should use a client each.
+ */
+public class AggregationClient implements Closeable {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private int nextRequestId;
+
+    public AggregationClient(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Returns the sum of rows `fromRow` (inclusive) to `toRow` (exclusive) of the given column.
+     */
+    public SymCipher sum(String column, long fromRow, long toRow) throws IOException {
+        byte[] name = column.getBytes(StandardCharsets.UTF_8);
+        int requestId = writeHeader(Protocol.SUM_RANGE, name, Long.BYTES + Long.BYTES);
+        out.writeLong(fromRow);
+        out.writeLong(toRow);
+        out.flush();
+        readHeader(requestId);
+        return readCipher();
+    }
+
+    /**
+     * Returns the sum of the rows of the given column encrypted with the given ids.
+     */
+    public SymCipher sum(String column, long[] ids) throws IOException {
+        byte[] name = column.getBytes(StandardCharsets.UTF_8);
+        int requestId = writeHeader(Protocol.SUM_IDS, name, Integer.BYTES + ids.length * Long.BYTES);
+        out.writeInt(ids.length);
+        for (long id : ids)
+            out.writeLong(id);
+        out.flush();
+        readHeader(requestId);
+        return readCipher();
+    }
+
+    /**
+     * Returns the ciphers of rows `fromRow` (inclusive) to `toRow` (exclusive) of the given column.
+     */
+    public SymCipher[] read(String column, long fromRow, long toRow) throws IOException {
+        byte[] name = column.getBytes(StandardCharsets.UTF_8);
+        int requestId = writeHeader(Protocol.READ_RANGE, name, Long.BYTES + Long.BYTES);
+        out.writeLong(fromRow);
+        out.writeLong(toRow);
+        out.flush();
+        readHeader(requestId);
+
+        int segments = in.readInt();
+        long[] firstIds = new long[segments];
+        int[] counts = new int[segments];
+        int rows = 0;
+        for (int i = 0; i < segments; i++) {
+            firstIds[i] = in.readLong();
+            counts[i] = in.readInt();
+            rows += counts[i];
+        }
+        SymCipher[] ciphers = new SymCipher[rows];
+        int row = 0;
+        for (int i = 0; i < segments; i++)
+            for (int j = 0; j < counts[i]; j++)
+                ciphers[row++] = new RangeSymCipher(in.readLong(), firstIds[i] + j);
+        return ciphers;
+    }
+
+    private int writeHeader(byte type, byte[] column, int payloadBytes) throws IOException {
+        int requestId = nextRequestId++;
+        out.writeInt(1 + Integer.BYTES + Short.BYTES + column.length + payloadBytes);
+        out.writeByte(type);
+        out.writeInt(requestId);
+        out.writeShort(column.length);
+        out.write(column);
+        return requestId;
+    }
+
+    /**
+     * Reads the header of the response, throwing a RuntimeException with the message of the
+     * server if the request failed.
+     */
+    private void readHeader(int requestId) throws IOException {
+        in.readInt();
+        int responseId = in.readInt();
+        if (responseId != requestId)
+            throw new IOException("Expected response " + requestId + " but got " + responseId);
+        if (in.readByte() == Protocol.ERROR) {
+            byte[] message = new byte[in.readShort()];
+            in.readFully(message);
+            throw new RuntimeException(new String(message, StandardCharsets.UTF_8));
+        }
+    }
+
+    private SymCipher readCipher() throws IOException {
+        long value = in.readLong();
+        int runs = in.readInt();
+        SymCipher sum = null;
+        for (int i = 0; i < runs; i++) {
+            long firstId = in.readLong();
+            int count = in.readInt();
+            if (sum == null) {
+                sum = new RangeSymCipher(value, firstId, count);
+            } else {
+                // the value is already reduced, so adding 0 leaves it as is under any modulo
+                sum.add(new RangeSymCipher(0, firstId, count), Long.MAX_VALUE);
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,540 @@
+package edu.purdue.symmetria.server;
+
+import edu.purdue.symmetria.column.MappedColumn;
+import edu.purdue.symmetria.utils.MathUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * A TCP server that sums rows of encrypted columns without the key, e.g., to run next to the
+ * column files of an untrusted host. See Protocol for the requests.
+ *
+ * A single thread runs a non-blocking NIO event loop. Every round it reads the requests that
+ * arrived on all connections and answers them together: the SUM_RANGE requests over the same
+ * column are summed in one pass with MappedColumn.sum(). Sums only add mapped values, so the
+ * loop never waits on anything but the sockets. The values of READ_RANGE are sent from the page
+ * cache to the socket with FileChannel.transferTo(), without copying them through the heap.
+ *
+ * The protocol has no authentication, so main() only listens on the loopback address.
+ *
+ * Usage: AggregationServer port name=path [name=path ...]
+ * </pre>
+ */
+public class AggregationServer implements Closeable {
+
+    private static final int READ_BUFFER_BYTES = 64 << 10;
+
+    // connections with more queued responses than this are not read until the client catches up
+    private static final int MAX_QUEUED_RESPONSES = 1024;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final int port;
+    private final Map<String, MappedColumn> columns = new ConcurrentHashMap<>();
+
+    // the requests read in the current round of the event loop
+    private final List<Request> requests = new ArrayList<>();
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+
+    // the number of open client connections, for monitoring
+    private volatile int openConnections;
+
+    private volatile boolean running = true;
+    private volatile Thread thread;
+
+    private static class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+
+        // ByteBuffers and Regions to send, in order
+        final ArrayDeque<Object> out = new ArrayDeque<>();
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Bytes of a column file to send with transferTo().
+     */
+    private static class Region {
+        final MappedColumn column;
+        long position;
+        long count;
+
+        Region(MappedColumn column, long position, long count) {
+            this.column = column;
+            this.position = position;
+            this.count = count;
+        }
+    }
+
+    private static class Request {
+        final Connection connection;
+        final byte type;
+        final int requestId;
+        final String column;
+        long fromRow;
+        long toRow;
+        long[] ids;
+
+        Request(Connection connection, byte type, int requestId, String column) {
+            this.connection = connection;
+            this.type = type;
+            this.requestId = requestId;
+            this.column = column;
+        }
+    }
+
+    /**
+     * Runs of consecutive ids, e.g., the ids of a sum.
+     */
+    private static class Runs {
+        long[] firstIds = new long[4];
+        int[] counts = new int[4];
+        int size;
+
+        void add(long firstId, int count) {
+            if (size > 0 && firstIds[size - 1] + counts[size - 1] == firstId) {
+                counts[size - 1] += count;
+                return;
+            }
+            if (size == firstIds.length) {
+                firstIds = Arrays.copyOf(firstIds, 2 * size);
+                counts = Arrays.copyOf(counts, 2 * size);
+            }
+            firstIds[size] = firstId;
+            counts[size] = count;
+            size++;
+        }
+
+        int byteSize() {
+            return Integer.BYTES + size * (Long.BYTES + Integer.BYTES);
+        }
+
+        void put(ByteBuffer out) {
+            out.putInt(size);
+            for (int i = 0; i < size; i++)
+                out.putLong(firstIds[i]).putInt(counts[i]);
+        }
+    }
+
+    /**
+     * Listens on the given port of the loopback address, or on any free port if 0.
+     */
+    public AggregationServer(int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public AggregationServer(InetSocketAddress address) throws IOException {
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.port = serverChannel.socket().getLocalPort();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Maps the column file at `path` and serves it as `name`. The file must be a SYM_AHE column
+     * with rollups, see MappedColumn.
+     */
+    public void addColumn(String name, String path) throws IOException {
+        MappedColumn column = new MappedColumn(path);
+        if (columns.putIfAbsent(name, column) != null) {
+            column.close();
+            throw new IllegalArgumentException("Column `" + name + "` already exists");
+        }
+    }
+
+    /**
+     * Returns the number of requests answered so far.
+     */
+    public long getRequests() {
+        return requestCount.sum();
+    }
+
+    /**
+     * Returns the number of batches the SUM_RANGE requests were answered in so far.
+     */
+    public long getBatches() {
+        return batchCount.sum();
+    }
+
+    /**
+     * Returns the number of client connections currently open.
+     */
+    public int getConnections() {
+        return openConnections;
+    }
+
+    /**
+     * Runs the event loop in the calling thread until close() is called.
+     */
+    public void serve() throws IOException {
+        thread = Thread.currentThread();
+        Set<Connection> connections = new HashSet<>();
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()) {
+                        SocketChannel channel = serverChannel.accept();
+                        if (channel == null)
+                            continue;
+                        channel.configureBlocking(false);
+                        channel.socket().setTcpNoDelay(true);
+                        SelectionKey connectionKey = channel.register(selector, SelectionKey.OP_READ);
+                        Connection connection = new Connection(channel, connectionKey);
+                        connectionKey.attach(connection);
+                        connections.add(connection);
+                        continue;
+                    }
+
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable() && !read(connection)) {
+                            close(connection);
+                            connections.remove(connection);
+                            continue;
+                        }
+                        if (key.isValid() && key.isWritable())
+                            write(connection);
+                    } catch (IOException | RuntimeException e) {
+                        close(connection);
+                        connections.remove(connection);
+                    }
+                }
+                openConnections = connections.size();
+
+                if (!requests.isEmpty()) {
+                    Set<Connection> answered = answer();
+                    requests.clear();
+                    for (Connection connection : answered) {
+                        try {
+                            write(connection);
+                        } catch (IOException | RuntimeException e) {
+                            close(connection);
+                            connections.remove(connection);
+                        }
+                    }
+                    openConnections = connections.size();
+                }
+            }
+        } finally {
+            for (Connection connection : connections)
+                close(connection);
+        }
+    }
+
+    /**
+     * Reads the complete requests available on the connection. Returns false if the client closed
+     * the connection.
+     */
+    private boolean read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.in) < 0)
+            return false;
+        ByteBuffer in = connection.in;
+        in.flip();
+        while (in.remaining() >= Integer.BYTES) {
+            int length = in.getInt(in.position());
+            if (length < 0 || length > Protocol.MAX_FRAME_BYTES)
+                throw new IOException("Invalid frame length " + length);
+            if (in.remaining() < Integer.BYTES + length)
+                break;
+            in.getInt();
+            ByteBuffer frame = in.slice();
+            frame.limit(length);
+            in.position(in.position() + length);
+            requests.add(parse(connection, frame));
+        }
+        in.compact();
+
+        // make room for a frame larger than the buffer
+        if (in.position() >= Integer.BYTES) {
+            int needed = Integer.BYTES + in.getInt(0);
+            if (needed > in.capacity() && needed <= Integer.BYTES + Protocol.MAX_FRAME_BYTES) {
+                in.flip();
+                connection.in = ByteBuffer.allocate(needed).put(in);
+            }
+        }
+        return true;
+    }
+
+    private static Request parse(Connection connection, ByteBuffer frame) {
+        byte type = frame.get();
+        int requestId = frame.getInt();
+        byte[] name = new byte[frame.getShort()];
+        frame.get(name);
+        Request request = new Request(connection, type, requestId, new String(name, StandardCharsets.UTF_8));
+        if (type == Protocol.SUM_RANGE || type == Protocol.READ_RANGE) {
+            request.fromRow = frame.getLong();
+            request.toRow = frame.getLong();
+        } else if (type == Protocol.SUM_IDS) {
+            int count = frame.getInt();
+            if (count < 0 || count > frame.remaining() / Long.BYTES)
+                throw new IllegalArgumentException("Invalid number of ids " + count);
+            request.ids = new long[count];
+            for (int i = 0; i < count; i++)
+                request.ids[i] = frame.getLong();
+        }
+        return request;
+    }
+
+    /**
+     * Answers the requests of this round and returns the connections with new responses. A request
+     * that fails, e.g., on a corrupted column file, gets an ERROR response.
+     */
+    private Set<Connection> answer() {
+        Set<Connection> answered = new LinkedHashSet<>();
+        Map<String, List<Request>> sums = new HashMap<>();
+        for (Request request : requests) {
+            answered.add(request.connection);
+            requestCount.increment();
+            MappedColumn column = columns.get(request.column);
+            if (column == null) {
+                error(request, "Unknown column `" + request.column + "`");
+                continue;
+            }
+            if ((request.type == Protocol.SUM_RANGE || request.type == Protocol.READ_RANGE)
+                    && (request.fromRow < 0 || request.toRow > column.getRows() || request.fromRow >= request.toRow)) {
+                error(request, "Invalid range [" + request.fromRow + ", " + request.toRow + ") of " + column.getRows() + " rows");
+                continue;
+            }
+            try {
+                if (request.type == Protocol.SUM_RANGE)
+                    sums.computeIfAbsent(request.column, c -> new ArrayList<>()).add(request);
+                else if (request.type == Protocol.SUM_IDS)
+                    sumIds(request, column);
+                else if (request.type == Protocol.READ_RANGE)
+                    readRange(request, column);
+                else
+                    error(request, "Unknown request type " + request.type);
+            } catch (RuntimeException e) {
+                error(request, e.toString());
+            }
+        }
+
+        for (Map.Entry<String, List<Request>> entry : sums.entrySet())
+            sumRanges(columns.get(entry.getKey()), entry.getValue());
+        return answered;
+    }
+
+    /**
+     * Sums all ranges of the same column in one pass.
+     */
+    private void sumRanges(MappedColumn column, List<Request> batch) {
+        int count = batch.size();
+        long[] fromRows = new long[count];
+        long[] toRows = new long[count];
+        for (int i = 0; i < count; i++) {
+            fromRows[i] = batch.get(i).fromRow;
+            toRows[i] = batch.get(i).toRow;
+        }
+        long[] values = new long[count];
+        try {
+            column.sum(fromRows, toRows, count, values);
+        } catch (RuntimeException e) {
+            for (Request request : batch)
+                error(request, e.toString());
+            return;
+        }
+        batchCount.increment();
+
+        for (int i = 0; i < count; i++) {
+            Runs runs = new Runs();
+            try {
+                for (int block = column.findBlock(fromRows[i]);
+                     block < column.getBlocks() && column.getBlockRowStart(block) < toRows[i]; block++) {
+                    long rowStart = column.getBlockRowStart(block);
+                    long from = Math.max(fromRows[i], rowStart);
+                    long to = Math.min(toRows[i], rowStart + column.getBlockCount(block));
+                    runs.add(column.getBlockFirstId(block) + from - rowStart, (int) (to - from));
+                }
+            } catch (RuntimeException e) {
+                error(batch.get(i), e.toString());
+                continue;
+            }
+            respond(batch.get(i), values[i], runs);
+        }
+    }
+
+    private void sumIds(Request request, MappedColumn column) {
+        long[] ids = request.ids.clone();
+        Arrays.sort(ids);
+        Runs runs = new Runs();
+        long value = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0 && ids[i] == ids[i - 1]) {
+                error(request, "Duplicate id " + ids[i]);
+                return;
+            }
+            long row = column.findRow(ids[i]);
+            if (row < 0) {
+                error(request, "Id " + ids[i] + " is not in column `" + request.column + "`");
+                return;
+            }
+            value = MathUtils.modAddReduced(value, column.getValue(row), column.getRollupModulo());
+            runs.add(ids[i], 1);
+        }
+        respond(request, value, runs);
+    }
+
+    private void respond(Request request, long value, Runs runs) {
+        ByteBuffer response = ByteBuffer.allocate(Integer.BYTES + Integer.BYTES + 1 + Long.BYTES + runs.byteSize());
+        response.putInt(response.capacity() - Integer.BYTES);
+        response.putInt(request.requestId).put(Protocol.OK).putLong(value);
+        runs.put(response);
+        response.flip();
+        request.connection.out.add(response);
+    }
+
+    /**
+     * Sends the values of the rows as one segment per block, each transferred from the file.
+     */
+    private void readRange(Request request, MappedColumn column) {
+        long valueBytes = (request.toRow - request.fromRow) * column.getWidth();
+        if (valueBytes > Protocol.MAX_FRAME_BYTES) {
+            error(request, "Cannot read more than " + Protocol.MAX_FRAME_BYTES + " bytes at once");
+            return;
+        }
+        int first = column.findBlock(request.fromRow);
+        int last = column.findBlock(request.toRow - 1);
+        int segments = last - first + 1;
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Integer.BYTES + 1 + Integer.BYTES
+                + segments * (Long.BYTES + Integer.BYTES));
+        header.putInt((int) (header.capacity() - Integer.BYTES + valueBytes));
+        header.putInt(request.requestId).put(Protocol.OK).putInt(segments);
+
+        List<Region> regions = new ArrayList<>();
+        for (int block = first; block <= last; block++) {
+            long rowStart = column.getBlockRowStart(block);
+            long from = Math.max(request.fromRow, rowStart);
+            long to = Math.min(request.toRow, rowStart + column.getBlockCount(block));
+            header.putLong(column.getBlockFirstId(block) + from - rowStart).putInt((int) (to - from));
+            regions.add(new Region(column, column.getBlockPosition(block) + (from - rowStart) * column.getWidth(),
+                    (to - from) * column.getWidth()));
+        }
+        header.flip();
+        request.connection.out.add(header);
+        request.connection.out.addAll(regions);
+    }
+
+    private void error(Request request, String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer response = ByteBuffer.allocate(Integer.BYTES + Integer.BYTES + 1 + Short.BYTES + bytes.length);
+        response.putInt(response.capacity() - Integer.BYTES);
+        response.putInt(request.requestId).put(Protocol.ERROR).putShort((short) bytes.length).put(bytes);
+        response.flip();
+        request.connection.out.add(response);
+    }
+
+    /**
+     * Sends as much of the queued responses as the socket takes without blocking.
+     */
+    private void write(Connection connection) throws IOException {
+        if (!connection.key.isValid())
+            return;
+        while (!connection.out.isEmpty()) {
+            Object head = connection.out.peek();
+            if (head instanceof ByteBuffer) {
+                ByteBuffer buffer = (ByteBuffer) head;
+                connection.channel.write(buffer);
+                if (buffer.hasRemaining())
+                    break;
+            } else {
+                Region region = (Region) head;
+                long sent = region.column.transferTo(region.position, region.count, connection.channel);
+                region.position += sent;
+                region.count -= sent;
+                if (region.count > 0)
+                    break;
+            }
+            connection.out.poll();
+        }
+
+        int ops = connection.out.size() > MAX_QUEUED_RESPONSES ? 0 : SelectionKey.OP_READ;
+        if (!connection.out.isEmpty())
+            ops |= SelectionKey.OP_WRITE;
+        connection.key.interestOps(ops);
+    }
+
+    private static void close(Connection connection) {
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // nothing left to do with the connection
+        }
+    }
+
+    /**
+     * Stops the event loop, waits for it to finish and closes the sockets and columns.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        Thread serving = thread;
+        if (serving != null && serving != Thread.currentThread()) {
+            try {
+                serving.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        serverChannel.close();
+        selector.close();
+        for (MappedColumn column : columns.values())
+            column.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: AggregationServer port name=path [name=path ...]");
+            System.exit(1);
+        }
+        AggregationServer server = new AggregationServer(Integer.parseInt(args[0]));
+        for (int i = 1; i < args.length; i++) {
+            String[] column = args[i].split("=", 2);
+            server.addColumn(column[0], column[1]);
+        }
+        System.out.println("Listening on port " + server.getPort() + " of the loopback address");
+        server.serve();
+    }
+}
@@ -0,0 +1,55 @@
+package edu.purdue.symmetria.server;
+
+/**
+ * <pre>
+ * Wire format of AggregationServer. All numbers are big endian and every message is a frame:
+ *
+ *   int   length        bytes of the frame after this field
+ *
+ * request:
+ *   byte  type
+ *   int   requestId     echoed in the response, so requests can be pipelined
+ *   short columnLength
+ *   columnLength bytes of the UTF-8 column name
+ *   SUM_RANGE, READ_RANGE:
+ *     long  fromRow     inclusive
+ *     long  toRow       exclusive
+ *   SUM_IDS:
+ *     int   count
+ *     count * long ids
+ *
+ * response:
+ *   int   requestId
+ *   byte  status
+ *   OK to SUM_RANGE and SUM_IDS, a SymAHE ciphertext whose ids are runs of consecutive ids:
+ *     long  value
+ *     int   runs
+ *     runs * (long firstId, int count)
+ *   OK to READ_RANGE, the encrypted values of the rows, one segment per block:
+ *     int   segments
+ *     segments * (long firstId, int count)
+ *     the count * width bytes of the values of every segment, in order
+ *   ERROR:
+ *     short messageLength
+ *     messageLength bytes of the UTF-8 message
+ *
+ * Responses to the requests of a connection may arrive in any order.
+ * </pre>
+ */
+public final class Protocol {
+
+    // request types
+    public static final byte SUM_RANGE = 1;
+    public static final byte SUM_IDS = 2;
+    public static final byte READ_RANGE = 3;
+
+    // response statuses
+    public static final byte OK = 0;
+    public static final byte ERROR = 1;
+
+    // frames larger than this close the connection
+    public static final int MAX_FRAME_BYTES = 16 << 20;
+
+    private Protocol() {
+    }
+}
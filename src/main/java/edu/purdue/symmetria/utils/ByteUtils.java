@@ -1,6 +1,7 @@
 package edu.purdue.symmetria.utils;
 
 import java.io.*;
+import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.util.Base64;
 
@@ -33,14 +34,71 @@ public class ByteUtils {
      * Converts a byte array to a long number. Uses the first 8 bytes.
      */
     public static long bytesToLong(byte[] b) {
+        return bytesToLong(b, 0);
+    }
+
+    /**
+     * Returns the long stored (big endian) in the 8 bytes of `b` starting at `offset`.
+     */
+    public static long bytesToLong(byte[] b, int offset) {
         long result = 0;
         for (int i = 0; i < Long.BYTES; i++) {
             result <<= Byte.SIZE;
-            result |= (b[i] & 0xFF);
+            result |= (b[offset + i] & 0xFF);
         }
         return result;
     }
 
+    /**
+     * Writes the decimal representation of the given number in `buf` as ASCII characters, i.e.,
+     * the same bytes as String.valueOf(l).getBytes(). Returns the number of bytes written.
+     */
+    public static int longToDecimalBytes(long l, byte[] buf) {
+        int length = 0;
+        // work with negative numbers so that Long.MIN_VALUE is handled too
+        if (l < 0)
+            buf[length++] = '-';
+        else
+            l = -l;
+
+        int digits = 1;
+        for (long t = l; t <= -10; t /= 10)
+            digits++;
+        length += digits;
+
+        for (int i = length - 1; i >= length - digits; i--) {
+            buf[i] = (byte) ('0' - (l % 10));
+            l /= 10;
+        }
+        return length;
+    }
+
+    /**
+     * Writes the magnitude of the given non-negative number in exactly `width` bytes (big endian).
+     */
+    public static void writeUnsigned(BigInteger n, ByteBuffer buf, int width) {
+        byte[] bytes = n.toByteArray();
+        int start = 0;
+        // skip the sign byte
+        while (bytes.length - start > width && bytes[start] == 0)
+            start++;
+        int length = bytes.length - start;
+        if (length > width)
+            throw new RuntimeException("Number does not fit in " + width + " bytes");
+        for (int i = length; i < width; i++)
+            buf.put((byte) 0);
+        buf.put(bytes, start, length);
+    }
+
+    /**
+     * Reads a non-negative number written with writeUnsigned().
+     */
+    public static BigInteger readUnsigned(ByteBuffer buf, int width) {
+        byte[] bytes = new byte[width];
+        buf.get(bytes);
+        return new BigInteger(1, bytes);
+    }
+
     /**
      * Serialize an object to a byte array
      */
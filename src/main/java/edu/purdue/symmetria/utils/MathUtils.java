@@ -63,6 +63,17 @@ public class MathUtils {
         return mod(r, modulo);
     }
 
+    /**
+     * Same as modAdd() but expects both numbers to already be in the range 0 to modulo - 1.
+     */
+    public static long modAddReduced(long a, long b, long modulo) {
+        long r = a + b;
+        // r is negative if the sum overflowed, in which case subtracting wraps around correctly.
+        if (r < 0 || r >= modulo)
+            r -= modulo;
+        return r;
+    }
+
     public static long modAddBI(long a, long b, long modulo) {
         return BigInteger.valueOf(a).add(BigInteger.valueOf(b)).mod(BigInteger.valueOf(modulo)).longValue();
     }
@@ -0,0 +1,56 @@
+package edu.purdue.symmetria.aggregate;
+
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class TestEncryptedSumTree {
+    private static final int ITERATIONS = 1000;
+    private static final int ROWS = 1000;
+
+    private static final SymAHE SCHEME = new SymAHE(SymCipher.CipherType.RANGE);
+
+    @Test
+    public void testUpdateSum() {
+        long[] ptxts = new long[ROWS];
+        SymCipher[] rows = new SymCipher[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            ptxts[i] = MathUtils.randLong(1_000_000);
+            rows[i] = SCHEME.encrypt(ptxts[i]);
+        }
+        EncryptedSumTree tree = new EncryptedSumTree(SCHEME, rows);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            int row = (int) MathUtils.randLongPos(ROWS);
+            ptxts[row] = MathUtils.randLong(1_000_000);
+            tree.update(row, SCHEME.encrypt(ptxts[row]));
+
+            int from = (int) MathUtils.randLongPos(ROWS);
+            int to = from + 1 + (int) MathUtils.randLongPos(ROWS - from);
+            long expected = 0;
+            for (int j = from; j < to; j++)
+                expected += ptxts[j];
+
+            SymCipher sum = tree.sum(from, to);
+            Assert.assertEquals("sum() failed for rows [" + from + ", " + to + ")", expected, SCHEME.decrypt(sum));
+            Assert.assertEquals(ptxts[row], SCHEME.decrypt(tree.get(row)));
+        }
+    }
+
+    @Test
+    public void testReturnedCiphersAreCopies() {
+        SymCipher[] rows = new SymCipher[10];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = SCHEME.encrypt(i);
+        EncryptedSumTree tree = new EncryptedSumTree(SCHEME, rows);
+
+        // modifying returned and given ciphers must not affect the tree
+        SCHEME.add(tree.sum(0, 10), SCHEME.encrypt(100));
+        SCHEME.multiply(rows[3], 7);
+        Assert.assertEquals(45, SCHEME.decrypt(tree.sum(0, 10)));
+        Assert.assertEquals(3 + 4 + 5, SCHEME.decrypt(tree.sum(3, 6)));
+    }
+}
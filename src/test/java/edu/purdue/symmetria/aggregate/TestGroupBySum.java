@@ -0,0 +1,83 @@
+package edu.purdue.symmetria.aggregate;
+
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.crypto.cipher.VectorSymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class TestGroupBySum {
+    private static final int ROWS = 5000;
+    private static final int GROUPS = 100;
+    private static final int COLUMNS = 3;
+
+    private static final SymAHE[] SCHEMES = new SymAHE[]{
+            new SymAHE(SymCipher.CipherType.ARRAY),
+            new SymAHE(SymCipher.CipherType.RANGE)
+    };
+
+    @Test
+    public void testSum() {
+        for (SymAHE scheme : SCHEMES) {
+            for (int threads : new int[]{1, 3}) {
+                long[] keys = new long[ROWS];
+                long[] values = new long[ROWS];
+                long[] ids = new long[ROWS];
+                Map<Long, Long> expected = new HashMap<>();
+                for (int i = 0; i < ROWS; i++) {
+                    keys[i] = MathUtils.randLong(GROUPS);
+                    long m = MathUtils.randLong(1_000_000);
+                    expected.merge(keys[i], m, Long::sum);
+
+                    SymCipher c = scheme.encrypt(m);
+                    values[i] = c.getValue();
+                    ids[i] = c.getIds()[0][0];
+                }
+
+                GroupBySum.Groups groups = new GroupBySum(scheme, threads).sum(keys, values, ids, ROWS);
+                Assert.assertEquals(expected.size(), groups.size());
+                for (int group = 0; group < groups.size(); group++) {
+                    long key = groups.getKey(group);
+                    Assert.assertEquals("sum() failed for key " + key + " and scheme: " + scheme,
+                            (long) expected.get(key), scheme.decrypt(groups.getSum(group)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSumVector() {
+        SymAHE scheme = SCHEMES[1];
+        long[] keys = new long[ROWS];
+        long[] values = new long[ROWS * COLUMNS];
+        long[] ids = new long[ROWS];
+        Map<Long, long[]> expected = new HashMap<>();
+        for (int i = 0; i < ROWS; i++) {
+            keys[i] = MathUtils.randLong(GROUPS);
+            long[] m = new long[COLUMNS];
+            for (int j = 0; j < COLUMNS; j++)
+                m[j] = MathUtils.randLong(1_000_000);
+            long[] sums = expected.computeIfAbsent(keys[i], k -> new long[COLUMNS]);
+            for (int j = 0; j < COLUMNS; j++)
+                sums[j] += m[j];
+
+            VectorSymCipher c = scheme.encrypt(m);
+            for (int j = 0; j < COLUMNS; j++)
+                values[i * COLUMNS + j] = c.getValue(j);
+            ids[i] = c.getIds()[0][0];
+        }
+
+        GroupBySum.Groups groups = new GroupBySum(scheme, 2).sumVector(keys, values, COLUMNS, ids, ROWS);
+        Assert.assertEquals(expected.size(), groups.size());
+        for (int group = 0; group < groups.size(); group++) {
+            long key = groups.getKey(group);
+            Assert.assertArrayEquals("sumVector() failed for key " + key,
+                    expected.get(key), scheme.decrypt(groups.getVectorSum(group)));
+        }
+    }
+}
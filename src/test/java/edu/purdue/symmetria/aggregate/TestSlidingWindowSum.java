@@ -0,0 +1,64 @@
+package edu.purdue.symmetria.aggregate;
+
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class TestSlidingWindowSum {
+    private static final int EVENTS = 5000;
+    private static final long PANE_MILLIS = 1000;
+    private static final int WINDOW_PANES = 10;
+
+    @Test
+    public void testSum() {
+        for (SymCipher.CipherType type : SymCipher.CipherType.values()) {
+            SymAHE scheme = new SymAHE(type);
+            SlidingWindowSum window = new SlidingWindowSum(scheme, PANE_MILLIS, WINDOW_PANES);
+
+            long[] times = new long[EVENTS];
+            long[] ptxts = new long[EVENTS];
+            long time = 0;
+            for (int i = 0; i < EVENTS; i++) {
+                time += MathUtils.randLongPos(100);
+                times[i] = time;
+                ptxts[i] = MathUtils.randLong(1_000_000);
+                window.add(time, scheme.encrypt(ptxts[i]));
+
+                if (i % 50 != 0)
+                    continue;
+                long now = time + MathUtils.randLongPos(2000);
+                time = now;
+                long oldest = (Math.floorDiv(now, PANE_MILLIS) - WINDOW_PANES + 1) * PANE_MILLIS;
+                long expected = 0;
+                long count = 0;
+                for (int j = 0; j <= i; j++) {
+                    if (times[j] >= oldest) {
+                        expected += ptxts[j];
+                        count++;
+                    }
+                }
+
+                SymCipher sum = window.sum(now);
+                Assert.assertEquals("count() failed for " + type, count, window.count(now));
+                if (count == 0) {
+                    Assert.assertNull(sum);
+                    continue;
+                }
+                Assert.assertEquals("sum() failed for " + type, expected, scheme.decrypt(sum));
+                // expired events must not be held by the sum
+                Assert.assertEquals("sum() holds expired ids for " + type, count, sum.getSize());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutOfOrder() {
+        SymAHE scheme = new SymAHE();
+        SlidingWindowSum window = new SlidingWindowSum(scheme, PANE_MILLIS, WINDOW_PANES);
+        window.add(5000, scheme.encrypt(1));
+        window.add(3000, scheme.encrypt(2));
+    }
+}
@@ -0,0 +1,98 @@
+package edu.purdue.symmetria.column;
+
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+public class TestColumnReader {
+    private static final int ITERATIONS = 100;
+    private static final int BLOCK_ROWS = 64;
+
+    private static final SymAHE SCHEME = new SymAHE();
+    private static final SymAHEEncoder ENCODER = new SymAHEEncoder(SCHEME);
+
+    /**
+     * Appends `count` random values to the given writer and returns them.
+     */
+    private static long[] write(ColumnWriter writer, int count) throws IOException {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++)
+            values[i] = MathUtils.randLong(1_000_000);
+        ByteBuffer out = ByteBuffer.allocate(count * ENCODER.getWidth());
+        long firstId = ENCODER.reserveIds(count);
+        ENCODER.encode(values, count, firstId, out);
+        out.flip();
+        writer.writeBlock(firstId, count, out);
+        return values;
+    }
+
+    private static void assertSums(String path, long[] values) throws IOException {
+        long[] prefix = new long[values.length + 1];
+        for (int i = 0; i < values.length; i++)
+            prefix[i + 1] = prefix[i] + values[i];
+
+        try (ColumnReader reader = new ColumnReader(path)) {
+            Assert.assertEquals(values.length, reader.getRows());
+            for (int i = 0; i < ITERATIONS; i++) {
+                int from = (int) MathUtils.randLongPos(values.length);
+                int to = from + 1 + (int) MathUtils.randLongPos(values.length - from);
+                SymCipher sum = reader.sum(from, to);
+                Assert.assertEquals("sum() failed for rows [" + from + ", " + to + ")",
+                        prefix[to] - prefix[from], SCHEME.decrypt(sum));
+            }
+            SymCipher all = reader.sum(0, values.length);
+            Assert.assertEquals(prefix[values.length], SCHEME.decrypt(all));
+        }
+    }
+
+    @Test
+    public void testSum() throws IOException {
+        File file = File.createTempFile("symmetria", ".col");
+        try {
+            long[] values;
+            try (ColumnWriter writer = new ColumnWriter(file.getPath(), ColumnFile.Scheme.SYM_AHE,
+                    ENCODER.getWidth(), BLOCK_ROWS, ENCODER.getRollupModulo())) {
+                values = write(writer, 1000);
+            }
+            try (ColumnReader reader = new ColumnReader(file.getPath())) {
+                Assert.assertEquals((1000 + BLOCK_ROWS - 1) / BLOCK_ROWS, reader.getBlocks());
+            }
+            assertSums(file.getPath(), values);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testAppend() throws IOException {
+        File file = File.createTempFile("symmetria", ".col");
+        try {
+            long[] first;
+            try (ColumnWriter writer = new ColumnWriter(file.getPath(), ColumnFile.Scheme.SYM_AHE,
+                    ENCODER.getWidth(), BLOCK_ROWS, ENCODER.getRollupModulo())) {
+                first = write(writer, 300);
+            }
+
+            // ids of the appended blocks are not consecutive to the existing ones
+            SCHEME.encrypt(0);
+            long[] second;
+            try (ColumnWriter writer = ColumnWriter.append(file.getPath())) {
+                second = write(writer, 500);
+            }
+
+            long[] values = new long[first.length + second.length];
+            System.arraycopy(first, 0, values, 0, first.length);
+            System.arraycopy(second, 0, values, first.length, second.length);
+            assertSums(file.getPath(), values);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package edu.purdue.symmetria.column;
+
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.cipher.RangeSymCipher;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+public class TestMappedColumn {
+    private static final int ROWS = 1000;
+    private static final int BLOCK_ROWS = 64;
+
+    private static final SymAHE SCHEME = new SymAHE();
+    private static final SymAHEEncoder ENCODER = new SymAHEEncoder(SCHEME);
+
+    @Test
+    public void testSumRanges() throws IOException {
+        File file = File.createTempFile("symmetria", ".col");
+        try {
+            long[] prefix = new long[ROWS + 1];
+            try (ColumnWriter writer = new ColumnWriter(file.getPath(), ColumnFile.Scheme.SYM_AHE,
+                    ENCODER.getWidth(), BLOCK_ROWS, ENCODER.getRollupModulo())) {
+                for (int start = 0; start < ROWS; start += BLOCK_ROWS) {
+                    int count = Math.min(BLOCK_ROWS, ROWS - start);
+                    long[] values = new long[count];
+                    for (int i = 0; i < count; i++) {
+                        values[i] = MathUtils.randLong(1_000_000);
+                        prefix[start + i + 1] = prefix[start + i] + values[i];
+                    }
+                    ByteBuffer out = ByteBuffer.allocate(count * ENCODER.getWidth());
+                    long firstId = ENCODER.reserveIds(count);
+                    ENCODER.encode(values, count, firstId, out);
+                    out.flip();
+                    writer.writeBlock(firstId, count, out);
+                }
+            }
+
+            // every pair of these rows is a range: ranges overlap, share ends, lie within a block
+            // and end in the same partial block as others
+            long[] points = {0, 1, 5, 30, 63, 64, 65, 100, 127, 128, 129, 500, 510, 511, 999, 1000};
+            int count = points.length * (points.length - 1) / 2;
+            long[] fromRows = new long[count + 1];
+            long[] toRows = new long[count + 1];
+            int index = 0;
+            for (int i = 0; i < points.length; i++)
+                for (int j = i + 1; j < points.length; j++) {
+                    fromRows[index] = points[i];
+                    toRows[index++] = points[j];
+                }
+            // the same range twice
+            fromRows[index] = 5;
+            toRows[index++] = 100;
+
+            try (MappedColumn column = new MappedColumn(file.getPath())) {
+                // shuffled so the ranges do not come in order of their ends
+                for (int i = index - 1; i > 0; i--) {
+                    int j = (int) MathUtils.randLongPos(i + 1);
+                    long from = fromRows[i];
+                    long to = toRows[i];
+                    fromRows[i] = fromRows[j];
+                    toRows[i] = toRows[j];
+                    fromRows[j] = from;
+                    toRows[j] = to;
+                }
+
+                long[] sums = new long[index];
+                column.sum(fromRows, toRows, index, sums);
+                for (int i = 0; i < index; i++) {
+                    String range = "[" + fromRows[i] + ", " + toRows[i] + ")";
+                    Assert.assertEquals("sum() differs from a single range sum for rows " + range,
+                            column.sum(fromRows[i], toRows[i]), sums[i]);
+                    Assert.assertEquals("sum() differs from the row values for rows " + range,
+                            sumRows(column, fromRows[i], toRows[i]), sums[i]);
+                    Assert.assertEquals("sum() failed for rows " + range,
+                            prefix[(int) toRows[i]] - prefix[(int) fromRows[i]],
+                            SCHEME.decrypt(toCipher(column, fromRows[i], toRows[i], sums[i])));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Returns the sum of the encrypted values of the rows, one row at a time.
+     */
+    private static long sumRows(MappedColumn column, long fromRow, long toRow) {
+        long sum = 0;
+        for (long row = fromRow; row < toRow; row++)
+            sum = MathUtils.modAddReduced(sum, column.getValue(row), column.getRollupModulo());
+        return sum;
+    }
+
+    /**
+     * Returns the cipher of the given sum of rows, whose ids are consecutive within every block.
+     */
+    private static SymCipher toCipher(MappedColumn column, long fromRow, long toRow, long value) {
+        SymCipher cipher = null;
+        for (int block = column.findBlock(fromRow);
+             block < column.getBlocks() && column.getBlockRowStart(block) < toRow; block++) {
+            long rowStart = column.getBlockRowStart(block);
+            long from = Math.max(fromRow, rowStart);
+            long to = Math.min(toRow, rowStart + column.getBlockCount(block));
+            long firstId = column.getBlockFirstId(block) + from - rowStart;
+            if (cipher == null)
+                cipher = new RangeSymCipher(value, firstId, (int) (to - from));
+            else
+                cipher.add(new RangeSymCipher(0, firstId, (int) (to - from)), SCHEME.modulo);
+        }
+        return cipher;
+    }
+}
@@ -5,7 +5,14 @@ import edu.purdue.symmetria.utils.MathUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 public class TestElGamal {
@@ -99,4 +106,103 @@ public class TestElGamal {
             Assert.assertEquals("modInverse() failed for SCHEME: " + SCHEME.toString(), ptxtRes.longValue(), decr);
         }
     }
+
+    @Test
+    public void testFixedBaseTables() {
+        ElGamal noTables = new ElGamal(CryptoScheme.DEFAULT_NEGDIVISOR, "/tmp/elgamal.pk", "/tmp/elgamal.sk", false);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            long m = MathUtils.randLong(1000);
+            Assert.assertEquals("encryption with fixed-base tables failed", m, noTables.decrypt(SCHEME.encrypt(m)));
+            Assert.assertEquals("encryption without fixed-base tables failed", m, SCHEME.decrypt(noTables.encrypt(m)));
+        }
+    }
+
+    @Test
+    public void testFixedBaseTableLoad() throws IOException {
+        BigInteger modulus = BigInteger.probablePrime(256, new Random());
+        BigInteger base = BigInteger.valueOf(3);
+        File file = File.createTempFile("symmetria", ".table");
+        file.delete();
+        try {
+            // built and saved, then reloaded as is
+            FixedBaseTable built = FixedBaseTable.load(file.getPath(), base, modulus, 4, 256);
+            Assert.assertTrue(file.exists());
+            FixedBaseTable loaded = FixedBaseTable.load(file.getPath(), base, modulus, 4, 256);
+            Assert.assertNotSame(built, loaded);
+            Assert.assertArrayEquals("reloaded table differs from the saved one", serialize(built), serialize(loaded));
+
+            // rebuilt for a different base or modulus
+            BigInteger otherBase = BigInteger.valueOf(5);
+            BigInteger otherModulus = BigInteger.probablePrime(256, new Random());
+            for (BigInteger[] params : new BigInteger[][]{{otherBase, modulus}, {base, otherModulus}}) {
+                FixedBaseTable rebuilt = FixedBaseTable.load(file.getPath(), params[0], params[1], 4, 256);
+                Assert.assertArrayEquals("mismatched table was not rebuilt",
+                        serialize(new FixedBaseTable(params[0], params[1], 4, 256)), serialize(rebuilt));
+                for (int i = 0; i < ITERATIONS; i++) {
+                    BigInteger e = new BigInteger(256, new Random());
+                    Assert.assertEquals(params[0].modPow(e, params[1]), rebuilt.pow(e));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static byte[] serialize(Object o) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testProduct() {
+        // large enough to split the product tree, with a few non-trivial factors so the product fits
+        ElGamalCipher[] c = new ElGamalCipher[3 * ProductTree.LEAF + 1];
+        ElGamalCipher one = SCHEME.encrypt(1);
+        long ptxtRes = 1;
+        ElGamalCipher ctxtRes = new ElGamalCipher(BigInteger.ONE, BigInteger.ONE);
+        for (int i = 0; i < c.length; i++) {
+            if (i % ProductTree.LEAF == 0) {
+                long m = MathUtils.randLong(1000);
+                c[i] = SCHEME.encrypt(m);
+                ptxtRes *= m;
+            } else {
+                c[i] = one;
+            }
+            ctxtRes = SCHEME.multiply(ctxtRes, c[i]);
+        }
+
+        ElGamalCipher product = SCHEME.product(c);
+        Assert.assertEquals("product() failed for scheme: " + SCHEME.toString(), ctxtRes.c1, product.c1);
+        Assert.assertEquals("product() failed for scheme: " + SCHEME.toString(), ctxtRes.c2, product.c2);
+        Assert.assertEquals("product() failed for scheme: " + SCHEME.toString(), ptxtRes, SCHEME.decrypt(product));
+    }
+
+    @Test
+    public void testEncryptDecryptAll() {
+        // more than one chunk of work
+        long[] ptxts = new long[150];
+        for (int i = 0; i < ptxts.length; i++)
+            ptxts[i] = MathUtils.randLong(1000);
+
+        ElGamalCipher[] ctxts = SCHEME.encryptAll(ptxts);
+        Assert.assertArrayEquals("encryptAll()/decryptAll() failed for scheme: " + SCHEME.toString(), ptxts,
+                SCHEME.decryptAll(ctxts));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            ElGamalCipher[] out = new ElGamalCipher[ptxts.length];
+            SCHEME.encryptAll(ptxts, out, executor);
+            long[] decr = new long[ptxts.length];
+            SCHEME.decryptAll(out, decr, executor);
+            Assert.assertArrayEquals("encryptAll()/decryptAll() failed for scheme: " + SCHEME.toString(), ptxts, decr);
+            for (int i = 0; i < ptxts.length; i++)
+                Assert.assertEquals("encryptAll() failed for scheme: " + SCHEME.toString(), ptxts[i], SCHEME.decrypt(out[i]));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
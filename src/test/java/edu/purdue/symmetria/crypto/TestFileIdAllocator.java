@@ -0,0 +1,120 @@
+package edu.purdue.symmetria.crypto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestFileIdAllocator {
+    private static final int ITERATIONS = 1000;
+    private static final int LEASE_SIZE = 16;
+    private static final int THREADS = 4;
+
+    @Test
+    public void testResume() throws IOException {
+        File file = File.createTempFile("symmetria", ".ids");
+        try {
+            long maxId = 0;
+            try (FileIdAllocator allocator = new FileIdAllocator(file.toPath(), LEASE_SIZE)) {
+                Assert.assertEquals(FileIdAllocator.FIRST_ID, allocator.next());
+                for (int i = 0; i < ITERATIONS; i++)
+                    maxId = Math.max(allocator.next(), maxId);
+                long firstId = allocator.reserve(100);
+                maxId = Math.max(firstId + 99, maxId);
+                Assert.assertEquals((ITERATIONS + 1 + LEASE_SIZE - 1) / LEASE_SIZE + 1, allocator.getLeases());
+            }
+
+            // a restart, or a crash after the last lease, continues after every id handed out
+            try (FileIdAllocator allocator = new FileIdAllocator(file.toPath(), LEASE_SIZE)) {
+                Assert.assertTrue("next() reused an id after a restart", allocator.next() > maxId);
+                Assert.assertTrue("reserve() reused an id after a restart", allocator.reserve(10) > maxId);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        File file = File.createTempFile("symmetria", ".ids");
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try (FileIdAllocator first = new FileIdAllocator(file.toPath(), LEASE_SIZE);
+             FileIdAllocator second = new FileIdAllocator(file.toPath(), LEASE_SIZE)) {
+            // threads share an allocator, and the two allocators share the file like two processes
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                FileIdAllocator allocator = t % 2 == 0 ? first : second;
+                futures.add(executor.submit(() -> {
+                    List<Long> ids = new ArrayList<>();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        if (i % 10 == 0) {
+                            long firstId = allocator.reserve(LEASE_SIZE + 1);
+                            for (int j = 0; j <= LEASE_SIZE; j++)
+                                ids.add(firstId + j);
+                        } else {
+                            ids.add(allocator.next());
+                        }
+                    }
+                    return ids;
+                }));
+            }
+
+            Set<Long> seen = new HashSet<>();
+            for (Future<List<Long>> future : futures)
+                for (long id : future.get())
+                    Assert.assertTrue("Id " + id + " was handed out twice", seen.add(id));
+        } finally {
+            executor.shutdownNow();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testInvalidFile() throws IOException {
+        File file = File.createTempFile("symmetria", ".ids");
+        try {
+            try (FileIdAllocator allocator = new FileIdAllocator(file.toPath(), LEASE_SIZE)) {
+                allocator.next();
+            }
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            bytes[5] ^= 1;
+            Files.write(file.toPath(), bytes);
+
+            try (FileIdAllocator allocator = new FileIdAllocator(file.toPath(), LEASE_SIZE)) {
+                allocator.next();
+                Assert.fail("next() must reject a corrupt id file");
+            } catch (RuntimeException e) {
+                // expected
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testScheme() throws IOException {
+        File file = File.createTempFile("symmetria", ".ids");
+        try (FileIdAllocator allocator = new FileIdAllocator(file.toPath(), LEASE_SIZE)) {
+            SymAHE scheme = new SymAHE();
+            scheme.setIdAllocator(allocator);
+            for (int i = 0; i < ITERATIONS; i++) {
+                long m = i * 31L;
+                Assert.assertEquals("encrypt()/decrypt() failed for scheme: " + scheme.toString(), m,
+                        scheme.decrypt(scheme.encrypt(m)));
+            }
+            long firstId = scheme.reserveIds(LEASE_SIZE);
+            Assert.assertTrue(firstId > ITERATIONS);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package edu.purdue.symmetria.crypto;
+
+import edu.purdue.symmetria.crypto.cipher.RangeSymCipher;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class TestIncrementalDecryptor {
+    private static final int ITERATIONS = 200;
+    private static final long RANGE = 1_000_000;
+
+    @Test
+    public void testRunningSum() {
+        for (SymCipher.CipherType type : SymCipher.CipherType.values()) {
+            SymAHE scheme = new SymAHE(type);
+            IncrementalDecryptor decryptor = new IncrementalDecryptor(scheme);
+
+            long ptxtRes = MathUtils.randLong(RANGE);
+            SymCipher res = scheme.encrypt(ptxtRes);
+            Assert.assertEquals(ptxtRes, decryptor.decrypt(res));
+
+            for (int i = 0; i < ITERATIONS; i++) {
+                int added = 1 + (int) MathUtils.randLongPos(10);
+                for (int j = 0; j < added; j++) {
+                    long m = MathUtils.randLong(RANGE);
+                    ptxtRes += m;
+                    scheme.add(res, scheme.encrypt(m));
+                }
+
+                Assert.assertEquals("decrypt() failed for " + type, ptxtRes, decryptor.decrypt(res));
+                // only the new ids are evaluated
+                Assert.assertEquals("decrypt() evaluated old ids for " + type, added, decryptor.getLastRandNums());
+            }
+
+            // changing the cardinality of every id
+            ptxtRes *= 3;
+            scheme.multiply(res, 3);
+            Assert.assertEquals("decrypt() failed after multiply() for " + type, ptxtRes, decryptor.decrypt(res));
+
+            // removing and adding back the same rows, so ids overlap and cancel out
+            SymCipher removed = scheme.encrypt(MathUtils.randLong(RANGE));
+            SymCipher changed = res.copy();
+            scheme.add(changed, removed.copy());
+            scheme.subtract(changed, removed.copy());
+            Assert.assertEquals("decrypt() failed after subtract() for " + type, ptxtRes, decryptor.decrypt(changed));
+
+            // a different aggregate
+            long m = MathUtils.randLong(RANGE);
+            Assert.assertEquals("decrypt() failed for a new aggregate for " + type, m, decryptor.decrypt(scheme.encrypt(m)));
+        }
+    }
+
+    @Test
+    public void testColumnSum() {
+        // a running sum of blocks of rows encrypted with consecutive ids
+        SymAHE scheme = new SymAHE(SymCipher.CipherType.RANGE);
+        IncrementalDecryptor decryptor = new IncrementalDecryptor(scheme);
+        SymCipher res = null;
+        long ptxtRes = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long[] ptxts = new long[100];
+            for (int j = 0; j < ptxts.length; j++) {
+                ptxts[j] = MathUtils.randLong(RANGE);
+                ptxtRes += ptxts[j];
+            }
+            long[] ctxts = new long[ptxts.length];
+            long firstId = scheme.encryptColumn(ptxts, ctxts);
+            long sum = 0;
+            for (long ctxt : ctxts)
+                sum = MathUtils.modAdd(sum, ctxt, scheme.modulo);
+            SymCipher block = new RangeSymCipher(sum, firstId, ctxts.length);
+            if (res == null)
+                res = block;
+            else
+                scheme.add(res, block);
+
+            Assert.assertEquals("decrypt() failed for a column sum", ptxtRes, decryptor.decrypt(res));
+            Assert.assertEquals("decrypt() evaluated old ids of a column sum", ptxts.length, decryptor.getLastRandNums());
+        }
+    }
+}
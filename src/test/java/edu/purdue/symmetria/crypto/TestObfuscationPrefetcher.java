@@ -0,0 +1,52 @@
+package edu.purdue.symmetria.crypto;
+
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class TestObfuscationPrefetcher {
+    private static final int ITERATIONS = 2000;
+
+    @Test
+    public void testSymAHE() throws InterruptedException {
+        SymAHE scheme = new SymAHE(SymCipher.CipherType.RANGE);
+        try (ObfuscationPrefetcher prefetcher = new ObfuscationPrefetcher(scheme, 64, 16)) {
+            scheme.setPrefetcher(prefetcher);
+            Thread.sleep(50);
+
+            long sum = 0;
+            SymCipher c = null;
+            for (int i = 0; i < ITERATIONS; i++) {
+                long m = MathUtils.randLong(1_000_000);
+                SymCipher mc = scheme.encrypt(m);
+                Assert.assertEquals("encrypt() failed with prefetcher", m, scheme.decrypt(mc));
+                sum += m;
+                c = c == null ? mc : scheme.add(c, mc);
+            }
+            Assert.assertEquals("add() failed with prefetcher", sum, scheme.decrypt(c));
+            Assert.assertEquals(ITERATIONS, c.getSize());
+        } finally {
+            scheme.setPrefetcher(null);
+        }
+    }
+
+    @Test
+    public void testSymMHE() throws InterruptedException {
+        SymMHE scheme = new SymMHE();
+        try (ObfuscationPrefetcher prefetcher = new ObfuscationPrefetcher(scheme, 64)) {
+            scheme.setPrefetcher(prefetcher);
+
+            for (int i = 0; i < ITERATIONS; i++) {
+                long m1 = MathUtils.randLong(scheme.modulo);
+                long m2 = MathUtils.randLong(scheme.modulo);
+                long ptxtRes = scheme.handleNegative(MathUtils.modMul(m1, m2, scheme.modulo));
+                SymCipher ctxtRes = scheme.multiply(scheme.encrypt(m1), scheme.encrypt(m2));
+                Assert.assertEquals("multiply() failed with prefetcher", ptxtRes, scheme.decrypt(ctxtRes));
+            }
+        } finally {
+            scheme.setPrefetcher(null);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package edu.purdue.symmetria.crypto;
+
+import edu.purdue.symmetria.utils.MathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+public class TestPackingCodec {
+    private static final int ITERATIONS = 10;
+    private static final int PLAINTEXT_BITS = 2048;
+
+    @Test
+    public void testPackUnpack() {
+        for (int[] layout : new int[][]{{7, 5}, {32, 24}, {48, 32}, {64, 40}, {64, 64}}) {
+            PackingCodec codec = new PackingCodec(PLAINTEXT_BITS, layout[0], layout[1]);
+            Assert.assertEquals("wrong number of slots for " + codec, (PLAINTEXT_BITS - 1) / layout[0], codec.getSlots());
+
+            long limit = layout[1] == Long.SIZE ? Long.MAX_VALUE : 1L << (layout[1] - 1);
+            for (int i = 0; i < ITERATIONS; i++) {
+                long[] values = new long[codec.getSlots()];
+                for (int j = 0; j < values.length; j++)
+                    values[j] = MathUtils.randLong(limit);
+                values[0] = -limit;
+                values[values.length - 1] = limit - 1;
+
+                BigInteger packed = codec.pack(values);
+                Assert.assertTrue("packed plaintext too long for " + codec, packed.bitLength() < PLAINTEXT_BITS);
+                Assert.assertArrayEquals("pack()/unpack() failed for " + codec, values,
+                        codec.unpack(packed, values.length, 1));
+            }
+        }
+    }
+
+    @Test
+    public void testSums() {
+        PackingCodec codec = new PackingCodec(PLAINTEXT_BITS, 32, 28);
+        Assert.assertEquals(16, codec.getMaxTerms());
+
+        // the largest and smallest values, added as often as the slots allow
+        long[] values = new long[codec.getSlots()];
+        for (int j = 0; j < values.length; j++)
+            values[j] = j % 2 == 0 ? (1L << 27) - 1 : -(1L << 27);
+        BigInteger packed = codec.pack(values);
+        BigInteger sum = BigInteger.ZERO;
+        for (int terms = 1; terms <= codec.getMaxTerms(); terms++) {
+            sum = sum.add(packed);
+            long[] sums = codec.unpack(sum, values.length, terms);
+            for (int j = 0; j < values.length; j++)
+                Assert.assertEquals("unpack() of a sum failed for " + codec, values[j] * terms, sums[j]);
+        }
+        Assert.assertEquals(0, codec.getRemainingTerms(codec.getMaxTerms()));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testOverflow() {
+        PackingCodec codec = new PackingCodec(PLAINTEXT_BITS, 32, 28);
+        codec.unpack(BigInteger.ZERO, 1, codec.getMaxTerms() + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValueTooLarge() {
+        new PackingCodec(PLAINTEXT_BITS, 32, 28).pack(new long[]{1L << 27});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnpackTooMany() {
+        PackingCodec codec = new PackingCodec(PLAINTEXT_BITS, 32, 28);
+        codec.unpack(BigInteger.ZERO, codec.getSlots() + 1, 1);
+    }
+}
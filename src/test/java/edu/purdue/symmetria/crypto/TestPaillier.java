@@ -1,10 +1,14 @@
 package edu.purdue.symmetria.crypto;
 
+import edu.purdue.symmetria.crypto.cipher.PackedCipher;
 import edu.purdue.symmetria.utils.MathUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 public class TestPaillier {
@@ -114,4 +118,164 @@ public class TestPaillier {
         }
     }
     */
+
+    @Test
+    public void testFastPaths() {
+        // keys generated with p, q and g = n + 1
+        String pk = "/tmp/symmetria-test-paillier.pk";
+        String sk = "/tmp/symmetria-test-paillier.sk";
+        Paillier fast = new Paillier(pk, sk, true);
+        Paillier slow = new Paillier(pk, sk, false);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            long m1 = MathUtils.randLong(1000);
+            long m2 = MathUtils.randLong(1000);
+
+            BigInteger c1 = fast.encrypt(m1);
+            BigInteger c2 = slow.encrypt(m2);
+            Assert.assertEquals("CRT decryption failed", m1, fast.decrypt(c1));
+            Assert.assertEquals("decryption failed", m1, slow.decrypt(c1));
+            Assert.assertEquals("CRT decryption failed", m2, fast.decrypt(c2));
+
+            BigInteger cRes = fast.addPlaintext(fast.add(c1, c2), m2);
+            Assert.assertEquals("addPlaintext() failed with g = n + 1", m1 + 2 * m2, fast.decrypt(cRes));
+            Assert.assertEquals("addPlaintext() failed with g = n + 1", m1 + 2 * m2, slow.decrypt(cRes));
+        }
+    }
+
+    @Test
+    public void testWeightedSum() {
+        for (int size : new int[]{1, 5, 200}) {
+            BigInteger[] c = new BigInteger[size];
+            long[] w = new long[size];
+            long ptxtRes = 0;
+            BigInteger ctxtRes = SCHEME.encrypt(0);
+            for (int i = 0; i < size; i++) {
+                long m = MathUtils.randLong(1000);
+                w[i] = MathUtils.randLong(2000);
+                c[i] = SCHEME.encrypt(m);
+                ptxtRes += w[i] * m;
+                ctxtRes = SCHEME.add(ctxtRes, SCHEME.multiply(c[i], w[i]));
+            }
+
+            Assert.assertEquals("weightedSum() failed for scheme: " + SCHEME.toString(), ptxtRes,
+                    SCHEME.decrypt(SCHEME.weightedSum(c, w, 1)));
+            Assert.assertEquals("parallel weightedSum() failed for scheme: " + SCHEME.toString(), ptxtRes,
+                    SCHEME.decrypt(SCHEME.weightedSum(c, w, 4)));
+            Assert.assertEquals("weightedSum() failed for scheme: " + SCHEME.toString(), ptxtRes,
+                    SCHEME.decrypt(ctxtRes));
+        }
+
+        // the result is deterministic, so extreme weights can be compared on the ciphertexts
+        BigInteger[] c = {SCHEME.encrypt(3), SCHEME.encrypt(5), SCHEME.encrypt(7), SCHEME.encrypt(11)};
+        long[] w = {Long.MIN_VALUE, Long.MAX_VALUE, -1, 0};
+        BigInteger expected = BigInteger.ONE;
+        for (int i = 0; i < c.length; i++)
+            expected = SCHEME.add(expected, SCHEME.multiply(c[i], w[i]));
+        Assert.assertEquals("weightedSum() failed for extreme weights", expected, SCHEME.weightedSum(c, w));
+    }
+
+    @Test
+    public void testSum() {
+        BigInteger[] distinct = new BigInteger[ITERATIONS];
+        long[] ptxts = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            ptxts[i] = MathUtils.randLong(1000);
+            distinct[i] = SCHEME.encrypt(ptxts[i]);
+        }
+
+        // large enough to split the product tree
+        for (int size : new int[]{0, 1, ITERATIONS, 3 * ProductTree.LEAF + 1}) {
+            BigInteger[] c = new BigInteger[size];
+            long ptxtRes = 0;
+            BigInteger ctxtRes = BigInteger.ONE;
+            for (int i = 0; i < size; i++) {
+                c[i] = distinct[i % ITERATIONS];
+                ptxtRes += ptxts[i % ITERATIONS];
+                ctxtRes = SCHEME.add(ctxtRes, c[i]);
+            }
+            BigInteger sum = SCHEME.sum(c);
+            Assert.assertEquals("sum() failed for scheme: " + SCHEME.toString(), ctxtRes, sum);
+            Assert.assertEquals("sum() failed for scheme: " + SCHEME.toString(), ptxtRes, SCHEME.decrypt(sum));
+        }
+    }
+
+    @Test
+    public void testPacked() {
+        int slots = SCHEME.getPackingCodec().getSlots();
+        long[] ptxtRes = new long[slots];
+        PackedCipher[] ctxts = new PackedCipher[ITERATIONS];
+        PackedCipher ctxtRes = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long[] m1 = new long[slots];
+            long[] m2 = new long[slots];
+            for (int j = 0; j < slots; j++) {
+                m1[j] = MathUtils.randLong(1_000_000);
+                m2[j] = MathUtils.randLong(1_000_000);
+                ptxtRes[j] += m1[j] + m2[j];
+            }
+            ctxts[i] = SCHEME.encryptPacked(m1);
+            Assert.assertArrayEquals("decryptPacked() failed for scheme: " + SCHEME.toString(), m1,
+                    SCHEME.decryptPacked(ctxts[i]));
+
+            PackedCipher c = SCHEME.addPlaintextPacked(ctxts[i], m2);
+            ctxtRes = ctxtRes == null ? c : SCHEME.addPacked(ctxtRes, c);
+        }
+        Assert.assertEquals(2 * ITERATIONS, ctxtRes.terms);
+        Assert.assertArrayEquals("addPacked() failed for scheme: " + SCHEME.toString(), ptxtRes,
+                SCHEME.decryptPacked(ctxtRes));
+
+        long[] all = SCHEME.decryptPacked(ctxts);
+        Assert.assertEquals(ITERATIONS * slots, all.length);
+        Assert.assertArrayEquals("bulk decryptPacked() failed for scheme: " + SCHEME.toString(),
+                SCHEME.decryptPacked(ctxts[ITERATIONS - 1]),
+                Arrays.copyOfRange(all, (ITERATIONS - 1) * slots, all.length));
+    }
+
+    @Test
+    public void testEncryptDecryptAll() {
+        // more than one chunk of work
+        long[] ptxts = new long[150];
+        for (int i = 0; i < ptxts.length; i++)
+            ptxts[i] = MathUtils.randLong(1000);
+
+        BigInteger[] ctxts = SCHEME.encryptAll(ptxts);
+        Assert.assertArrayEquals("encryptAll()/decryptAll() failed for scheme: " + SCHEME.toString(), ptxts,
+                SCHEME.decryptAll(ctxts));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            BigInteger[] out = new BigInteger[ptxts.length];
+            SCHEME.encryptAll(ptxts, out, executor);
+            long[] decr = new long[ptxts.length];
+            SCHEME.decryptAll(out, decr, executor);
+            Assert.assertArrayEquals("encryptAll()/decryptAll() failed for scheme: " + SCHEME.toString(), ptxts, decr);
+            for (int i = 0; i < ptxts.length; i++)
+                Assert.assertEquals("encryptAll() failed for scheme: " + SCHEME.toString(), ptxts[i], SCHEME.decrypt(out[i]));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // threads of the shared pool, reused by the second call
+        for (int call = 0; call < 2; call++) {
+            BigInteger[] out = new BigInteger[ptxts.length];
+            SCHEME.encryptAll(ptxts, out, 3);
+            long[] decr = new long[ptxts.length];
+            SCHEME.decryptAll(out, decr, 3);
+            Assert.assertArrayEquals("encryptAll()/decryptAll() failed for scheme: " + SCHEME.toString(), ptxts, decr);
+        }
+
+        try {
+            SCHEME.encryptAll(ptxts, new BigInteger[ptxts.length - 1], 3);
+            Assert.fail("encryptAll() must reject a short output array");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            SCHEME.decryptAll(ctxts, new long[ptxts.length - 1], 3);
+            Assert.fail("decryptAll() must reject a short output array");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
 }
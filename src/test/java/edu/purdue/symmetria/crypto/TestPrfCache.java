@@ -0,0 +1,71 @@
+package edu.purdue.symmetria.crypto;
+
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class TestPrfCache {
+    private static final int ITERATIONS = 100;
+
+    @Test
+    public void testDecrypt() {
+        SymAHE symAHE = new SymAHE();
+        // the schemes must use the same key to share a cache
+        SymMHE symMHE = new SymMHE("/tmp/symahe.sk");
+        PrfCache cache = new PrfCache(1 << 20);
+        symAHE.setPrfCache(cache);
+        symMHE.setPrfCache(cache);
+
+        long sum = 0;
+        SymCipher c = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long m = MathUtils.randLong(1_000_000);
+            sum += m;
+            c = c == null ? symAHE.encrypt(m) : symAHE.add(c, symAHE.encrypt(m));
+        }
+        // the first decryption misses, the second hits
+        Assert.assertEquals(sum, symAHE.decrypt(c));
+        Assert.assertEquals(sum, symAHE.decrypt(c));
+        Assert.assertEquals(ITERATIONS, cache.getHits());
+
+        // schemes with different moduli share the raw PRF outputs
+        long m = MathUtils.randLong(1_000_000);
+        SymCipher mc = symMHE.encrypt(m);
+        Assert.assertEquals(m, symMHE.decrypt(mc));
+        Assert.assertEquals(m, symMHE.decrypt(mc));
+
+        cache.clear();
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(sum, symAHE.decrypt(c));
+        Assert.assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testEviction() {
+        // a fake PRF on a cache of its own, so its outputs never reach a scheme
+        PrfCache cache = new PrfCache(64 * PrfCache.ENTRY_BYTES, 1);
+        Assert.assertEquals(64, cache.getCapacity());
+        for (long id = 1; id <= 1000; id++)
+            Assert.assertEquals(id * 31, cache.getOrCompute(id, i -> i * 31));
+        Assert.assertEquals(1000, cache.getMisses());
+        Assert.assertTrue(cache.getEvictions() >= 1000 - 64);
+
+        // whatever was kept or evicted, every id still maps to its own output
+        for (long id = 1; id <= 1000; id++)
+            Assert.assertEquals(id * 31, cache.getOrCompute(id, i -> i * 31));
+        Assert.assertTrue(cache.getHits() <= cache.getCapacity());
+        Assert.assertEquals(2000, cache.getHits() + cache.getMisses());
+
+        // a fresh cache fed by the real PRF, with more ids than it holds
+        SymAHE scheme = new SymAHE();
+        PrfCache prfCache = new PrfCache(64 * PrfCache.ENTRY_BYTES, 1);
+        scheme.setPrfCache(prfCache);
+        for (int pass = 0; pass < 2; pass++)
+            for (long id = 5000; id < 5100; id++)
+                Assert.assertEquals("Cached output differs from the PRF for id " + id,
+                        scheme.getRandNum(id, scheme.modulo), scheme.getCachedRandNum(id, scheme.modulo));
+        Assert.assertTrue(prfCache.getEvictions() > 0);
+    }
+}
@@ -0,0 +1,62 @@
+package edu.purdue.symmetria.crypto;
+
+import edu.purdue.symmetria.utils.MathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigInteger;
+
+
+public class TestRandomnessPool {
+    private static final int ITERATIONS = 10;
+    private static final String POOL_PATH = "/tmp/symmetria-test.pool";
+
+    @Test
+    public void testPaillier() throws InterruptedException {
+        Paillier scheme = new Paillier();
+        try (RandomnessPool pool = new RandomnessPool(scheme, ITERATIONS, 1)) {
+            scheme.setRandomnessPool(pool);
+            while (pool.size() < ITERATIONS)
+                Thread.sleep(10);
+
+            for (int i = 0; i < ITERATIONS; i++) {
+                long m1 = MathUtils.randLong(1000);
+                long m2 = MathUtils.randLong(1000);
+                BigInteger c = scheme.add(scheme.encrypt(m1), scheme.encrypt(m2));
+                Assert.assertEquals("add() failed with randomness pool", m1 + m2, scheme.decrypt(c));
+            }
+            Assert.assertEquals(2 * ITERATIONS, pool.getConsumed() + pool.getMisses());
+            Assert.assertTrue(pool.getConsumed() >= ITERATIONS);
+        } finally {
+            scheme.setRandomnessPool(null);
+        }
+    }
+
+    @Test
+    public void testElGamalPersist() throws InterruptedException {
+        new File(POOL_PATH).delete();
+        ElGamal scheme = new ElGamal();
+        try (RandomnessPool pool = new RandomnessPool(scheme, ITERATIONS, 1, POOL_PATH)) {
+            while (pool.size() < ITERATIONS)
+                Thread.sleep(10);
+        }
+        Assert.assertTrue(new File(POOL_PATH).exists());
+
+        // the saved factors are loaded without workers and the file is deleted
+        try (RandomnessPool pool = new RandomnessPool(scheme, ITERATIONS, 0, POOL_PATH)) {
+            Assert.assertFalse(new File(POOL_PATH).exists());
+            Assert.assertEquals(ITERATIONS, pool.size());
+            scheme.setRandomnessPool(pool);
+            for (int i = 0; i < ITERATIONS; i++) {
+                long m = MathUtils.randLong(1000);
+                Assert.assertEquals("encrypt() failed with saved randomness pool", m, scheme.decrypt(scheme.encrypt(m)));
+            }
+            Assert.assertEquals(ITERATIONS, pool.getConsumed());
+            Assert.assertEquals(0, pool.size());
+        } finally {
+            scheme.setRandomnessPool(null);
+            new File(POOL_PATH).delete();
+        }
+    }
+}
@@ -1,16 +1,21 @@
 package edu.purdue.symmetria.crypto;
 
 import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.crypto.cipher.VectorSymCipher;
 import edu.purdue.symmetria.utils.MathUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 public class TestSymAHE {
     private static final int ITERATIONS = 1000;
     private static final long RANGE = Long.MAX_VALUE;
 
     private static final SymAHE SCHEME = new SymAHE();
+    private static final SymAHE RANGE_SCHEME = new SymAHE(SymCipher.CipherType.RANGE);
 
     @Test
     public void testEncDecr() {
@@ -186,4 +191,294 @@ public class TestSymAHE {
                     + SCHEME.toString(), ptxtRes, decr);
         }
     }
+
+    @Test
+    public void testRangeMerge() {
+        // combine ciphers in random order so that ids are merged out of order
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            int size = 2 + (int) MathUtils.randLongPos(20);
+            SymCipher[] ciphers = new SymCipher[size];
+            long[] ptxts = new long[size];
+            for (int j = 0; j < size; j++) {
+                ptxts[j] = MathUtils.randLong(1_000_000);
+                ciphers[j] = RANGE_SCHEME.encrypt(ptxts[j]);
+            }
+
+            while (size > 1) {
+                int a = (int) MathUtils.randLongPos(size);
+                int b = (int) MathUtils.randLongPos(size - 1);
+                if (b >= a)
+                    b++;
+                long m = MathUtils.randLong(6);
+                int op = (int) (Math.random() * 3);
+                if (op == 0) {
+                    ciphers[a] = RANGE_SCHEME.add(ciphers[a], ciphers[b]);
+                    ptxts[a] += ptxts[b];
+                } else if (op == 1) {
+                    ciphers[a] = RANGE_SCHEME.subtract(ciphers[a], ciphers[b]);
+                    ptxts[a] -= ptxts[b];
+                } else {
+                    ciphers[a] = RANGE_SCHEME.add(RANGE_SCHEME.multiply(ciphers[a], m), ciphers[b]);
+                    ptxts[a] = ptxts[a] * m + ptxts[b];
+                }
+
+                // remove b by moving the last cipher in its place
+                int last = size - 1;
+                ciphers[b] = ciphers[last];
+                ptxts[b] = ptxts[last];
+                if (a == last)
+                    a = b;
+                size--;
+
+                Assert.assertEquals("Range merge failed for scheme: " + RANGE_SCHEME.toString(),
+                        ptxts[a], RANGE_SCHEME.decrypt(ciphers[a]));
+            }
+        }
+    }
+
+    private static long[] randVector(int columns) {
+        long[] m = new long[columns];
+        for (int i = 0; i < columns; i++)
+            m[i] = MathUtils.randLong(RANGE);
+        return m;
+    }
+
+    @Test
+    public void testVector() {
+        int columns = 15;
+        long modulo = SCHEME.modulo;
+        for (SymAHE scheme : new SymAHE[]{SCHEME, RANGE_SCHEME}) {
+            long[] ptxtRes = randVector(columns);
+            VectorSymCipher res = scheme.encrypt(ptxtRes);
+            Assert.assertArrayEquals("Vector encryption/decryption failed for scheme: " + scheme,
+                    ptxtRes, scheme.decrypt(res));
+
+            for (int i = 0; i < ITERATIONS / 10; i++) {
+                long[] m = randVector(columns);
+                long k = MathUtils.randLong(RANGE);
+                int op = (int) (Math.random() * 4);
+                for (int j = 0; j < columns; j++) {
+                    if (op == 0 || op == 1)
+                        ptxtRes[j] = MathUtils.modAdd(ptxtRes[j], m[j], modulo);
+                    else if (op == 2)
+                        ptxtRes[j] = MathUtils.modSubtract(ptxtRes[j], m[j], modulo);
+                    else
+                        ptxtRes[j] = MathUtils.modMul(ptxtRes[j], k, modulo);
+                    ptxtRes[j] = scheme.handleNegative(ptxtRes[j]);
+                }
+
+                if (op == 0)
+                    res = scheme.add(res, scheme.encrypt(m));
+                else if (op == 1)
+                    res = scheme.addPlaintext(res, m);
+                else if (op == 2)
+                    res = scheme.subtract(res, scheme.encrypt(m));
+                else
+                    res = scheme.multiply(res, k);
+
+                Assert.assertArrayEquals("Vector op " + op + " failed for scheme: " + scheme,
+                        ptxtRes, scheme.decrypt(res));
+            }
+        }
+    }
+
+    @Test
+    public void testDecryptAll() {
+        SymCipher[] rows = new SymCipher[200];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = SCHEME.encrypt(MathUtils.randLong(RANGE));
+
+        // overlapping sums of random rows
+        List<SymCipher> ciphers = new ArrayList<>();
+        long[] expected = new long[50];
+        for (int i = 0; i < expected.length; i++) {
+            int from = (int) MathUtils.randLongPos(rows.length);
+            int to = from + 1 + (int) MathUtils.randLongPos(rows.length - from);
+            SymCipher c = rows[from].copy();
+            for (int j = from + 1; j < to; j++)
+                SCHEME.add(c, rows[j]);
+            ciphers.add(c);
+            expected[i] = SCHEME.decrypt(c);
+        }
+
+        for (int threads : new int[]{1, 2})
+            Assert.assertArrayEquals("decryptAll() failed for SCHEME: " + SCHEME,
+                    expected, SCHEME.decryptAll(ciphers, threads));
+    }
+
+    @Test
+    public void testGetRandNums() {
+        // ids whose decimal digits are shorter than, as long as and longer than an AES block
+        for (long firstId : new long[]{0, 999_999_999_999_990L, 9_999_999_999_999_990L, Long.MAX_VALUE - 300}) {
+            long[] randNums = new long[300];
+            SCHEME.getRandNums(firstId, randNums.length, SCHEME.modulo, randNums);
+            for (int i = 0; i < randNums.length; i++)
+                Assert.assertEquals("getRandNums() differs from getRandNum() for id " + (firstId + i),
+                        SCHEME.getRandNum(firstId + i, SCHEME.modulo), randNums[i]);
+        }
+    }
+
+    @Test
+    public void testColumn() {
+        // more than one block of random numbers
+        long[] ptxts = new long[10_000];
+        for (int i = 0; i < ptxts.length; i++)
+            ptxts[i] = MathUtils.randLong(RANGE);
+
+        long[] ctxts = new long[ptxts.length];
+        long firstId = SCHEME.encryptColumn(ptxts, ctxts);
+        long[] decr = new long[ptxts.length];
+        SCHEME.decryptColumn(ctxts, firstId, decr);
+        Assert.assertArrayEquals("encryptColumn()/decryptColumn() failed for scheme: " + SCHEME.toString(), ptxts, decr);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            SymCipher c = SymPHE.generateCipher(SymCipher.CipherType.ARRAY, ctxts[i], firstId + i);
+            Assert.assertEquals("encryptColumn() failed for scheme: " + SCHEME.toString(), ptxts[i], SCHEME.decrypt(c));
+        }
+        long[] single = new long[1];
+        SymCipher c = SCHEME.encrypt(ptxts[0]);
+        SCHEME.decryptColumn(new long[]{c.getValue()}, c.getIds()[0][0], single);
+        Assert.assertEquals("decryptColumn() failed for scheme: " + SCHEME.toString(), ptxts[0], single[0]);
+    }
+
+    @Test
+    public void testByteSize() {
+        for (SymAHE scheme : new SymAHE[]{SCHEME, RANGE_SCHEME}) {
+            SymCipher sum = scheme.encrypt(1);
+            int size = sum.byteSize();
+            Assert.assertTrue("byteSize() must be positive", size > 0);
+            // an id far from the others cannot be compacted
+            scheme.reserveIds(1_000);
+            scheme.add(sum, scheme.encrypt(2));
+            Assert.assertTrue("byteSize() must grow with the ids", sum.byteSize() > size);
+        }
+    }
+
+    @Test
+    public void testNodeIds() {
+        int nodes = 4;
+        int rows = 500;
+        for (SymCipher.CipherType type : SymCipher.CipherType.values()) {
+            SymAHE scheme = new SymAHE(type);
+            SymCipher[][] ciphers = new SymCipher[nodes][rows];
+            long expected = 0;
+            for (int node = 0; node < nodes; node++) {
+                NodeIdAllocator allocator = new NodeIdAllocator(node, new MemoryIdAllocator(1));
+                scheme.setIdAllocator(allocator);
+                for (int i = 0; i < rows; i++) {
+                    long m = MathUtils.randLong(1_000_000);
+                    expected += m;
+                    ciphers[node][i] = scheme.encrypt(m);
+                    long id = ciphers[node][i].getIds()[0][0];
+                    Assert.assertEquals(node, allocator.getNode(id));
+                    Assert.assertEquals(i + 1, allocator.getLocalId(id));
+                }
+            }
+
+            // per-node sums, combined in both orders so that segments are appended and prepended
+            SymCipher[] nodeSums = new SymCipher[nodes];
+            for (int node = 0; node < nodes; node++) {
+                nodeSums[node] = ciphers[node][0].copy();
+                for (int i = 1; i < rows; i++)
+                    scheme.add(nodeSums[node], ciphers[node][i]);
+            }
+            SymCipher forward = nodeSums[0].copy();
+            SymCipher backward = nodeSums[nodes - 1].copy();
+            for (int node = 1; node < nodes; node++) {
+                scheme.add(forward, nodeSums[node]);
+                scheme.add(backward, nodeSums[nodes - 1 - node]);
+            }
+            // rows of all nodes interleaved
+            SymCipher interleaved = ciphers[0][0].copy();
+            for (int i = 0; i < rows; i++)
+                for (int node = 0; node < nodes; node++)
+                    if (i > 0 || node > 0)
+                        scheme.add(interleaved, ciphers[node][i]);
+
+            for (SymCipher sum : new SymCipher[]{forward, backward, interleaved}) {
+                Assert.assertEquals("Node ids failed for scheme: " + scheme.toString(), nodes * rows, sum.getSize());
+                Assert.assertEquals("Node ids failed for scheme: " + scheme.toString(), expected, scheme.decrypt(sum));
+            }
+            Assert.assertEquals(forward.byteSize(), backward.byteSize());
+            Assert.assertEquals(forward.byteSize(), interleaved.byteSize());
+        }
+    }
+
+    @Test
+    public void testHighNodeIds() {
+        // the ids of the last node must stay short enough for the PRF to tell them apart
+        int node = (1 << NodeIdAllocator.DEFAULT_NODE_BITS) - 1;
+        NodeIdAllocator allocator = new NodeIdAllocator(node, new MemoryIdAllocator(1));
+        Assert.assertTrue(allocator.getMaxId() <= SymPHE.MAX_ID);
+
+        SymAHE scheme = new SymAHE();
+        scheme.setIdAllocator(allocator);
+        long id = scheme.reserveIds(10);
+        Assert.assertEquals(node, allocator.getNode(id));
+        long pad = scheme.getRandNum(id, scheme.modulo);
+        for (int i = 1; i < 10; i++)
+            Assert.assertNotEquals("Same pad for ids " + id + " and " + (id + i),
+                    pad, scheme.getRandNum(id + i, scheme.modulo));
+
+        long[] ptxts = {5, 12};
+        long[] ctxts = new long[ptxts.length];
+        long firstId = scheme.encryptColumn(ptxts, ctxts);
+        Assert.assertNotEquals(ptxts[0] - ptxts[1], ctxts[0] - ctxts[1]);
+        long[] decr = new long[ptxts.length];
+        scheme.decryptColumn(ctxts, firstId, decr);
+        Assert.assertArrayEquals(ptxts, decr);
+
+        try {
+            scheme.setIdAllocator(new NodeIdAllocator(node, new MemoryIdAllocator(1)) {
+                @Override
+                public long getMaxId() {
+                    return SymPHE.MAX_ID + 1;
+                }
+            });
+            Assert.fail("setIdAllocator() must reject ids above MAX_ID");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPartition() {
+        int batches = 50;
+        int batchRows = 100;
+        SymAHE scheme = new SymAHE(SymCipher.CipherType.RANGE);
+        Partition first = new Partition(scheme, 1_000);
+        Partition second = new Partition(scheme, 1_000);
+
+        // batches of two tables encrypted in turns, with and without partitions
+        SymCipher sum = null;
+        SymCipher unpartitioned = null;
+        long expected = 0;
+        for (int b = 0; b < batches; b++) {
+            long[] values = new long[batchRows];
+            for (int i = 0; i < batchRows; i++) {
+                values[i] = MathUtils.randLong(1_000_000);
+                expected += values[i];
+            }
+            SymCipher[] ciphers = scheme.encrypt(values, first);
+            scheme.encrypt(values, second);
+            for (SymCipher c : ciphers)
+                sum = sum == null ? c : scheme.add(sum, c);
+
+            long[] out = new long[batchRows];
+            long firstId = scheme.encryptColumn(values, out);
+            scheme.encryptColumn(values, new long[batchRows]);
+            for (int i = 0; i < batchRows; i++) {
+                SymCipher c = SymPHE.generateCipher(SymCipher.CipherType.RANGE, out[i], firstId + i);
+                unpartitioned = unpartitioned == null ? c : scheme.add(unpartitioned, c);
+            }
+        }
+        Assert.assertEquals("encrypt(long[], Partition) failed for scheme: " + scheme.toString(), expected, scheme.decrypt(sum));
+        Assert.assertEquals(expected, scheme.decrypt(unpartitioned));
+        Assert.assertEquals(batches * batchRows, sum.getSize());
+        Assert.assertEquals(batches * batchRows / 1_000, first.getSegments());
+
+        // one range per segment instead of one per batch
+        Assert.assertTrue("Partitioned ids do not compress: " + sum.byteSize() + " >= " + unpartitioned.byteSize(),
+                sum.byteSize() * 5 < unpartitioned.byteSize());
+    }
 }
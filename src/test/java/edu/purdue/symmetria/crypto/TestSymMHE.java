@@ -5,6 +5,9 @@ import edu.purdue.symmetria.utils.MathUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 public class TestSymMHE {
     private static final int ITERATIONS = 1000;
@@ -146,4 +149,28 @@ public class TestSymMHE {
                     + SCHEME.toString(), SCHEME.handleNegative(ptxtRes), SCHEME.decrypt(res));
         }
     }
+
+    @Test
+    public void testDecryptAll() {
+        SymCipher[] rows = new SymCipher[200];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = SCHEME.encrypt(MathUtils.randLong(RANGE));
+
+        // overlapping products of random rows
+        List<SymCipher> ciphers = new ArrayList<>();
+        long[] expected = new long[50];
+        for (int i = 0; i < expected.length; i++) {
+            int from = (int) MathUtils.randLongPos(rows.length);
+            int to = from + 1 + (int) MathUtils.randLongPos(rows.length - from);
+            SymCipher c = rows[from].copy();
+            for (int j = from + 1; j < to; j++)
+                SCHEME.multiply(c, rows[j]);
+            ciphers.add(c);
+            expected[i] = SCHEME.decrypt(c);
+        }
+
+        for (int threads : new int[]{1, 2})
+            Assert.assertArrayEquals("decryptAll() failed for SCHEME: " + SCHEME,
+                    expected, SCHEME.decryptAll(ciphers, threads));
+    }
 }
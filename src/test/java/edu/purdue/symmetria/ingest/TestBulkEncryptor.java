@@ -0,0 +1,130 @@
+package edu.purdue.symmetria.ingest;
+
+import edu.purdue.symmetria.column.ColumnFile;
+import edu.purdue.symmetria.column.ColumnReader;
+import edu.purdue.symmetria.column.SymAHEEncoder;
+import edu.purdue.symmetria.column.SymMHEEncoder;
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.SymMHE;
+import edu.purdue.symmetria.crypto.cipher.ArraySymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+
+
+public class TestBulkEncryptor {
+    private static final int ROWS = 10_000;
+
+    private static final SymAHE SAHE = new SymAHE();
+    private static final SymMHE SMHE = new SymMHE();
+
+    private static long[] writeCsv(File file) throws IOException {
+        long[] values = new long[ROWS];
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("name,value");
+            for (int i = 0; i < ROWS; i++) {
+                values[i] = MathUtils.randLong(1_000_000);
+                out.println("row" + i + "," + values[i]);
+            }
+        }
+        return values;
+    }
+
+    @Test
+    public void testSymAHE() throws IOException {
+        File input = File.createTempFile("symmetria", ".csv");
+        File output = File.createTempFile("symmetria", ".col");
+        try {
+            long[] values = writeCsv(input);
+            BulkEncryptor encryptor = new BulkEncryptor(new SymAHEEncoder(SAHE), 1000, 4, 3);
+            try (CsvValueSource source = new CsvValueSource(input.getPath(), 1, true)) {
+                BulkEncryptor.Stats stats = encryptor.encrypt(source, output.getPath());
+                Assert.assertEquals(ROWS, stats.rows);
+            }
+
+            int row = 0;
+            try (ColumnReader reader = new ColumnReader(output.getPath())) {
+                Assert.assertEquals(ColumnFile.Scheme.SYM_AHE, reader.getScheme());
+                ByteBuffer block;
+                while ((block = reader.nextBlock()) != null) {
+                    for (int i = 0; i < reader.getCount(); i++) {
+                        ArraySymCipher c = new ArraySymCipher(block.getLong(), reader.getFirstId() + i);
+                        Assert.assertEquals("Bulk encryption failed for scheme: " + SAHE, values[row++], SAHE.decrypt(c));
+                    }
+                }
+            }
+            Assert.assertEquals(ROWS, row);
+        } finally {
+            input.delete();
+            output.delete();
+        }
+    }
+
+    @Test
+    public void testSymMHE() throws IOException {
+        File input = File.createTempFile("symmetria", ".csv");
+        File output = File.createTempFile("symmetria", ".col");
+        try {
+            long[] values = writeCsv(input);
+            BulkEncryptor encryptor = new BulkEncryptor(new SymMHEEncoder(SMHE), 512, 2);
+            try (CsvValueSource source = new CsvValueSource(input.getPath(), 1, true)) {
+                encryptor.encrypt(source, output.getPath());
+            }
+
+            int row = 0;
+            try (ColumnReader reader = new ColumnReader(output.getPath())) {
+                ByteBuffer block;
+                while ((block = reader.nextBlock()) != null) {
+                    for (int i = 0; i < reader.getCount(); i++) {
+                        ArraySymCipher c = new ArraySymCipher(block.getLong(), reader.getFirstId() + i);
+                        long expected = SMHE.handleNegative(MathUtils.mod(values[row++], SMHE.modulo));
+                        Assert.assertEquals("Bulk encryption failed for scheme: " + SMHE, expected, SMHE.decrypt(c));
+                    }
+                }
+            }
+            Assert.assertEquals(ROWS, row);
+        } finally {
+            input.delete();
+            output.delete();
+        }
+    }
+    @Test
+    public void testInvalidInput() throws IOException {
+        File input = File.createTempFile("symmetria", ".csv");
+        try {
+            // a header that is not asked for, a missing column and a field that is not a number
+            for (String line : new String[]{"name,value", "row1", "row1,x"}) {
+                try (PrintWriter out = new PrintWriter(input)) {
+                    out.println("row0,1");
+                    out.println(line);
+                    out.println("row2,3");
+                }
+                try (CsvValueSource source = new CsvValueSource(input.getPath(), 1)) {
+                    source.read(new long[ROWS]);
+                    Assert.fail("CsvValueSource must reject line `" + line + "`");
+                } catch (IOException e) {
+                    Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2 "));
+                }
+            }
+
+            // a trailing partial value
+            try (FileOutputStream out = new FileOutputStream(input)) {
+                out.write(new byte[2 * Long.BYTES + 3]);
+            }
+            try (BinaryValueSource source = new BinaryValueSource(input.getPath())) {
+                source.read(new long[ROWS]);
+                Assert.fail("BinaryValueSource must reject a partial value");
+            } catch (IOException e) {
+                // expected
+            }
+        } finally {
+            input.delete();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package edu.purdue.symmetria.metrics;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestMetrics {
+
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram("test");
+        for (long v = 1; v <= 1000; v++)
+            histogram.record(v);
+        histogram.record(0);
+        histogram.record(-5);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(1002, snapshot.getCount());
+        Assert.assertEquals(500500, snapshot.getSum());
+        Assert.assertEquals(2, snapshot.getBucket(0));
+        // 512 to 1000
+        Assert.assertEquals(489, snapshot.getBucket(10));
+        // the median 500 lies in the bucket of 256 to 511
+        Assert.assertEquals(511, snapshot.getPercentile(50));
+        Assert.assertEquals(1023, snapshot.getPercentile(100));
+        Assert.assertEquals(0, new Histogram("empty").snapshot().getPercentile(99));
+        Assert.assertEquals(Long.MAX_VALUE, Histogram.Snapshot.upperBound(63));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        Counter counter = new Counter("test");
+        Histogram histogram = new Histogram("test");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    counter.increment();
+                    histogram.record(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        Assert.assertEquals(40_000, counter.get());
+        Assert.assertEquals(40_000, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void testSnapshot() {
+        Metrics.reset();
+        Metrics.PRF_CALLS.add(3);
+        Metrics.MODPOW_NANOS.record(100);
+
+        Metrics.Snapshot snapshot = Metrics.snapshot();
+        Assert.assertEquals(3, snapshot.get(Metrics.PRF_CALLS));
+        Assert.assertEquals(1, snapshot.get(Metrics.MODPOW_NANOS).getCount());
+        Assert.assertTrue(snapshot.toString().contains("symmetria_prf_calls 3\n"));
+        Assert.assertTrue(snapshot.toString().contains("symmetria_modpow_nanos_count 1\n"));
+        Metrics.reset();
+    }
+
+    @Test
+    public void testJfrEvents() throws Exception {
+        Assert.assertTrue(Metrics.registerJfrEvents());
+        Metrics.reset();
+        Metrics.PRF_CALLS.add(7);
+        Metrics.MODPOW_NANOS.record(100);
+
+        Path path = Files.createTempFile("symmetria", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("symmetria.Counter").withPeriod(Duration.ofMillis(50));
+            recording.enable("symmetria.Histogram").withPeriod(Duration.ofMillis(50));
+            recording.start();
+            Thread.sleep(500);
+            recording.stop();
+            recording.dump(path);
+
+            boolean counter = false;
+            boolean histogram = false;
+            for (RecordedEvent event : RecordingFile.readAllEvents(path)) {
+                String name = event.getString("name");
+                if (event.getEventType().getName().equals("symmetria.Counter") && name.equals("prf_calls"))
+                    counter |= event.getLong("value") == 7;
+                if (event.getEventType().getName().equals("symmetria.Histogram") && name.equals("modpow_nanos"))
+                    histogram |= event.getLong("count") == 1;
+            }
+            Assert.assertTrue("No counter event recorded", counter);
+            Assert.assertTrue("No histogram event recorded", histogram);
+        } finally {
+            Files.delete(path);
+            Metrics.reset();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package edu.purdue.symmetria.server;
+
+import edu.purdue.symmetria.column.ColumnFile;
+import edu.purdue.symmetria.column.ColumnWriter;
+import edu.purdue.symmetria.column.SymAHEEncoder;
+import edu.purdue.symmetria.crypto.SymAHE;
+import edu.purdue.symmetria.crypto.cipher.SymCipher;
+import edu.purdue.symmetria.utils.MathUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestAggregationServer {
+    private static final int ITERATIONS = 100;
+    private static final int ROWS = 1000;
+    private static final int BLOCK_ROWS = 64;
+    private static final int CLIENTS = 4;
+
+    private static final SymAHE SCHEME = new SymAHE();
+    private static final SymAHEEncoder ENCODER = new SymAHEEncoder(SCHEME);
+
+    private static File file;
+    private static long[] values;
+    private static long[] prefix;
+    private static AggregationServer server;
+    private static Thread thread;
+
+    @BeforeClass
+    public static void start() throws IOException {
+        file = File.createTempFile("symmetria", ".col");
+        values = new long[ROWS];
+        prefix = new long[ROWS + 1];
+        try (ColumnWriter writer = new ColumnWriter(file.getPath(), ColumnFile.Scheme.SYM_AHE,
+                ENCODER.getWidth(), BLOCK_ROWS, ENCODER.getRollupModulo())) {
+            for (int start = 0; start < ROWS; start += BLOCK_ROWS) {
+                int count = Math.min(BLOCK_ROWS, ROWS - start);
+                long[] block = new long[count];
+                for (int i = 0; i < count; i++) {
+                    block[i] = MathUtils.randLong(1_000_000);
+                    values[start + i] = block[i];
+                    prefix[start + i + 1] = prefix[start + i] + block[i];
+                }
+                ByteBuffer out = ByteBuffer.allocate(count * ENCODER.getWidth());
+                long firstId = ENCODER.reserveIds(count);
+                ENCODER.encode(block, count, firstId, out);
+                out.flip();
+                writer.writeBlock(firstId, count, out);
+            }
+        }
+
+        server = new AggregationServer(0);
+        server.addColumn("values", file.getPath());
+        thread = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+    }
+
+    @AfterClass
+    public static void stop() throws Exception {
+        server.close();
+        thread.join();
+        file.delete();
+    }
+
+    @Test
+    public void testSum() throws IOException {
+        try (AggregationClient client = new AggregationClient("localhost", server.getPort())) {
+            for (int i = 0; i < ITERATIONS; i++) {
+                int from = (int) MathUtils.randLongPos(ROWS);
+                int to = from + 1 + (int) MathUtils.randLongPos(ROWS - from);
+                SymCipher sum = client.sum("values", from, to);
+                Assert.assertEquals("sum() failed for rows [" + from + ", " + to + ")",
+                        prefix[to] - prefix[from], SCHEME.decrypt(sum));
+                Assert.assertEquals(to - from, sum.getSize());
+            }
+        }
+    }
+
+    @Test
+    public void testSumIds() throws IOException {
+        try (AggregationClient client = new AggregationClient("localhost", server.getPort())) {
+            SymCipher[] rows = client.read("values", 0, ROWS);
+            long[] ids = new long[ITERATIONS];
+            long expected = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                int row = i * (ROWS / ITERATIONS);
+                ids[i] = rows[row].getIds()[0][0];
+                expected += values[row];
+            }
+            Assert.assertEquals("sum(ids) failed", expected, SCHEME.decrypt(client.sum("values", ids)));
+
+            try {
+                client.sum("values", new long[]{ids[0], ids[0]});
+                Assert.fail("sum(ids) must reject duplicate ids");
+            } catch (RuntimeException e) {
+                // expected
+            }
+            // the connection is still usable after an error
+            Assert.assertEquals(values[0], SCHEME.decrypt(client.sum("values", 0, 1)));
+        }
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        try (AggregationClient client = new AggregationClient("localhost", server.getPort())) {
+            int from = BLOCK_ROWS / 2;
+            int to = ROWS - BLOCK_ROWS / 2;
+            SymCipher[] rows = client.read("values", from, to);
+            Assert.assertEquals(to - from, rows.length);
+            for (int i = 0; i < rows.length; i++)
+                Assert.assertEquals("read() failed for row " + (from + i), values[from + i], SCHEME.decrypt(rows[i]));
+        }
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        try (AggregationClient client = new AggregationClient("localhost", server.getPort())) {
+            for (long[] range : new long[][]{{-1, 10}, {10, 10}, {0, ROWS + 1}}) {
+                try {
+                    client.sum("values", range[0], range[1]);
+                    Assert.fail("sum() must reject range [" + range[0] + ", " + range[1] + ")");
+                } catch (RuntimeException e) {
+                    // expected
+                }
+            }
+            try {
+                client.sum("missing", 0, 1);
+                Assert.fail("sum() must reject an unknown column");
+            } catch (RuntimeException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testDisconnect() throws Exception {
+        for (int i = 0; i < ITERATIONS; i++)
+            try (AggregationClient client = new AggregationClient("localhost", server.getPort())) {
+                Assert.assertEquals(values[0], SCHEME.decrypt(client.sum("values", 0, 1)));
+            }
+        // the server drops the connections once it sees them closed
+        for (int i = 0; i < 100 && server.getConnections() > 0; i++)
+            Thread.sleep(10);
+        Assert.assertEquals(0, server.getConnections());
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        long batches = server.getBatches();
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++)
+                futures.add(executor.submit(() -> {
+                    try (AggregationClient client = new AggregationClient("localhost", server.getPort())) {
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            int from = (int) MathUtils.randLongPos(ROWS);
+                            int to = from + 1 + (int) MathUtils.randLongPos(ROWS - from);
+                            Assert.assertEquals(prefix[to] - prefix[from], SCHEME.decrypt(client.sum("values", from, to)));
+                        }
+                    }
+                    return null;
+                }));
+            for (Future<?> future : futures)
+                future.get();
+            // how the requests were batched depends on timing, see TestMappedColumn for sums of
+            // several ranges at once
+            Assert.assertTrue(server.getBatches() > batches);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}